@@ -0,0 +1,90 @@
+package org.example.bmathb1.bench;
+
+import org.example.bmathb1.core.AdvancedCPU;
+import org.example.bmathb1.core.Memory;
+import org.example.bmathb1.core.TraceLevel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Costo di copiare un blocco di cells celle: una coppia LOAD/STORE per cella (il codice va srotolato,
+ * gli indirizzi sono immediati) contro una sola MEMCPY. Ogni operazione è una copia completa.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+public class BlockCopyBenchmark {
+
+    // Inizio della zona di destinazione
+    private static final int DEST = 4096;
+
+    public enum Variant {
+        LOAD_STORE,
+        MEMCPY
+    }
+
+    @Param
+    public Variant variant;
+
+    @Param({"64", "1024"})
+    public int cells;
+
+    @Param({"HEAP", "OFF_HEAP"})
+    public String backend;
+
+    @Param({"DECODED", "JIT"})
+    public AdvancedCPU.Engine engine;
+
+    private Memory memory;
+    private AdvancedCPU cpu;
+    private long steps;     // istruzioni di un giro del ciclo (una copia più il GOTO)
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        StringBuilder src = new StringBuilder("[CODE]\n");
+        if (variant == Variant.MEMCPY) {
+            src.append("MOVI R0, 0\nMOVI R1, ").append(DEST).append("\nMOVI R2, ").append(cells)
+                    .append("\nL:\nMEMCPY R1, R0, R2\n");
+            steps = 2;
+        } else {
+            src.append("L:\n");
+            for (int i = 0; i < cells; i++) {
+                src.append("LOAD R0, ").append(i).append("\nSTORE R0, ").append(DEST + i).append('\n');
+            }
+            steps = 2L * cells + 1;
+        }
+        src.append("GOTO L\n");
+        memory = backend.equals("HEAP") ? Memory.heap(2 * DEST) : Memory.offHeap(2 * DEST);
+        cpu = new AdvancedCPU(src.toString(), memory, Memory.heap(AdvancedCPU.DATA_SIZE), null, TraceLevel.OFF);
+        cpu.setEngine(engine);
+        cpu.setStepLimit(AdvancedCPU.UNLIMITED_STEPS);
+        // le istruzioni iniziali, così ogni operazione parte da L
+        cpu.run(variant == Variant.MEMCPY ? 3 : 0);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        memory.close();
+    }
+
+    @Benchmark
+    public long copy() {
+        return cpu.run(steps);
+    }
+}
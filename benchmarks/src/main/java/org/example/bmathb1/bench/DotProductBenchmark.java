@@ -0,0 +1,87 @@
+package org.example.bmathb1.bench;
+
+import org.example.bmathb1.core.AdvancedCPU;
+import org.example.bmathb1.core.Memory;
+import org.example.bmathb1.core.TraceLevel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Prodotto scalare di due vettori di cells celle: LOAD/LOAD/MUL/ADD per elemento (il codice va
+ * srotolato, gli indirizzi sono immediati) contro un ciclo a strisce di VLEN componenti con
+ * VLOAD/VFMA e un VREDUCE finale. Ogni operazione è un prodotto completo.
+ * La fork parte con il modulo della Vector API, quindi le istruzioni vettoriali usano SIMD.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--enable-preview", "--add-modules=jdk.incubator.vector"})
+public class DotProductBenchmark {
+
+    public enum Variant {
+        SCALAR,
+        VECTOR
+    }
+
+    @Param
+    public Variant variant;
+
+    @Param({"64", "1024"})
+    public int cells;
+
+    @Param({"DECODED", "JIT"})
+    public AdvancedCPU.Engine engine;
+
+    private AdvancedCPU cpu;
+    private long steps;     // istruzioni di un prodotto completo, GOTO compreso
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        StringBuilder src = new StringBuilder("[CODE]\n");
+        if (variant == Variant.VECTOR) {
+            // R0/R1 = indirizzi correnti, R2 = celle rimaste, R3 = lunghezza della striscia;
+            // V7 non viene mai scritto, quindi VMUL V2, V7 azzera l'accumulatore
+            src.append("INIZIO:\nMOVI R0, 0\nMOVI R1, ").append(cells).append("\nMOVI R2, ").append(cells)
+                    .append("\nMOVI R7, ").append(AdvancedCPU.VLEN).append("\nVSETL R7\nVMUL V2, V7\n")
+                    .append("L:\nMOVR R3, R2\nVSETL R3\nVLOAD V0, R0\nVLOAD V1, R1\nVFMA V2, V0, V1\n")
+                    .append("ADD R0, R3\nADD R1, R3\nSUB R2, R3\nJMPZ R2, FINE\nGOTO L\n")
+                    .append("FINE:\nVSETL R7\nVREDUCE R4, V2\nGOTO INIZIO\n");
+            long strips = (cells + AdvancedCPU.VLEN - 1) / AdvancedCPU.VLEN;
+            steps = 6 + strips * 9 + (strips - 1) + 3;
+        } else {
+            src.append("INIZIO:\nMOVI R4, 0\n");
+            for (int i = 0; i < cells; i++) {
+                src.append("LOAD R0, ").append(i).append("\nLOAD R1, ").append(cells + i)
+                        .append("\nMUL R0, R1\nADD R4, R0\n");
+            }
+            src.append("GOTO INIZIO\n");
+            steps = 4L * cells + 2;
+        }
+        Memory memory = Memory.heap(2L * cells);
+        for (int i = 0; i < 2 * cells; i++) {
+            memory.store(i, (i % 13) * 0.25);
+        }
+        cpu = new AdvancedCPU(src.toString(), memory, Memory.heap(AdvancedCPU.DATA_SIZE), null, TraceLevel.OFF);
+        cpu.setEngine(engine);
+        cpu.setStepLimit(AdvancedCPU.UNLIMITED_STEPS);
+    }
+
+    @Benchmark
+    public long dot() {
+        return cpu.run(steps);
+    }
+}
@@ -0,0 +1,87 @@
+package org.example.bmathb1.bench;
+
+import org.example.bmathb1.core.AdvancedCPU;
+import org.example.bmathb1.core.Memory;
+import org.example.bmathb1.core.TraceLevel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput della famiglia MEMORY (LOAD/STORE) per backend di memoria e dimensione.
+ * Il fork gira con --enable-preview, richiesto dalla memoria off-heap e mappata in Java 21.
+ * MAPPED usa un file temporaneo, cancellato a fine trial.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+public class MemoryBenchmark {
+
+    private static final int BATCH = 1024;
+
+    public enum Backend {
+        HEAP,
+        OFF_HEAP,
+        MAPPED,
+        PAGED
+    }
+
+    @Param
+    public Backend backend;
+
+    @Param({"256", "16777216"})
+    public long cells;
+
+    @Param({"DECODED", "JIT"})
+    public AdvancedCPU.Engine engine;
+
+    private Memory memory;
+    private Path file;
+    private AdvancedCPU cpu;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        memory = switch (backend) {
+            case HEAP -> Memory.heap(cells);
+            case OFF_HEAP -> Memory.offHeap(cells);
+            case MAPPED -> Memory.mapped(file = Files.createTempFile("bmathb1-bench", ".bin"), cells);
+            case PAGED -> Memory.paged(cells);
+        };
+        cpu = new AdvancedCPU(Programs.Family.MEMORY.source, memory, Memory.heap(AdvancedCPU.DATA_SIZE),
+                null, TraceLevel.OFF);
+        cpu.setEngine(engine);
+        cpu.setStepLimit(AdvancedCPU.UNLIMITED_STEPS);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        memory.close();
+        if (file != null) {
+            Files.delete(file);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public long instructions() {
+        return cpu.run(BATCH);
+    }
+}
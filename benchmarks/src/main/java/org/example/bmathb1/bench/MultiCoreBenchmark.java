@@ -0,0 +1,70 @@
+package org.example.bmathb1.bench;
+
+import org.example.bmathb1.core.AdvancedCPU;
+import org.example.bmathb1.core.Memory;
+import org.example.bmathb1.core.MultiCore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scalabilità di MultiCore: ogni core esegue lo stesso ciclo di WORK iterazioni e alla fine somma
+ * il proprio risultato nella memoria condivisa con ATOMADD. Il lavoro per core è fisso, quindi
+ * con core reali a disposizione il tempo resta (circa) costante al crescere di cores.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MultiCoreBenchmark {
+
+    private static final int WORK = 200_000;
+
+    private static final String SOURCE = """
+            [CODE]
+              MOVI R0, %d
+              MOVI R1, 1
+              MOVI R2, 0
+            L:
+              ADD R2, R1
+              SUB R0, R1
+              JMPZ R0, END
+              GOTO L
+            END:
+              ATOMADD R2, 0
+              HLT
+            """.formatted(WORK);
+
+    @Param({"1", "2", "4", "8"})
+    public int cores;
+
+    @Param({"DECODED", "JIT"})
+    public AdvancedCPU.Engine engine;
+
+    private MultiCore machine;
+
+    @Setup(Level.Invocation)
+    public void setup() throws Exception {
+        machine = new MultiCore(SOURCE, Memory.heap(AdvancedCPU.DATA_SIZE), cores);
+        machine.setEngine(engine);
+        machine.setStepLimit(AdvancedCPU.UNLIMITED_STEPS);
+    }
+
+    @Benchmark
+    public long run() throws InterruptedException {
+        return machine.run(AdvancedCPU.UNLIMITED_STEPS);
+    }
+}
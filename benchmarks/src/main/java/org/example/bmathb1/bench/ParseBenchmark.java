@@ -0,0 +1,65 @@
+package org.example.bmathb1.bench;
+
+import org.example.bmathb1.core.AdvancedCPU;
+import org.example.bmathb1.core.Program;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Costo dell'assemblaggio (parse + decodifica) su sorgenti grandi, e di una CPU creata
+ * da sorgente rispetto a una legata a un Program già assemblato o riusata con reset.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParseBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int lines;
+
+    private String source;
+    private Program program;
+    private AdvancedCPU cpu;
+
+    @Setup
+    public void setup() throws Exception {
+        source = Programs.large(lines);
+        program = Program.assemble(source);
+        cpu = new AdvancedCPU(program);
+    }
+
+    @Benchmark
+    public Program assemble() throws Exception {
+        return Program.assemble(source);
+    }
+
+    @Benchmark
+    public AdvancedCPU parse() throws Exception {
+        return new AdvancedCPU(source);
+    }
+
+    @Benchmark
+    public AdvancedCPU fromProgram() throws Exception {
+        return new AdvancedCPU(program);
+    }
+
+    @Benchmark
+    public AdvancedCPU reset() {
+        cpu.reset();
+        return cpu;
+    }
+}
@@ -0,0 +1,42 @@
+package org.example.bmathb1.bench;
+
+import org.example.bmathb1.core.AdvancedCPU;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Esecuzione completa (caricamento + run fino a HLT) dei programmi di riferimento con ogni engine.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProgramBenchmark {
+
+    @Param
+    public Programs.Reference program;
+
+    @Param({"INTERPRETED", "DECODED", "THREADED", "JIT"})
+    public AdvancedCPU.Engine engine;
+
+    @Benchmark
+    public double run() throws Exception {
+        AdvancedCPU cpu = new AdvancedCPU(program.source);
+        cpu.setEngine(engine);
+        cpu.setStepLimit(AdvancedCPU.UNLIMITED_STEPS);
+        cpu.run(AdvancedCPU.UNLIMITED_STEPS);
+        return cpu.getRegister(2);
+    }
+}
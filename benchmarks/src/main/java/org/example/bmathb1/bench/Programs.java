@@ -0,0 +1,261 @@
+package org.example.bmathb1.bench;
+
+/**
+ * Sorgenti assembly usati dai benchmark.
+ *
+ * L'ISA non ha indirizzamento indiretto (LOAD/STORE hanno indirizzi costanti), quindi sieve e
+ * prodotto di matrici vengono generati srotolati e ripetuti da un ciclo esterno: così i blocchi
+ * diventano "caldi" come in un programma con cicli annidati.
+ */
+public final class Programs {
+
+    private Programs() {
+    }
+
+    /**
+     * Famiglie di opcode per StepBenchmark: ogni programma è un ciclo infinito sulla famiglia.
+     */
+    public enum Family {
+        ARITHMETIC("""
+                [CODE]
+                  MOVI R0, 1.5
+                  MOVI R1, 0.5
+                  MOVI R2, 3
+                L:
+                  ADD R3, R0
+                  SUB R3, R1
+                  MUL R3, R1
+                  DIV R3, R0
+                  ADD R4, R2
+                  MOD R4, R2
+                  GOTO L
+                """),
+        BITWISE("""
+                [CODE]
+                  MOVI R0, 12345
+                  MOVI R1, 255
+                L:
+                  SHIFT R0 LEFT 3
+                  SHIFT R0 RIGHT 2
+                  SHIFT R0 ARITH 1
+                  AND R2, R1
+                  OR R2, R0
+                  XOR R2, R1
+                  GOTO L
+                """),
+        MEMORY("""
+                [CODE]
+                  MOVI R0, 42
+                L:
+                  STORE R0, 10
+                  LOAD R1, 10
+                  STORE R1, 20
+                  LOAD R2, 20
+                  STORE R2, 30
+                  LOAD R0, 30
+                  GOTO L
+                """),
+        CALL_RET("""
+                [CODE]
+                L:
+                  CALL F
+                  GOTO L
+                F:
+                  RET
+                """),
+        // Come ARITHMETIC e BITWISE, ma in modalità INTEGER (registri long)
+        INTEGER_ARITHMETIC("""
+                [MODE INTEGER]
+                [CODE]
+                  MOVI R0, 3
+                  MOVI R1, 1
+                  MOVI R2, 3
+                L:
+                  ADD R3, R0
+                  SUB R3, R1
+                  MUL R3, R1
+                  DIV R3, R0
+                  ADD R4, R2
+                  MOD R4, R2
+                  GOTO L
+                """),
+        INTEGER_BITWISE("""
+                [MODE INTEGER]
+                [CODE]
+                  MOVI R0, 12345
+                  MOVI R1, 255
+                L:
+                  SHIFT R0 LEFT 3
+                  SHIFT R0 RIGHT 2
+                  SHIFT R0 ARITH 1
+                  AND R2, R1
+                  OR R2, R0
+                  XOR R2, R1
+                  GOTO L
+                """);
+
+        final String source;
+
+        Family(String source) {
+            this.source = source;
+        }
+    }
+
+    /**
+     * Programmi completi per ProgramBenchmark; ognuno termina con HLT.
+     */
+    public enum Reference {
+        FIBONACCI(fibonacci(1000)),
+        SIEVE(sieve(120, 20)),
+        MATRIX_MULTIPLY(matrixMultiply(6, 20)),
+        RECURSION(recursiveSum(60, 200));
+
+        final String source;
+
+        Reference(String source) {
+            this.source = source;
+        }
+    }
+
+    /**
+     * Fibonacci iterativo: n iterazioni, risultato in R0.
+     */
+    static String fibonacci(int n) {
+        return """
+                [CODE]
+                  MOVI R0, 0
+                  MOVI R1, 1
+                  MOVI R2, %d
+                  MOVI R7, 1
+                LOOP:
+                  JMPZ R2, END
+                  MOVR R3, R0
+                  ADD R3, R1
+                  MOVR R0, R1
+                  MOVR R1, R3
+                  SUB R2, R7
+                  GOTO LOOP
+                END:
+                  HLT
+                """.formatted(n);
+    }
+
+    /**
+     * Crivello di Eratostene su [0, n) ripetuto repeat volte; numero di primi in R2.
+     * data[k] = 0 significa "k candidato primo".
+     */
+    static String sieve(int n, int repeat) {
+        StringBuilder sb = new StringBuilder("[CODE]\n");
+        sb.append("  MOVI R6, ").append(repeat).append('\n');
+        sb.append("  MOVI R7, 1\n");
+        sb.append("  MOVI R5, 0\n");
+        sb.append("OUTER:\n  JMPZ R6, END\n");
+        // azzera i flag e il contatore
+        for (int k = 2; k < n; k++) {
+            sb.append("  STORE R5, ").append(k).append('\n');
+        }
+        sb.append("  MOVI R2, 0\n");
+        for (int i = 2; i * i < n; i++) {
+            sb.append("  LOAD R0, ").append(i).append('\n');
+            sb.append("  JMPZ R0, MARK").append(i).append('\n');
+            sb.append("  GOTO NEXT").append(i).append('\n');
+            sb.append("MARK").append(i).append(":\n");
+            for (int m = i * i; m < n; m += i) {
+                sb.append("  STORE R7, ").append(m).append('\n');
+            }
+            sb.append("NEXT").append(i).append(":\n");
+        }
+        for (int k = 2; k < n; k++) {
+            sb.append("  LOAD R0, ").append(k).append('\n');
+            sb.append("  JMPZ R0, PRIME").append(k).append('\n');
+            sb.append("  GOTO SKIP").append(k).append('\n');
+            sb.append("PRIME").append(k).append(":\n");
+            sb.append("  ADD R2, R7\n");
+            sb.append("SKIP").append(k).append(":\n");
+        }
+        sb.append("  SUB R6, R7\n  GOTO OUTER\nEND:\n  HLT\n");
+        return sb.toString();
+    }
+
+    /**
+     * C = A x B per matrici n x n (A da 0, B da n*n, C da 2*n*n), ripetuto repeat volte.
+     */
+    static String matrixMultiply(int n, int repeat) {
+        int a = 0;
+        int b = n * n;
+        int c = 2 * n * n;
+        StringBuilder sb = new StringBuilder("[CODE]\n");
+        sb.append("  MOVI R6, ").append(repeat).append('\n');
+        sb.append("  MOVI R7, 1\n");
+        sb.append("OUTER:\n  JMPZ R6, END\n");
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                sb.append("  MOVI R2, 0\n");
+                for (int k = 0; k < n; k++) {
+                    sb.append("  LOAD R0, ").append(a + i * n + k).append('\n');
+                    sb.append("  LOAD R1, ").append(b + k * n + j).append('\n');
+                    sb.append("  MUL R0, R1\n");
+                    sb.append("  ADD R2, R0\n");
+                }
+                sb.append("  STORE R2, ").append(c + i * n + j).append('\n');
+            }
+        }
+        sb.append("  SUB R6, R7\n  GOTO OUTER\nEND:\n  HLT\n");
+        sb.append("[DATA]\n");
+        for (int k = 0; k < 2 * n * n; k++) {
+            sb.append("M").append(k).append(" = ").append((k % 7) + 1).append('\n');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Somma ricorsiva depth + ... + 1 tramite CALL/RET, ripetuta repeat volte; risultato in R2.
+     */
+    static String recursiveSum(int depth, int repeat) {
+        return """
+                [CODE]
+                  MOVI R6, %d
+                  MOVI R7, 1
+                OUTER:
+                  JMPZ R6, END
+                  MOVI R0, %d
+                  MOVI R2, 0
+                  CALL REC
+                  SUB R6, R7
+                  GOTO OUTER
+                END:
+                  HLT
+                REC:
+                  JMPZ R0, BASE
+                  ADD R2, R0
+                  SUB R0, R7
+                  CALL REC
+                BASE:
+                  RET
+                """.formatted(repeat, depth);
+    }
+
+    /**
+     * Sorgente sintetico di circa lines righe per misurare il parse.
+     */
+    static String large(int lines) {
+        StringBuilder sb = new StringBuilder("[CODE]\n");
+        int blocks = Math.max(1, lines / 10);
+        for (int i = 0; i < blocks; i++) {
+            sb.append("L").append(i).append(":   ; blocco ").append(i).append('\n');
+            sb.append("  MOVI R0, ").append(i).append(".5\n");
+            sb.append("  MOVR R1, R0\n");
+            sb.append("  ADD R1, R0\n");
+            sb.append("  SHIFT R1 LEFT 2\n");
+            sb.append("  STORE R1, ").append(i % 100).append('\n');
+            sb.append("  LOAD R2, ").append(i % 100).append('\n');
+            sb.append("  JMPZ R2, L").append((i + 1) % blocks).append('\n');
+            sb.append("  CALL L").append(i).append("(2)\n");
+        }
+        sb.append("  HLT\n[DATA]\n");
+        for (int k = 0; k < 100; k++) {
+            sb.append("X").append(k).append(" = ").append(k).append('\n');
+        }
+        return sb.toString();
+    }
+}
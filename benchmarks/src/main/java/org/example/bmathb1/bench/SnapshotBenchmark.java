@@ -0,0 +1,71 @@
+package org.example.bmathb1.bench;
+
+import org.example.bmathb1.core.AdvancedCPU;
+import org.example.bmathb1.core.CpuSnapshot;
+import org.example.bmathb1.core.Memory;
+import org.example.bmathb1.core.TraceLevel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Costo di un'esecuzione "what-if" da uno stato comune: restore dello snapshot, FORK_STEPS
+ * istruzioni della famiglia MEMORY (che sporcano una sola pagina) e nuovo snapshot.
+ * Tutta la memoria è stata scritta prima dello snapshot iniziale, quindi HEAP copia ogni volta
+ * l'intero array mentre PAGED copia solo la pagina modificata.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SnapshotBenchmark {
+
+    private static final int FORK_STEPS = 1000;
+
+    public enum Backend {
+        HEAP,
+        PAGED
+    }
+
+    @Param
+    public Backend backend;
+
+    @Param({"65536", "4194304"})
+    public long cells;
+
+    private AdvancedCPU cpu;
+    private CpuSnapshot warm;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        Memory memory = backend == Backend.HEAP ? Memory.heap(cells) : Memory.paged(cells);
+        for (long i = 0; i < cells; i++) {
+            memory.store(i, i);
+        }
+        cpu = new AdvancedCPU(Programs.Family.MEMORY.source, memory, Memory.heap(AdvancedCPU.DATA_SIZE),
+                null, TraceLevel.OFF);
+        cpu.setStepLimit(AdvancedCPU.UNLIMITED_STEPS);
+        cpu.run(FORK_STEPS);
+        warm = cpu.snapshot();
+    }
+
+    @Benchmark
+    public CpuSnapshot fork() {
+        cpu.restore(warm);
+        cpu.run(FORK_STEPS);
+        return cpu.snapshot();
+    }
+}
@@ -0,0 +1,61 @@
+package org.example.bmathb1.bench;
+
+import org.example.bmathb1.core.AdvancedCPU;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput per istruzione di ogni engine su un ciclo infinito di una famiglia di opcode.
+ *
+ * step() misura una singola chiamata (con JIT un blocco compilato conta come una chiamata);
+ * instructions() misura batch di run(BATCH) ed è confrontabile tra tutti gli engine.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StepBenchmark {
+
+    private static final int BATCH = 1024;
+
+    @Param
+    public Programs.Family family;
+
+    @Param({"INTERPRETED", "DECODED", "THREADED", "JIT"})
+    public AdvancedCPU.Engine engine;
+
+    private AdvancedCPU cpu;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        cpu = new AdvancedCPU(family.source);
+        cpu.setEngine(engine);
+        cpu.setStepLimit(AdvancedCPU.UNLIMITED_STEPS);
+    }
+
+    @Benchmark
+    public void step() {
+        cpu.step();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public long instructions() {
+        return cpu.run(BATCH);
+    }
+}
@@ -0,0 +1,2119 @@
+package org.example.bmathb1.core;
+
+import java.lang.invoke.VarHandle;
+import java.util.*;
+
+/**
+ * Classe "CPU" che gestisce:
+ * - Segmenti [CODE] e [DATA]
+ * - Registri R0..R7, IP, FLAGS
+ * - Parser di istruzioni con commenti ';', label su riga a sé, GOTO, CALL SUB(2)
+ * - Overflow, underflow, stack, subroutine con param
+ * - Step-by-step
+ * - Programma assemblato e pre-decodificato una volta sola in un {@link Program} immutabile,
+ *   condivisibile tra più CPU
+ * - JIT a blocchi base verso classi JVM (vedi {@link BlockJit})
+ * - Nessuna dipendenza da JavaFX: il log è un flusso di eventi {@link TraceEvent} filtrato per
+ *   {@link TraceLevel} e inviato a un {@link TraceSink} opzionale
+ * - Profiling opzionale per istruzione/opcode/label (vedi {@link Profiler})
+ * - Memoria dati configurabile su heap o off-heap, con stack condiviso o separato (vedi {@link Memory})
+ * - Snapshot/restore dello stato, copy-on-write a pagine con {@link PagedMemory}
+ * - Modalità INTEGER con registri long e overflow esatto (vedi {@link Program.Mode})
+ * - Flag di condizione zero/segno/carry calcolati in modo pigro, con CMP/TEST e JE..JGE
+ * - Registri vettoriali V0..V7 con VLOAD/VSTORE/VADD/VMUL/VFMA/VREDUCE (vedi {@link VectorUnit})
+ */
+public final class AdvancedCPU {
+    public static final int DATA_SIZE = 256;
+    public static final int REGISTERS = 8;
+    // Registri vettoriali V0..V7 e loro componenti: VL (VSETL) sceglie quante ne usano le istruzioni
+    public static final int VREGISTERS = 8;
+    public static final int VLEN = 64;
+    // Step annullabili dal buffer della storia, se non specificato
+    public static final int DEFAULT_JOURNAL_CAPACITY = 1 << 16;
+    // Celle del pool della storia per MEMCPY/MEMSET/VSTORE e registri vettoriali (2 MB)
+    public static final int DEFAULT_JOURNAL_BLOCK_CELLS = 1 << 18;
+    // Byte (stimati) che i checkpoint della storia possono tenere in vita
+    public static final long DEFAULT_JOURNAL_CHECKPOINT_BYTES = 64L << 20;
+
+    // Bit di FLAGS: overflow (resta alzato fino al reset) e flag di condizione dell'ultima CMP/TEST/ADD/SUB
+    public static final int FLAG_OVERFLOW = 0x01;
+    public static final int FLAG_ZERO = 0x02;       // risultato esatto = 0 (per CMP: R a = R b)
+    public static final int FLAG_SIGN = 0x04;       // risultato esatto < 0 (per CMP: R a < R b)
+    public static final int FLAG_CARRY = 0x08;      // riporto/prestito senza segno, solo in modalità INTEGER
+
+    // Ultima operazione che ha impostato i flag di condizione (ccOp)
+    static final int CC_FLAGS = 0;  // flag già calcolati, in ccFlags
+    static final int CC_SUB = 1;    // CMP e SUB: x - y
+    static final int CC_ADD = 2;    // x + y
+    static final int CC_TEST = 3;   // x AND y
+
+    // Limite di passi predefinito (previene i loop infiniti) e valore per "nessun limite"
+    public static final long DEFAULT_STEP_LIMIT = 2000;
+    public static final long UNLIMITED_STEPS = Long.MAX_VALUE;
+
+    /**
+     * Motore di esecuzione usato da step():
+     * INTERPRETED rifà il parsing della stringa a ogni istruzione (implementazione di riferimento),
+     * DECODED esegue la forma pre-decodificata prodotta da parseSource,
+     * THREADED percorre un array di closure con gli operandi già legati (vedi compileThreaded),
+     * JIT come DECODED ma compila in bytecode i blocchi base più eseguiti
+     * (i blocchi compilati non producono eventi per istruzione, conteggi di profiling né storia
+     * per il debug all'indietro, quindi vengono usati solo se queste funzioni sono spente).
+     */
+    public enum Engine {
+        INTERPRETED,
+        DECODED,
+        THREADED,
+        JIT
+    }
+
+    // Registri: regs in modalità FLOAT, iregs in modalità INTEGER (l'altro banco resta a 0)
+    private final double[] regs = new double[REGISTERS];
+    private final long[] iregs = new long[REGISTERS];
+    private final boolean integer;
+    // Registri vettoriali, sempre double: V v occupa vregs[v * VLEN, (v + 1) * VLEN)
+    private final double[] vregs = new double[VREGISTERS * VLEN];
+    // Lunghezza vettoriale: componenti lette e scritte dalle istruzioni V*
+    private int VL = VLEN;
+    // Instruction Pointer
+    private int IP = 0;
+    // FLAGS: qui solo il bit di overflow; i flag di condizione si ricavano da ccOp (vedi getFLAGS)
+    private int FLAGS = 0;
+    // Flag di condizione pigri: ADD/SUB/CMP/TEST salvano solo tipo di operazione e operandi,
+    // zero/segno/carry si calcolano quando un salto condizionato o getFLAGS li leggono
+    private int ccOp = CC_FLAGS;
+    private int ccFlags;
+    private double ccX, ccY;        // operandi in modalità FLOAT
+    private long ccIX, ccIY;        // operandi in modalità INTEGER
+
+    // Stack pointer: lo stack cresce verso il basso a partire da stackTop
+    private int SP;
+    private final int stackTop;
+
+    // Programma assemblato, immutabile e condivisibile tra più CPU
+    private final Program program;
+
+    // Segmenti
+    private final List<String> codeSegment;
+    private final Memory memory;    // dati di LOAD/STORE e del segmento [DATA]
+    private final Memory stack;     // PUSH/POP/CALL/RET; per default è la parte alta di memory
+
+    // Label map
+    private final Map<String, Integer> labelMap;
+
+    // Programma decodificato (gli array di program, in campi final per il ciclo di esecuzione)
+    private final int[] ops;          // id opcode (Opcodes.*)
+    private final int[] argA;         // primo operando (registro o target del salto)
+    private final int[] argB;         // secondo operando (registro, count, target, paramCount)
+    private final int[] argC;         // terzo operando (lunghezza di MEMCPY/MEMSET/MEMCMP, Vb di VFMA)
+    private final double[] imm;       // immediato di MOVI
+    private final long[] ival;        // immediato di MOVI in modalità INTEGER
+    private final long[] addr;        // indirizzo di LOAD/STORE (già verificato contro memory.size())
+    private final String[] sym;       // nome label per i log, o messaggio d'errore per INVALID
+    private final int[] fused;        // ops con superistruzioni e varianti senza controllo (vedi Peephole)
+
+    private Engine engine = Engine.DECODED;
+    private Op[] threaded;      // creato al primo step in modalità THREADED
+    private BlockJit jit;       // creato al primo step in modalità JIT
+
+    // Running / halted (running è scritto dalla UI e letto dal thread di Run tra un batch e l'altro)
+    private volatile boolean running = false;
+    private boolean halted = false;
+
+    // Trace (sink null = nessun evento, es. esecuzione batch)
+    private final TraceSink traceSink;
+    private TraceLevel traceLevel = TraceLevel.OFF;
+    private final TraceLevel initialTraceLevel;     // livello passato al costruttore (vedi restoreSettings)
+    // Livelli attivi, ricalcolati da setTraceLevel: con il trace spento ogni punto di log costa un branch
+    private boolean traceErrors;
+    private boolean traceInstr;
+    private boolean traceVerbose;
+
+    // Profiling (null = spento: in step() costa solo il test su null)
+    private Profiler profiler;
+
+    // Storia per il debug all'indietro (null = spenta)
+    private UndoJournal journal;
+
+    // Indice del core in una MultiCore (letto da COREID), 0 per una CPU singola
+    private int coreId;
+
+    // Soglia max passi per prevenire loop infiniti
+    private long stepLimit = DEFAULT_STEP_LIMIT;
+    private long stepCount = 0;
+
+    /**
+     * CPU headless, senza trace.
+     */
+    public AdvancedCPU(String fullSource) throws Exception {
+        this(fullSource, null, TraceLevel.OFF);
+    }
+
+    /**
+     * Configurazione originale: DATA_SIZE celle su heap, con lo stack nella parte alta.
+     */
+    public AdvancedCPU(String fullSource, TraceSink traceSink, TraceLevel traceLevel) throws Exception {
+        this(fullSource, Memory.heap(DATA_SIZE), null, traceSink, traceLevel);
+    }
+
+    /**
+     * CPU con memoria configurata (vedi {@link Memory#heap(long)} e {@link Memory#offHeap(long)}).
+     *
+     * @param stack memoria dello stack, al massimo Integer.MAX_VALUE celle;
+     *              null = parte alta di memory, come nella configurazione originale
+     */
+    public AdvancedCPU(String fullSource, Memory memory, Memory stack,
+                       TraceSink traceSink, TraceLevel traceLevel) throws Exception {
+        this(Program.assemble(fullSource), memory, stack, traceSink, traceLevel);
+    }
+
+    /**
+     * CPU su un programma già assemblato, con i valori di [DATA] su heap e lo stack nella parte alta.
+     */
+    public AdvancedCPU(Program program) throws Exception {
+        this(program, Memory.heap(DATA_SIZE), null, null, TraceLevel.OFF);
+    }
+
+    /**
+     * CPU su un programma già assemblato: non rifà il parsing, copia solo i valori di [DATA]
+     * in memory. Più CPU possono eseguire lo stesso Program in parallelo.
+     *
+     * @param stack memoria dello stack, al massimo Integer.MAX_VALUE celle;
+     *              null = parte alta di memory, come nella configurazione originale
+     * @throws Exception se i valori di [DATA] non stanno in memory
+     */
+    public AdvancedCPU(Program program, Memory memory, Memory stack,
+                       TraceSink traceSink, TraceLevel traceLevel) throws Exception {
+        this.memory = memory;
+        this.stack = stack != null ? stack : memory;
+        long top = this.stack.size() - 1;
+        if (top > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Stack troppo grande (" + this.stack.size()
+                    + " celle): usa una memoria di stack separata");
+        }
+        stackTop = (int) top;
+        SP = stackTop;
+        this.traceSink = traceSink;
+        initialTraceLevel = traceLevel;
+        setTraceLevel(traceLevel);
+
+        this.program = program.forMemory(memory.size());
+        codeSegment = this.program.code;
+        labelMap = this.program.labels;
+        ops = this.program.ops;
+        argA = this.program.argA;
+        argB = this.program.argB;
+        argC = this.program.argC;
+        imm = this.program.imm;
+        ival = this.program.ival;
+        addr = this.program.addr;
+        sym = this.program.sym;
+        fused = this.program.fused;
+        integer = this.program.mode == Program.Mode.INTEGER;
+        loadData();
+        setRunning(false);
+        setHalted(false);
+    }
+
+    /**
+     * Copia i valori di [DATA] in memoria dalla cella 0.
+     */
+    private void loadData() throws Exception {
+        double[] data = program.data;
+        if (data.length > memory.size()) {
+            throw new Exception("Segmento dati pieno!");
+        }
+        memory.storeAll(0, data);
+        if (traceVerbose) {
+            // Righe fuori da [CODE] e [DATA]: le ignoriamo con un log
+            for (String line : program.ignoredLines) {
+                trace(TraceEvent.OUT_OF_SEGMENT, 0, 0, 0, line);
+            }
+            trace(TraceEvent.CODE_LOADED, codeSegment.size(), 0, 0, null);
+            trace(TraceEvent.DATA_LOADED, data.length, 0, 0, null);
+        }
+    }
+
+    /**
+     * Esegue un singolo step (una istruzione).
+     * Se la CPU è HALT o c'è un errore, non fa nulla.
+     */
+    public void step() {
+        if (halted) {
+            if (traceVerbose) trace(TraceEvent.ALREADY_HALTED, 0, 0, 0, null);
+            return;
+        }
+        if (journal != null) {
+            recordUndo();
+        }
+        if (IP < 0 || IP >= codeSegment.size()) {
+            if (traceErrors) trace(TraceEvent.IP_OUT_OF_RANGE, IP, 0, 0, null);
+            halted = true;
+            return;
+        }
+        if (stepCount++ > stepLimit) {
+            if (traceErrors) trace(TraceEvent.STEP_LIMIT, 0, 0, stepLimit, null);
+            halted = true;
+            return;
+        }
+
+        if (profiler != null) {
+            profiler.record(IP, branchTaken(IP));
+        }
+
+        if (engine == Engine.INTERPRETED) {
+            String line = codeSegment.get(IP).trim();
+            IP++; // default increment
+            execInstruction(line);
+        } else if (engine == Engine.THREADED) {
+            if (threaded == null) {
+                threaded = compileThreaded();
+            }
+            threaded[IP++].exec(this);
+        } else if (engine != Engine.JIT || traceInstr || profiler != null || journal != null || !runCompiledBlock()) {
+            int pc = IP++;
+            int op = fused[pc];
+            if (op < Opcodes.MOVI_ADD) {
+                execDecoded(pc, op);
+            } else if (!execFused(pc, op)) {
+                execDecoded(pc, ops[pc]);
+            }
+        }
+    }
+
+    /**
+     * Esegue un batch di (circa) maxInstructions istruzioni, fermandosi prima solo in HALT.
+     * Non controlla il flag running: lo stop/pausa va verificato dal chiamante tra un batch
+     * e l'altro, così il ciclo interno resta un semplice loop su step().
+     *
+     * @return istruzioni eseguite (un blocco JIT può superare di poco maxInstructions)
+     */
+    public long run(long maxInstructions) {
+        long start = stepCount;
+        long target = maxInstructions >= Long.MAX_VALUE - start ? Long.MAX_VALUE : start + maxInstructions;
+        while (!halted && stepCount < target) {
+            step();
+        }
+        return stepCount - start;
+    }
+
+    /**
+     * Modalità JIT: se IP è l'inizio di un blocco già compilato lo esegue per intero.
+     * Restituisce false se l'istruzione va eseguita dall'interprete decodificato.
+     */
+    private boolean runCompiledBlock() {
+        if (jit == null) {
+            jit = new BlockJit(ops, argA, argB, imm, ival, addr, program.unchecked, labelMap.values(), integer);
+        }
+        CompiledBlock block = jit.enter(IP);
+        if (block == null) {
+            return false;
+        }
+        int len = jit.length(IP);
+        // stepCount è già stato incrementato per la prima istruzione del blocco:
+        // se il blocco sforerebbe stepLimit si prosegue un'istruzione alla volta
+        if (stepCount + len - 2 > stepLimit) {
+            return false;
+        }
+        stepCount += len - 1;
+        IP = integer ? block.run(iregs, memory, this) : block.run(regs, memory, this);
+        return true;
+    }
+
+    /**
+     * Esegue l'istruzione pre-decodificata all'indirizzo pc.
+     * Stessa semantica (e stessi log) di execInstruction, ma senza parsing:
+     * solo uno switch su interi e accessi ad array.
+     * op è ops[pc] o, se RangeAnalysis l'ha dimostrata finita, la sua variante senza controllo.
+     */
+    private void execDecoded(int pc, int op) {
+        int a = argA[pc];
+        int b = argB[pc];
+        switch (op) {
+            case Opcodes.HLT -> doHLT();
+            case Opcodes.NOP -> doNOP();
+            case Opcodes.MOVI -> doMOVI(a, imm[pc], ival[pc]);
+            case Opcodes.MOVI_UNCHECKED -> doMOVIUnchecked(a, imm[pc]);
+            case Opcodes.MOVR -> doMOVR(a, b);
+            case Opcodes.ADD -> doADD(a, b);
+            case Opcodes.ADD_UNCHECKED -> doADDUnchecked(a, b);
+            case Opcodes.SUB -> doSUB(a, b);
+            case Opcodes.SUB_UNCHECKED -> doSUBUnchecked(a, b);
+            case Opcodes.MUL -> doMUL(a, b);
+            case Opcodes.MUL_UNCHECKED -> doMULUnchecked(a, b);
+            case Opcodes.DIV -> doDIV(a, b);
+            case Opcodes.MOD -> doMOD(a, b);
+            case Opcodes.SHL -> doSHL(a, b);
+            case Opcodes.SHR -> doSHR(a, b);
+            case Opcodes.SAR -> doSAR(a, b);
+            case Opcodes.AND -> doAND(a, b);
+            case Opcodes.OR -> doOR(a, b);
+            case Opcodes.XOR -> doXOR(a, b);
+            case Opcodes.JMP -> doJMP(a, sym[pc]);
+            case Opcodes.JMPZ -> doJMPZ(a, b, sym[pc]);
+            case Opcodes.CALL -> doCALL(a, sym[pc], b);
+            case Opcodes.RET -> doRET();
+            case Opcodes.PUSH -> doPUSH(a);
+            case Opcodes.POP -> doPOP(a);
+            case Opcodes.STORE -> doSTORE(a, addr[pc]);
+            case Opcodes.LOAD -> doLOAD(a, addr[pc]);
+            case Opcodes.CAS -> doCAS(a, b, addr[pc]);
+            case Opcodes.XCHG -> doXCHG(a, addr[pc]);
+            case Opcodes.ATOMADD -> doATOMADD(a, addr[pc]);
+            case Opcodes.FENCE -> doFENCE();
+            case Opcodes.COREID -> doCOREID(a);
+            case Opcodes.CMP -> doCMP(a, b);
+            case Opcodes.TEST -> doTEST(a, b);
+            case Opcodes.JE, Opcodes.JNE, Opcodes.JL, Opcodes.JG, Opcodes.JLE, Opcodes.JGE ->
+                    doJcc(op, a, sym[pc]);
+            case Opcodes.MEMCPY -> doMEMCPY(a, b, argC[pc]);
+            case Opcodes.MEMSET -> doMEMSET(a, b, argC[pc]);
+            case Opcodes.MEMCMP -> doMEMCMP(a, b, argC[pc]);
+            case Opcodes.VSETL -> doVSETL(a);
+            case Opcodes.VLOAD -> doVLOAD(a, b);
+            case Opcodes.VSTORE -> doVSTORE(a, b);
+            case Opcodes.VADD -> doVADD(a, b);
+            case Opcodes.VMUL -> doVMUL(a, b);
+            case Opcodes.VFMA -> doVFMA(a, b, argC[pc]);
+            case Opcodes.VREDUCE -> doVREDUCE(a, b);
+            default -> doInvalid(sym[pc]);
+        }
+    }
+
+    /**
+     * Superistruzione op che parte da pc (IP vale già pc + 1): esegue tutta la sequenza con un solo
+     * dispatch, lasciando IP e passi come se le istruzioni fossero eseguite una alla volta.
+     * Restituisce false senza eseguire nulla se servono eventi, profiling o storia per istruzione,
+     * o se la sequenza supererebbe stepLimit: in quei casi si esegue solo l'istruzione pc.
+     */
+    private boolean execFused(int pc, int op) {
+        int len = Opcodes.length(op);
+        if (traceInstr || profiler != null || journal != null || stepCount + len - 2 > stepLimit) {
+            return false;
+        }
+        switch (op) {
+            case Opcodes.MOVI_ADD -> {
+                doMOVI(argA[pc], imm[pc], ival[pc]);
+                doADD(argA[pc + 1], argB[pc + 1]);
+            }
+            case Opcodes.MOVI_SUB -> {
+                doMOVI(argA[pc], imm[pc], ival[pc]);
+                doSUB(argA[pc + 1], argB[pc + 1]);
+            }
+            case Opcodes.SUB_JMPZ -> {
+                doSUB(argA[pc], argB[pc]);
+                IP = pc + 2;
+                doJMPZ(argA[pc + 1], argB[pc + 1], sym[pc + 1]);
+            }
+            case Opcodes.LOAD_ADD_STORE -> {
+                doLOAD(argA[pc], addr[pc]);
+                doADD(argA[pc + 1], argB[pc + 1]);
+                doSTORE(argA[pc + 2], addr[pc + 2]);
+            }
+            case Opcodes.PUSH_POP -> {
+                doPUSH(argA[pc]);
+                if (halted) {
+                    // stack overflow: la POP non viene eseguita né contata
+                    return true;
+                }
+                doPOP(argA[pc + 1]);
+            }
+            default -> throw new IllegalStateException("Superistruzione sconosciuta: " + Opcodes.name(op));
+        }
+        if (op != Opcodes.SUB_JMPZ) {
+            IP = pc + len;
+        }
+        stepCount += len - 1;
+        return true;
+    }
+
+    /**
+     * Nodo del motore THREADED: un'istruzione con gli operandi già legati.
+     */
+    private interface Op {
+        void exec(AdvancedCPU cpu);
+    }
+
+    /**
+     * Traduce il programma decodificato in un array di closure, una per istruzione
+     * (es. ADD R0,R1 diventa cpu -> cpu.doADD(0, 1)). L'esecuzione non fa più né parsing
+     * né switch: step() invoca direttamente threaded[IP].
+     */
+    private Op[] compileThreaded() {
+        Op[] code = new Op[ops.length];
+        for (int pc = 0; pc < ops.length; pc++) {
+            int a = argA[pc];
+            int b = argB[pc];
+            int c = argC[pc];
+            double v = imm[pc];
+            long l = ival[pc];
+            long m = addr[pc];
+            String s = sym[pc];
+            int op = fused[pc];
+            // le superistruzioni hanno come ripiego l'istruzione singola originale
+            code[pc] = switch (op < Opcodes.MOVI_ADD ? op : ops[pc]) {
+                case Opcodes.HLT -> AdvancedCPU::doHLT;
+                case Opcodes.NOP -> AdvancedCPU::doNOP;
+                case Opcodes.MOVI -> cpu -> cpu.doMOVI(a, v, l);
+                case Opcodes.MOVI_UNCHECKED -> cpu -> cpu.doMOVIUnchecked(a, v);
+                case Opcodes.MOVR -> cpu -> cpu.doMOVR(a, b);
+                case Opcodes.ADD -> cpu -> cpu.doADD(a, b);
+                case Opcodes.ADD_UNCHECKED -> cpu -> cpu.doADDUnchecked(a, b);
+                case Opcodes.SUB -> cpu -> cpu.doSUB(a, b);
+                case Opcodes.SUB_UNCHECKED -> cpu -> cpu.doSUBUnchecked(a, b);
+                case Opcodes.MUL -> cpu -> cpu.doMUL(a, b);
+                case Opcodes.MUL_UNCHECKED -> cpu -> cpu.doMULUnchecked(a, b);
+                case Opcodes.DIV -> cpu -> cpu.doDIV(a, b);
+                case Opcodes.MOD -> cpu -> cpu.doMOD(a, b);
+                case Opcodes.SHL -> cpu -> cpu.doSHL(a, b);
+                case Opcodes.SHR -> cpu -> cpu.doSHR(a, b);
+                case Opcodes.SAR -> cpu -> cpu.doSAR(a, b);
+                case Opcodes.AND -> cpu -> cpu.doAND(a, b);
+                case Opcodes.OR -> cpu -> cpu.doOR(a, b);
+                case Opcodes.XOR -> cpu -> cpu.doXOR(a, b);
+                case Opcodes.JMP -> cpu -> cpu.doJMP(a, s);
+                case Opcodes.JMPZ -> cpu -> cpu.doJMPZ(a, b, s);
+                case Opcodes.CALL -> cpu -> cpu.doCALL(a, s, b);
+                case Opcodes.RET -> AdvancedCPU::doRET;
+                case Opcodes.PUSH -> cpu -> cpu.doPUSH(a);
+                case Opcodes.POP -> cpu -> cpu.doPOP(a);
+                case Opcodes.STORE -> cpu -> cpu.doSTORE(a, m);
+                case Opcodes.LOAD -> cpu -> cpu.doLOAD(a, m);
+                case Opcodes.CAS -> cpu -> cpu.doCAS(a, b, m);
+                case Opcodes.XCHG -> cpu -> cpu.doXCHG(a, m);
+                case Opcodes.ATOMADD -> cpu -> cpu.doATOMADD(a, m);
+                case Opcodes.FENCE -> AdvancedCPU::doFENCE;
+                case Opcodes.COREID -> cpu -> cpu.doCOREID(a);
+                case Opcodes.CMP -> cpu -> cpu.doCMP(a, b);
+                case Opcodes.TEST -> cpu -> cpu.doTEST(a, b);
+                case Opcodes.JE, Opcodes.JNE, Opcodes.JL, Opcodes.JG, Opcodes.JLE, Opcodes.JGE -> {
+                    int jcc = ops[pc];
+                    yield cpu -> cpu.doJcc(jcc, a, s);
+                }
+                case Opcodes.MEMCPY -> cpu -> cpu.doMEMCPY(a, b, c);
+                case Opcodes.MEMSET -> cpu -> cpu.doMEMSET(a, b, c);
+                case Opcodes.MEMCMP -> cpu -> cpu.doMEMCMP(a, b, c);
+                case Opcodes.VSETL -> cpu -> cpu.doVSETL(a);
+                case Opcodes.VLOAD -> cpu -> cpu.doVLOAD(a, b);
+                case Opcodes.VSTORE -> cpu -> cpu.doVSTORE(a, b);
+                case Opcodes.VADD -> cpu -> cpu.doVADD(a, b);
+                case Opcodes.VMUL -> cpu -> cpu.doVMUL(a, b);
+                case Opcodes.VFMA -> cpu -> cpu.doVFMA(a, b, c);
+                case Opcodes.VREDUCE -> cpu -> cpu.doVREDUCE(a, b);
+                default -> cpu -> cpu.doInvalid(s);
+            };
+            if (op >= Opcodes.MOVI_ADD) {
+                Op single = code[pc];
+                int start = pc;
+                code[pc] = cpu -> {
+                    if (!cpu.execFused(start, op)) {
+                        single.exec(cpu);
+                    }
+                };
+            }
+        }
+        return code;
+    }
+
+    // ---- Istruzioni decodificate, condivise da DECODED e THREADED ----
+
+    private void doHLT() {
+        if (traceInstr) trace(TraceEvent.HLT, 0, 0, 0, null);
+        halted = true;
+    }
+
+    private void doNOP() {
+        if (traceInstr) trace(TraceEvent.NOP, 0, 0, 0, null);
+    }
+
+    // In modalità INTEGER ogni helper lavora su iregs in aritmetica long, senza passare dai double
+
+    private void doMOVI(int a, double val, long lval) {
+        if (integer) {
+            iregs[a] = lval;
+            if (traceInstr) trace(TraceEvent.MOVI, a, 0, lval, null);
+            return;
+        }
+        regs[a] = val;
+        checkOverflow(a);
+        if (traceInstr) trace(TraceEvent.MOVI, a, 0, regs[a], null);
+    }
+
+    private void doMOVR(int a, int b) {
+        if (integer) {
+            iregs[a] = iregs[b];
+            if (traceInstr) trace(TraceEvent.MOVR, a, b, iregs[a], null);
+            return;
+        }
+        // copia di un registro, quindi già finito: niente checkOverflow
+        regs[a] = regs[b];
+        if (traceInstr) trace(TraceEvent.MOVR, a, b, regs[a], null);
+    }
+
+    private void doADD(int a, int b) {
+        if (integer) {
+            long x = iregs[a];
+            long y = iregs[b];
+            long r = x + y;
+            lazyFlags(CC_ADD, x, y);
+            setExact(a, r, ((x ^ r) & (y ^ r)) < 0, TraceEvent.ADD);
+            return;
+        }
+        lazyFlags(CC_ADD, regs[a], regs[b]);
+        regs[a] += regs[b];
+        checkOverflow(a);
+        if (traceInstr) trace(TraceEvent.ADD, a, 0, regs[a], null);
+    }
+
+    private void doSUB(int a, int b) {
+        if (integer) {
+            long x = iregs[a];
+            long y = iregs[b];
+            long r = x - y;
+            lazyFlags(CC_SUB, x, y);
+            setExact(a, r, ((x ^ y) & (x ^ r)) < 0, TraceEvent.SUB);
+            return;
+        }
+        lazyFlags(CC_SUB, regs[a], regs[b]);
+        regs[a] -= regs[b];
+        checkOverflow(a);
+        if (traceInstr) trace(TraceEvent.SUB, a, 0, regs[a], null);
+    }
+
+    private void doMUL(int a, int b) {
+        if (integer) {
+            long x = iregs[a];
+            long y = iregs[b];
+            long r = x * y;
+            setExact(a, r, Math.multiplyHigh(x, y) != (r >> 63), TraceEvent.MUL);
+            return;
+        }
+        regs[a] *= regs[b];
+        checkOverflow(a);
+        if (traceInstr) trace(TraceEvent.MUL, a, 0, regs[a], null);
+    }
+
+    private void doDIV(int a, int b) {
+        if (integer) {
+            long x = iregs[a];
+            long y = iregs[b];
+            if (y == 0) {
+                if (traceErrors) trace(TraceEvent.DIV_BY_ZERO, a, 0, 0, null);
+                iregs[a] = 0;
+                if (traceInstr) trace(TraceEvent.DIV, a, 0, 0, null);
+            } else {
+                // l'unico quoziente fuori range è Long.MIN_VALUE / -1
+                setExact(a, x / y, x == Long.MIN_VALUE && y == -1, TraceEvent.DIV);
+            }
+            return;
+        }
+        if (regs[b] == 0) {
+            if (traceErrors) trace(TraceEvent.DIV_BY_ZERO, a, 0, 0, null);
+            regs[a] = 0;
+        } else {
+            regs[a] /= regs[b];
+            checkOverflow(a);
+        }
+        if (traceInstr) trace(TraceEvent.DIV, a, 0, regs[a], null);
+    }
+
+    private void doMOD(int a, int b) {
+        if (integer) {
+            long y = iregs[b];
+            if (y == 0) {
+                if (traceErrors) trace(TraceEvent.MOD_BY_ZERO, a, 0, 0, null);
+                iregs[a] = 0;
+            } else {
+                iregs[a] %= y;
+            }
+            if (traceInstr) trace(TraceEvent.MOD, a, 0, iregs[a], null);
+            return;
+        }
+        int iD = (int) regs[a];
+        int iS = (int) regs[b];
+        if (iS == 0) {
+            if (traceErrors) trace(TraceEvent.MOD_BY_ZERO, a, 0, 0, null);
+            regs[a] = 0;
+        } else {
+            regs[a] = iD % iS;
+        }
+        if (traceInstr) trace(TraceEvent.MOD, a, 0, regs[a], null);
+    }
+
+    // Varianti senza checkOverflow, solo in modalità FLOAT (vedi RangeAnalysis)
+
+    private void doMOVIUnchecked(int a, double val) {
+        regs[a] = val;
+        if (traceInstr) trace(TraceEvent.MOVI, a, 0, val, null);
+    }
+
+    private void doADDUnchecked(int a, int b) {
+        lazyFlags(CC_ADD, regs[a], regs[b]);
+        regs[a] += regs[b];
+        if (traceInstr) trace(TraceEvent.ADD, a, 0, regs[a], null);
+    }
+
+    private void doSUBUnchecked(int a, int b) {
+        lazyFlags(CC_SUB, regs[a], regs[b]);
+        regs[a] -= regs[b];
+        if (traceInstr) trace(TraceEvent.SUB, a, 0, regs[a], null);
+    }
+
+    private void doMULUnchecked(int a, int b) {
+        regs[a] *= regs[b];
+        if (traceInstr) trace(TraceEvent.MUL, a, 0, regs[a], null);
+    }
+
+    // Shift e operazioni bit a bit: su int in FLOAT, sui 64 bit del registro in INTEGER
+
+    private void doSHL(int a, int count) {
+        if (integer) {
+            setLong(a, iregs[a] << count, TraceEvent.SHIFT);
+        } else {
+            setInt(a, ((int) regs[a]) << count, TraceEvent.SHIFT);
+        }
+    }
+
+    private void doSHR(int a, int count) {
+        if (integer) {
+            setLong(a, iregs[a] >>> count, TraceEvent.SHIFT);
+        } else {
+            setInt(a, ((int) regs[a]) >>> count, TraceEvent.SHIFT);
+        }
+    }
+
+    private void doSAR(int a, int count) {
+        if (integer) {
+            setLong(a, iregs[a] >> count, TraceEvent.SHIFT);
+        } else {
+            setInt(a, ((int) regs[a]) >> count, TraceEvent.SHIFT);
+        }
+    }
+
+    private void doAND(int a, int b) {
+        if (integer) {
+            setLong(a, iregs[a] & iregs[b], TraceEvent.AND);
+        } else {
+            setInt(a, ((int) regs[a]) & ((int) regs[b]), TraceEvent.AND);
+        }
+    }
+
+    private void doOR(int a, int b) {
+        if (integer) {
+            setLong(a, iregs[a] | iregs[b], TraceEvent.OR);
+        } else {
+            setInt(a, ((int) regs[a]) | ((int) regs[b]), TraceEvent.OR);
+        }
+    }
+
+    private void doXOR(int a, int b) {
+        if (integer) {
+            setLong(a, iregs[a] ^ iregs[b], TraceEvent.XOR);
+        } else {
+            setInt(a, ((int) regs[a]) ^ ((int) regs[b]), TraceEvent.XOR);
+        }
+    }
+
+    private void setInt(int a, int val, TraceEvent event) {
+        regs[a] = val;
+        if (traceInstr) trace(event, a, val, val, null);
+    }
+
+    private void setLong(int a, long val, TraceEvent event) {
+        iregs[a] = val;
+        if (traceInstr) trace(event, a, (int) val, val, null);
+    }
+
+    /**
+     * Modalità INTEGER: R a = val, oppure 0 con il bit di overflow se il risultato esatto
+     * non sta in un long.
+     */
+    private void setExact(int a, long val, boolean overflow, TraceEvent event) {
+        if (overflow) {
+            overflow(a);
+            val = 0;
+        }
+        iregs[a] = val;
+        if (traceInstr) trace(event, a, 0, val, null);
+    }
+
+    /**
+     * Valore di R r in entrambe le modalità (in INTEGER oltre 2^53 è arrotondato).
+     */
+    private double reg(int r) {
+        return integer ? iregs[r] : regs[r];
+    }
+
+    private boolean isZero(int r) {
+        return integer ? iregs[r] == 0 : regs[r] == 0;
+    }
+
+    /**
+     * R r = valore letto da memoria o stack: con checkOverflow in FLOAT, troncato a long in INTEGER.
+     */
+    private void setLoaded(int r, double val) {
+        if (integer) {
+            iregs[r] = toInteger(r, val);
+        } else {
+            regs[r] = val;
+            checkOverflow(r);
+        }
+    }
+
+    /**
+     * Conversione esatta double -> long della modalità INTEGER: tronca verso zero, e se val è NaN,
+     * infinito o fuori dal range di long segnala l'overflow su R r e restituisce 0.
+     * Usato anche dai blocchi compilati dal JIT.
+     */
+    long toInteger(int r, double val) {
+        if (val >= -0x1p63 && val < 0x1p63) {
+            return (long) val;
+        }
+        overflow(r);
+        return 0;
+    }
+
+    private void doCMP(int a, int b) {
+        if (integer) {
+            lazyFlags(CC_SUB, iregs[a], iregs[b]);
+        } else {
+            lazyFlags(CC_SUB, regs[a], regs[b]);
+        }
+        if (traceInstr) trace(TraceEvent.CMP, a, b, 0, null);
+    }
+
+    private void doTEST(int a, int b) {
+        if (integer) {
+            lazyFlags(CC_TEST, iregs[a], iregs[b]);
+        } else {
+            lazyFlags(CC_TEST, regs[a], regs[b]);
+        }
+        if (traceInstr) trace(TraceEvent.TEST, a, b, 0, null);
+    }
+
+    /**
+     * JE..JGE (op): salta a target se la condizione sui flag è vera.
+     */
+    private void doJcc(int op, int target, String label) {
+        if (condition(op)) {
+            doJMP(target, label);
+            if (traceInstr) trace(TraceEvent.BRANCH_TAKEN, 0, 0, 0, label);
+        } else {
+            if (traceInstr) trace(TraceEvent.BRANCH_NOT_TAKEN, 0, 0, 0, null);
+        }
+    }
+
+    // ---- Flag di condizione pigri ----
+
+    /**
+     * Registra l'operazione che imposta i flag di condizione (CC_*), senza calcolarli.
+     * Usato anche dai blocchi compilati dal JIT, all'uscita, per l'ultima del blocco.
+     */
+    void lazyFlags(int op, double x, double y) {
+        ccOp = op;
+        ccX = x;
+        ccY = y;
+    }
+
+    void lazyFlags(int op, long x, long y) {
+        ccOp = op;
+        ccIX = x;
+        ccIY = y;
+    }
+
+    /**
+     * Zero/segno/carry dell'ultima operazione registrata. Segno e zero sono quelli del risultato
+     * esatto (anche se l'operazione è andata in overflow), quindi JL/JG confrontano correttamente
+     * gli operandi di CMP. In FLOAT TEST lavora su int come AND, e il carry resta a 0.
+     */
+    private int conditionFlags() {
+        switch (ccOp) {
+            case CC_SUB -> {
+                if (integer) {
+                    return flags(ccIX == ccIY, ccIX < ccIY, Long.compareUnsigned(ccIX, ccIY) < 0);
+                }
+                return flags(ccX == ccY, ccX < ccY, false);
+            }
+            case CC_ADD -> {
+                if (integer) {
+                    long r = ccIX + ccIY;
+                    boolean overflow = ((ccIX ^ r) & (ccIY ^ r)) < 0;
+                    // con overflow il segno esatto è quello degli operandi (uguale per entrambi)
+                    return flags(r == 0 && !overflow, overflow ? ccIX < 0 : r < 0, Long.compareUnsigned(r, ccIX) < 0);
+                }
+                double r = ccX + ccY;
+                return flags(r == 0, r < 0, false);
+            }
+            case CC_TEST -> {
+                long r = integer ? ccIX & ccIY : ((int) ccX) & ((int) ccY);
+                return flags(r == 0, r < 0, false);
+            }
+            default -> {
+                return ccFlags;
+            }
+        }
+    }
+
+    private static int flags(boolean zero, boolean sign, boolean carry) {
+        return (zero ? FLAG_ZERO : 0) | (sign ? FLAG_SIGN : 0) | (carry ? FLAG_CARRY : 0);
+    }
+
+    /**
+     * Condizione del salto op (JE..JGE) sui flag attuali. Usato anche dai blocchi compilati dal JIT.
+     */
+    boolean condition(int op) {
+        int f = conditionFlags();
+        boolean zero = (f & FLAG_ZERO) != 0;
+        boolean sign = (f & FLAG_SIGN) != 0;
+        return switch (op) {
+            case Opcodes.JE -> zero;
+            case Opcodes.JNE -> !zero;
+            case Opcodes.JL -> sign;
+            case Opcodes.JG -> !sign && !zero;
+            case Opcodes.JLE -> sign || zero;
+            case Opcodes.JGE -> !sign;
+            default -> false;
+        };
+    }
+
+    /**
+     * Imposta FLAGS per intero (snapshot, storia, reset): i flag di condizione restano già calcolati.
+     */
+    private void setFlags(int flags) {
+        FLAGS = flags & FLAG_OVERFLOW;
+        ccOp = CC_FLAGS;
+        ccFlags = flags & ~FLAG_OVERFLOW;
+    }
+
+    /**
+     * Per il profiler: true se l'istruzione pc è un salto condizionato che verrà preso.
+     */
+    private boolean branchTaken(int pc) {
+        int op = ops[pc];
+        if (op == Opcodes.JMPZ) {
+            return isZero(argA[pc]);
+        }
+        return Opcodes.isFlagJump(op) && condition(op);
+    }
+
+    private void doJMPZ(int r, int target, String label) {
+        if (isZero(r)) {
+            doJMP(target, label);
+            if (traceInstr) trace(TraceEvent.JMPZ_TAKEN, 0, 0, 0, label);
+        } else {
+            if (traceInstr) trace(TraceEvent.JMPZ_NOT_TAKEN, 0, 0, 0, null);
+        }
+    }
+
+    private void doPUSH(int a) {
+        push(reg(a));
+        if (traceInstr) trace(TraceEvent.PUSH, SP, 0, reg(a), null);
+    }
+
+    private void doPOP(int a) {
+        setLoaded(a, pop());
+        if (traceInstr) trace(TraceEvent.POP, a, 0, reg(a), null);
+    }
+
+    private void doSTORE(int a, long address) {
+        memory.store(address, reg(a));
+        if (traceInstr) trace(TraceEvent.STORE, address, 0, reg(a), null);
+    }
+
+    private void doLOAD(int a, long address) {
+        setLoaded(a, memory.load(address));
+        if (traceInstr) trace(TraceEvent.LOAD, a, 0, reg(a), null);
+    }
+
+    /**
+     * CAS: se data[addr] vale R a lo sostituisce con R b; in ogni caso R a riceve il valore trovato
+     * (quindi resta uguale solo se lo scambio è riuscito).
+     */
+    private void doCAS(int a, int b, long address) {
+        double expected = reg(a);
+        double found = memory.compareAndExchange(address, expected, reg(b));
+        setLoaded(a, found);
+        if (traceInstr) {
+            boolean swapped = Double.doubleToRawLongBits(found) == Double.doubleToRawLongBits(expected);
+            trace(TraceEvent.CAS, address, a, reg(a), swapped ? "riuscito" : "fallito");
+        }
+    }
+
+    private void doXCHG(int a, long address) {
+        setLoaded(a, memory.getAndSet(address, reg(a)));
+        if (traceInstr) trace(TraceEvent.XCHG, address, a, reg(a), null);
+    }
+
+    private void doATOMADD(int a, long address) {
+        setLoaded(a, memory.getAndAdd(address, reg(a)));
+        if (traceInstr) trace(TraceEvent.ATOMADD, address, a, reg(a), null);
+    }
+
+    /**
+     * FENCE: barriera completa, ordina gli accessi di questo core rispetto a quelli degli altri.
+     */
+    private void doFENCE() {
+        VarHandle.fullFence();
+        if (traceInstr) trace(TraceEvent.FENCE, 0, 0, 0, null);
+    }
+
+    private void doCOREID(int a) {
+        if (integer) {
+            iregs[a] = coreId;
+        } else {
+            regs[a] = coreId;
+        }
+        if (traceInstr) trace(TraceEvent.COREID, a, 0, coreId, null);
+    }
+
+    // Istruzioni a blocchi: il range si verifica una volta per istruzione, poi la memoria
+    // copia/riempie/confronta in blocco (arraycopy, Arrays.fill/mismatch o MemorySegment)
+
+    private void doMEMCPY(int dst, int src, int n) {
+        long to = cell(dst);
+        long from = cell(src);
+        long len = cell(n);
+        if (checkBlock("MEMCPY", from, len) && checkBlock("MEMCPY", to, len)) {
+            memory.copy(from, to, len);
+            if (traceInstr) trace(TraceEvent.MEMCPY, to, 0, len, null);
+        }
+    }
+
+    private void doMEMSET(int dst, int v, int n) {
+        long to = cell(dst);
+        long len = cell(n);
+        if (checkBlock("MEMSET", to, len)) {
+            memory.fill(to, len, reg(v));
+            if (traceInstr) trace(TraceEvent.MEMSET, to, 0, len, null);
+        }
+    }
+
+    /**
+     * R n = indice della prima cella diversa (len se sono tutte uguali); JE salta se le zone sono
+     * uguali e JL se la prima differenza è minore in R a. Uguaglianza e ordine sono quelli di
+     * Double.compare (vedi Memory.mismatch), su ogni memoria.
+     */
+    private void doMEMCMP(int a, int b, int n) {
+        long first = cell(a);
+        long second = cell(b);
+        long len = cell(n);
+        if (!checkBlock("MEMCMP", first, len) || !checkBlock("MEMCMP", second, len)) {
+            return;
+        }
+        long i = memory.mismatch(first, second, len);
+        ccOp = CC_FLAGS;
+        if (i < 0) {
+            i = len;
+            ccFlags = FLAG_ZERO;
+        } else {
+            // stesso ordine di Memory.mismatch: -0.0 < 0.0, NaN sopra tutti, così i flag non
+            // contraddicono mai la differenza trovata
+            ccFlags = Double.compare(memory.load(first + i), memory.load(second + i)) < 0 ? FLAG_SIGN : 0;
+        }
+        if (integer) {
+            iregs[n] = i;
+        } else {
+            regs[n] = i;
+        }
+        if (traceInstr) trace(TraceEvent.MEMCMP, n, 0, i, null);
+    }
+
+    // Indirizzo o lunghezza contenuti in R r (troncati come gli operandi di MOD in FLOAT)
+    private long cell(int r) {
+        return integer ? iregs[r] : (long) regs[r];
+    }
+
+    /**
+     * True se le celle [start, start + len) sono tutte in memory; altrimenti errore e HALT.
+     */
+    private boolean checkBlock(String op, long start, long len) {
+        if (start >= 0 && len >= 0 && start <= memory.size() - len) {
+            return true;
+        }
+        if (traceErrors) {
+            trace(TraceEvent.ERROR, 0, 0, 0, "[CPU] " + op + ": blocco fuori range " + start + ", " + len + " celle");
+        }
+        halted = true;
+        return false;
+    }
+
+    // Istruzioni vettoriali: VLOAD/VSTORE verificano il range una volta e copiano VL celle in blocco,
+    // l'aritmetica lavora sulle prime VL componenti dei registri (vedi VectorUnit)
+
+    /**
+     * VL = R a limitato a [0, VLEN]; R a riceve VL, così un ciclo a strisce sa quante celle avanzare.
+     */
+    private void doVSETL(int a) {
+        VL = (int) Math.max(0, Math.min(cell(a), VLEN));
+        if (integer) {
+            iregs[a] = VL;
+        } else {
+            regs[a] = VL;
+        }
+        if (traceInstr) trace(TraceEvent.VSETL, a, 0, VL, null);
+    }
+
+    private void doVLOAD(int v, int r) {
+        long from = cell(r);
+        if (checkBlock("VLOAD", from, VL)) {
+            memory.loadAll(from, vregs, v * VLEN, VL);
+            if (traceInstr) trace(TraceEvent.VLOAD, v, 0, from, null);
+        }
+    }
+
+    private void doVSTORE(int v, int r) {
+        long to = cell(r);
+        if (checkBlock("VSTORE", to, VL)) {
+            memory.storeAll(to, vregs, v * VLEN, VL);
+            if (traceInstr) trace(TraceEvent.VSTORE, v, 0, to, null);
+        }
+    }
+
+    private void doVADD(int d, int v) {
+        VectorUnit.add(vregs, d * VLEN, v * VLEN, VL);
+        if (traceInstr) trace(TraceEvent.VADD, d, v, VL, null);
+    }
+
+    private void doVMUL(int d, int v) {
+        VectorUnit.mul(vregs, d * VLEN, v * VLEN, VL);
+        if (traceInstr) trace(TraceEvent.VMUL, d, v, VL, null);
+    }
+
+    // V d += V a * V b
+    private void doVFMA(int d, int a, int b) {
+        VectorUnit.fma(vregs, d * VLEN, a * VLEN, b * VLEN, VL);
+        if (traceInstr) trace(TraceEvent.VFMA, d, a, b, null);
+    }
+
+    /**
+     * R a = somma delle prime VL componenti di V v; il risultato passa dal controllo di overflow
+     * come un LOAD (i registri vettoriali, come la memoria, possono contenere NaN e Infinity).
+     */
+    private void doVREDUCE(int a, int v) {
+        setLoaded(a, VectorUnit.sum(vregs, v * VLEN, VL));
+        if (traceInstr) trace(TraceEvent.VREDUCE, a, v, reg(a), null);
+    }
+
+    /**
+     * INVALID: errore rilevato in fase di decodifica, logga il messaggio e va in HALT.
+     */
+    private void doInvalid(String message) {
+        if (traceErrors) trace(TraceEvent.ERROR, 0, 0, 0, message);
+        halted = true;
+    }
+
+    /**
+     * Decodifica/esegue l'istruzione 'line'.
+     * Supporta GOTO, SHIFT, CALL SUB(2), MOD, overflow, ecc.
+     */
+    private void execInstruction(String line) {
+        if (line.isEmpty()) {
+            return;
+        }
+        // Esempio sintassi:  SHIFT R0 LEFT 2   /  CALL SUB(2)
+        try {
+            // Riconosci istruzione e argomenti
+            // Esempio basico: tokenizziamo su virgole e spazi
+            // Cerchiamo pattern per CALL SUB(2)
+            if (line.toUpperCase().startsWith("CALL")) {
+                // es. CALL SUB(2)
+                line = line.substring(4).trim();
+                // splitted -> "SUB(2)"
+                int parOpen = line.indexOf('(');
+                int parClose = line.indexOf(')');
+                int paramCount = 0;
+                String labelName = line;
+                if (parOpen > 0 && parClose > parOpen) {
+                    // labelName = substring(0, parOpen)
+                    labelName = line.substring(0, parOpen).trim();
+                    String paramStr = line.substring(parOpen + 1, parClose).trim();
+                    if (!paramStr.isEmpty()) {
+                        paramCount = Integer.parseInt(paramStr);
+                    }
+                }
+                doCALL(argA[IP - 1], labelName, paramCount);
+                return;
+            }
+
+            String[] parts = line.split("[,\\s]+");
+            // Esempio "MOVI R0 10" => [MOVI, R0, 10]
+            String opcode = parts[0].toUpperCase();
+            if (integer && execIntegerInstruction(opcode, parts)) {
+                return;
+            }
+            switch (opcode) {
+                case "HLT":
+                    if (traceInstr) trace(TraceEvent.HLT, 0, 0, 0, null);
+                    halted = true;
+                    return;
+                case "NOP":
+                    if (traceInstr) trace(TraceEvent.NOP, 0, 0, 0, null);
+                    return;
+                case "MOVI": {
+                    // MOVI R0 10
+                    int r = Program.parseRegister(parts[1]);
+                    double val = Double.parseDouble(parts[2]);
+                    regs[r] = val;
+                    checkOverflow(r);
+                    if (traceInstr) trace(TraceEvent.MOVI, r, 0, regs[r], null);
+                }
+                break;
+                case "MOVR": {
+                    // MOVR R0 R1
+                    int rDest = Program.parseRegister(parts[1]);
+                    int rSrc = Program.parseRegister(parts[2]);
+                    regs[rDest] = regs[rSrc];
+                    checkOverflow(rDest);
+                    if (traceInstr) trace(TraceEvent.MOVR, rDest, rSrc, regs[rDest], null);
+                }
+                break;
+                case "ADD": {
+                    int rD = Program.parseRegister(parts[1]);
+                    int rS = Program.parseRegister(parts[2]);
+                    lazyFlags(CC_ADD, regs[rD], regs[rS]);
+                    regs[rD] += regs[rS];
+                    checkOverflow(rD);
+                    if (traceInstr) trace(TraceEvent.ADD, rD, 0, regs[rD], null);
+                }
+                break;
+                case "SUB": {
+                    int rD = Program.parseRegister(parts[1]);
+                    int rS = Program.parseRegister(parts[2]);
+                    lazyFlags(CC_SUB, regs[rD], regs[rS]);
+                    regs[rD] -= regs[rS];
+                    checkOverflow(rD);
+                    if (traceInstr) trace(TraceEvent.SUB, rD, 0, regs[rD], null);
+                }
+                break;
+                case "MUL": {
+                    int rD = Program.parseRegister(parts[1]);
+                    int rS = Program.parseRegister(parts[2]);
+                    regs[rD] *= regs[rS];
+                    checkOverflow(rD);
+                    if (traceInstr) trace(TraceEvent.MUL, rD, 0, regs[rD], null);
+                }
+                break;
+                case "DIV": {
+                    int rD = Program.parseRegister(parts[1]);
+                    int rS = Program.parseRegister(parts[2]);
+                    if (regs[rS] == 0) {
+                        if (traceErrors) trace(TraceEvent.DIV_BY_ZERO, rD, 0, 0, null);
+                        regs[rD] = 0;
+                    } else {
+                        regs[rD] /= regs[rS];
+                        checkOverflow(rD);
+                    }
+                    if (traceInstr) trace(TraceEvent.DIV, rD, 0, regs[rD], null);
+                }
+                break;
+                case "MOD": {
+                    // MOD R0 R1 => R0 = (int)R0 % (int)R1
+                    int rD = Program.parseRegister(parts[1]);
+                    int rS = Program.parseRegister(parts[2]);
+                    int iD = (int) regs[rD];
+                    int iS = (int) regs[rS];
+                    if (iS == 0) {
+                        if (traceErrors) trace(TraceEvent.MOD_BY_ZERO, rD, 0, 0, null);
+                        regs[rD] = 0;
+                    } else {
+                        regs[rD] = iD % iS;
+                    }
+                    checkOverflow(rD);
+                    if (traceInstr) trace(TraceEvent.MOD, rD, 0, regs[rD], null);
+                }
+                break;
+                case "SHIFT": {
+                    // SHIFT R0 LEFT 2 / SHIFT R0 RIGHT 3 / SHIFT R0 ARITH 1
+                    int rD = Program.parseRegister(parts[1]);
+                    String direction = parts[2].toUpperCase();
+                    int count = Integer.parseInt(parts[3]);
+                    int val = (int) regs[rD];
+                    switch (direction) {
+                        case "LEFT" -> val <<= count;
+                        case "RIGHT" -> val >>>= count;  // logical
+                        case "ARITH" -> val >>= count;   // arithmetic
+                        default -> {
+                            if (traceErrors) trace(TraceEvent.ERROR, 0, 0, 0, "[CPU] SHIFT: direzione sconosciuta: " + direction);
+                            halted = true;
+                            return;
+                        }
+                    }
+                    regs[rD] = val;
+                    if (traceInstr) trace(TraceEvent.SHIFT, rD, val, val, null);
+                }
+                break;
+                case "AND": {
+                    int rD = Program.parseRegister(parts[1]);
+                    int rS = Program.parseRegister(parts[2]);
+                    int val = ((int) regs[rD]) & ((int) regs[rS]);
+                    regs[rD] = val;
+                    if (traceInstr) trace(TraceEvent.AND, rD, val, val, null);
+                }
+                break;
+                case "OR": {
+                    int rD = Program.parseRegister(parts[1]);
+                    int rS = Program.parseRegister(parts[2]);
+                    int val = ((int) regs[rD]) | ((int) regs[rS]);
+                    regs[rD] = val;
+                    if (traceInstr) trace(TraceEvent.OR, rD, val, val, null);
+                }
+                break;
+                case "XOR": {
+                    int rD = Program.parseRegister(parts[1]);
+                    int rS = Program.parseRegister(parts[2]);
+                    int val = ((int) regs[rD]) ^ ((int) regs[rS]);
+                    regs[rD] = val;
+                    if (traceInstr) trace(TraceEvent.XOR, rD, val, val, null);
+                }
+                break;
+                // i target delle label sono già risolti dall'assemblatore (IP è già avanzato)
+                case "JMP":
+                case "GOTO": {
+                    // GOTO LABEL
+                    String label = parts[1].toUpperCase();
+                    doJMP(argA[IP - 1], label);
+                }
+                break;
+                case "JMPZ": {
+                    // JMPZ R0 LABEL
+                    int r = Program.parseRegister(parts[1]);
+                    String label = parts[2].toUpperCase();
+                    if (regs[r] == 0) {
+                        doJMP(argB[IP - 1], label);
+                        if (traceInstr) trace(TraceEvent.JMPZ_TAKEN, 0, 0, 0, label);
+                    } else {
+                        if (traceInstr) trace(TraceEvent.JMPZ_NOT_TAKEN, 0, 0, 0, null);
+                    }
+                }
+                break;
+                case "CALL": {
+                    // in teoria gestito sopra, ma se line= "CALL SUB"
+                    // potremmo gestire paramCount=0
+                    String label = parts[1].toUpperCase();
+                    doCALL(argA[IP - 1], label, 0);
+                }
+                break;
+                case "RET": {
+                    doRET();
+                }
+                break;
+                case "PUSH": {
+                    int r = Program.parseRegister(parts[1]);
+                    push(regs[r]);
+                    if (traceInstr) trace(TraceEvent.PUSH, SP, 0, regs[r], null);
+                }
+                break;
+                case "POP": {
+                    int r = Program.parseRegister(parts[1]);
+                    regs[r] = pop();
+                    checkOverflow(r);
+                    if (traceInstr) trace(TraceEvent.POP, r, 0, regs[r], null);
+                }
+                break;
+                case "STORE": {
+                    // STORE R0, 10 => data[10] = R0
+                    int r = Program.parseRegister(parts[1]);
+                    long addr = Long.parseLong(parts[2]);
+                    if (addr < 0 || addr >= memory.size()) {
+                        if (traceErrors) trace(TraceEvent.ERROR, 0, 0, 0, "[CPU] STORE: indirizzo fuori range " + addr);
+                        halted = true;
+                        return;
+                    }
+                    memory.store(addr, regs[r]);
+                    if (traceInstr) trace(TraceEvent.STORE, addr, 0, regs[r], null);
+                }
+                break;
+                case "LOAD": {
+                    // LOAD R1, 20 => R1= data[20]
+                    int r = Program.parseRegister(parts[1]);
+                    long addr = Long.parseLong(parts[2]);
+                    if (addr < 0 || addr >= memory.size()) {
+                        if (traceErrors) trace(TraceEvent.ERROR, 0, 0, 0, "[CPU] LOAD: indirizzo fuori range " + addr);
+                        halted = true;
+                        return;
+                    }
+                    regs[r] = memory.load(addr);
+                    checkOverflow(r);
+                    if (traceInstr) trace(TraceEvent.LOAD, r, 0, regs[r], null);
+                }
+                break;
+                case "CAS": {
+                    // CAS R0, R1, 10 => se data[10]==R0 allora data[10]=R1; R0=valore trovato
+                    int r = Program.parseRegister(parts[1]);
+                    int rNew = Program.parseRegister(parts[2]);
+                    long addr = Long.parseLong(parts[3]);
+                    if (addr < 0 || addr >= memory.size()) {
+                        if (traceErrors) trace(TraceEvent.ERROR, 0, 0, 0, "[CPU] CAS: indirizzo fuori range " + addr);
+                        halted = true;
+                        return;
+                    }
+                    doCAS(r, rNew, addr);
+                }
+                break;
+                case "XCHG":
+                case "ATOMADD": {
+                    int r = Program.parseRegister(parts[1]);
+                    long addr = Long.parseLong(parts[2]);
+                    if (addr < 0 || addr >= memory.size()) {
+                        if (traceErrors) trace(TraceEvent.ERROR, 0, 0, 0, "[CPU] " + opcode + ": indirizzo fuori range " + addr);
+                        halted = true;
+                        return;
+                    }
+                    if (opcode.equals("XCHG")) {
+                        doXCHG(r, addr);
+                    } else {
+                        doATOMADD(r, addr);
+                    }
+                }
+                break;
+                case "FENCE":
+                    doFENCE();
+                    break;
+                case "CMP":
+                    doCMP(Program.parseRegister(parts[1]), Program.parseRegister(parts[2]));
+                    break;
+                case "TEST":
+                    doTEST(Program.parseRegister(parts[1]), Program.parseRegister(parts[2]));
+                    break;
+                case "JE":
+                case "JNE":
+                case "JL":
+                case "JG":
+                case "JLE":
+                case "JGE":
+                    doJcc(Opcodes.flagJump(opcode), argA[IP - 1], parts[1].toUpperCase());
+                    break;
+                case "COREID":
+                    doCOREID(Program.parseRegister(parts[1]));
+                    break;
+                case "MEMCPY":
+                case "MEMSET":
+                case "MEMCMP": {
+                    int a = Program.parseRegister(parts[1]);
+                    int b = Program.parseRegister(parts[2]);
+                    int n = Program.parseRegister(parts[3]);
+                    if (opcode.equals("MEMCPY")) {
+                        doMEMCPY(a, b, n);
+                    } else if (opcode.equals("MEMSET")) {
+                        doMEMSET(a, b, n);
+                    } else {
+                        doMEMCMP(a, b, n);
+                    }
+                }
+                break;
+                case "VSETL":
+                    doVSETL(Program.parseRegister(parts[1]));
+                    break;
+                case "VLOAD":
+                    doVLOAD(Program.parseVectorRegister(parts[1]), Program.parseRegister(parts[2]));
+                    break;
+                case "VSTORE":
+                    doVSTORE(Program.parseVectorRegister(parts[1]), Program.parseRegister(parts[2]));
+                    break;
+                case "VADD":
+                    doVADD(Program.parseVectorRegister(parts[1]), Program.parseVectorRegister(parts[2]));
+                    break;
+                case "VMUL":
+                    doVMUL(Program.parseVectorRegister(parts[1]), Program.parseVectorRegister(parts[2]));
+                    break;
+                case "VFMA":
+                    doVFMA(Program.parseVectorRegister(parts[1]), Program.parseVectorRegister(parts[2]),
+                            Program.parseVectorRegister(parts[3]));
+                    break;
+                case "VREDUCE":
+                    doVREDUCE(Program.parseRegister(parts[1]), Program.parseVectorRegister(parts[2]));
+                    break;
+                default:
+                    if (traceErrors) trace(TraceEvent.ERROR, 0, 0, 0, "[CPU] Istruzione sconosciuta: " + opcode);
+                    halted = true;
+                    break;
+            }
+        } catch (Exception ex) {
+            if (traceErrors) trace(TraceEvent.ERROR, 0, 0, 0, "[CPU] Errore execInstruction: " + ex.getMessage());
+            halted = true;
+        }
+    }
+
+    /**
+     * Modalità INTEGER dell'engine INTERPRETED: le istruzioni che usano i registri, con gli operandi
+     * ricavati dal testo come sempre, passano dagli helper interi. Restituisce false per le altre,
+     * che execInstruction esegue come in modalità FLOAT.
+     */
+    private boolean execIntegerInstruction(String opcode, String[] parts) {
+        switch (opcode) {
+            case "MOVI" -> {
+                int r = Program.parseRegister(parts[1]);
+                long val = Long.parseLong(parts[2]);
+                doMOVI(r, val, val);
+            }
+            case "MOVR" -> doMOVR(Program.parseRegister(parts[1]), Program.parseRegister(parts[2]));
+            case "ADD" -> doADD(Program.parseRegister(parts[1]), Program.parseRegister(parts[2]));
+            case "SUB" -> doSUB(Program.parseRegister(parts[1]), Program.parseRegister(parts[2]));
+            case "MUL" -> doMUL(Program.parseRegister(parts[1]), Program.parseRegister(parts[2]));
+            case "DIV" -> doDIV(Program.parseRegister(parts[1]), Program.parseRegister(parts[2]));
+            case "MOD" -> doMOD(Program.parseRegister(parts[1]), Program.parseRegister(parts[2]));
+            case "AND" -> doAND(Program.parseRegister(parts[1]), Program.parseRegister(parts[2]));
+            case "OR" -> doOR(Program.parseRegister(parts[1]), Program.parseRegister(parts[2]));
+            case "XOR" -> doXOR(Program.parseRegister(parts[1]), Program.parseRegister(parts[2]));
+            case "SHIFT" -> {
+                int rD = Program.parseRegister(parts[1]);
+                String direction = parts[2].toUpperCase();
+                int count = Integer.parseInt(parts[3]);
+                switch (direction) {
+                    case "LEFT" -> doSHL(rD, count);
+                    case "RIGHT" -> doSHR(rD, count);
+                    case "ARITH" -> doSAR(rD, count);
+                    default -> {
+                        if (traceErrors) trace(TraceEvent.ERROR, 0, 0, 0, "[CPU] SHIFT: direzione sconosciuta: " + direction);
+                        halted = true;
+                    }
+                }
+            }
+            case "JMPZ" -> {
+                int r = Program.parseRegister(parts[1]);
+                doJMPZ(r, argB[IP - 1], parts[2].toUpperCase());
+            }
+            case "PUSH" -> doPUSH(Program.parseRegister(parts[1]));
+            case "POP" -> doPOP(Program.parseRegister(parts[1]));
+            case "STORE", "LOAD" -> {
+                int r = Program.parseRegister(parts[1]);
+                long addr = Long.parseLong(parts[2]);
+                if (addr < 0 || addr >= memory.size()) {
+                    if (traceErrors) trace(TraceEvent.ERROR, 0, 0, 0, "[CPU] " + opcode + ": indirizzo fuori range " + addr);
+                    halted = true;
+                } else if (opcode.equals("STORE")) {
+                    doSTORE(r, addr);
+                } else {
+                    doLOAD(r, addr);
+                }
+            }
+            default -> {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Salto a un target già risolto (-1 = label sconosciuta).
+     */
+    private void doJMP(int target, String label) {
+        if (target < 0) {
+            if (traceErrors) trace(TraceEvent.JMP_UNKNOWN_LABEL, 0, 0, 0, label);
+            halted = true;
+            return;
+        }
+        IP = target;
+        if (traceInstr) trace(TraceEvent.JMP, IP, 0, 0, label);
+    }
+
+    private void doCALL(int target, String label, int paramCount) {
+        if (target < 0) {
+            if (traceErrors) trace(TraceEvent.CALL_UNKNOWN_LABEL, 0, 0, 0, label);
+            halted = true;
+            return;
+        }
+        // push IP
+        push(IP);
+        // push paramCount
+        push(paramCount);
+        IP = target;
+        if (traceInstr) trace(TraceEvent.CALL, IP, paramCount, 0, null);
+    }
+
+    private void doRET() {
+        // pop paramCount
+        int paramCount = (int) pop();
+        // pop paramCount valori (scartiamo)
+        for (int i = 0; i < paramCount; i++) {
+            pop();
+        }
+        // pop returnAddress
+        IP = (int) pop();
+        if (traceInstr) trace(TraceEvent.RET, IP, paramCount, 0, null);
+    }
+
+    private void push(double val) {
+        if (SP < 0) {
+            if (traceErrors) trace(TraceEvent.STACK_OVERFLOW, 0, 0, 0, null);
+            halted = true;
+            return;
+        }
+        stack.store(SP, val);
+        SP--;
+    }
+
+    private double pop() {
+        if (SP >= stackTop) {
+            if (traceErrors) trace(TraceEvent.STACK_UNDERFLOW, 0, 0, 0, null);
+            halted = true;
+            return 0;
+        }
+        SP++;
+        return stack.load(SP);
+    }
+
+    /**
+     * Controlla se regs[r] è NaN o Infinity. Se sì, setta regs[r]=0 e un flag di overflow.
+     */
+    private void checkOverflow(int r) {
+        double val = regs[r];
+        if (Double.isNaN(val) || Double.isInfinite(val)) {
+            overflow(r);
+            regs[r] = 0;
+        }
+    }
+
+    /**
+     * Registra l'overflow su R r (log + bit di FLAGS). Usato anche dai blocchi compilati dal JIT,
+     * che azzerano da soli il registro nella loro copia locale.
+     */
+    void overflow(int r) {
+        if (traceErrors) trace(TraceEvent.OVERFLOW, r, 0, 0, null);
+        // settiamo un bit di FLAGS, es. bit 0x01
+        FLAGS |= FLAG_OVERFLOW;
+    }
+
+    /**
+     * Divisione per zero in un blocco JIT, che azzera da solo R r: stesso evento dell'interprete.
+     */
+    void divByZero(int r) {
+        if (traceErrors) trace(TraceEvent.DIV_BY_ZERO, r, 0, 0, null);
+    }
+
+    /**
+     * Come {@link #divByZero}, per MOD.
+     */
+    void modByZero(int r) {
+        if (traceErrors) trace(TraceEvent.MOD_BY_ZERO, r, 0, 0, null);
+    }
+
+    /**
+     * Invia un evento al sink. Va chiamato solo dietro il flag del livello dell'evento
+     * (traceErrors / traceInstr / traceVerbose), che garantisce anche traceSink != null.
+     */
+    private void trace(TraceEvent event, long a, int b, double value, String text) {
+        traceSink.record(event, a, b, value, text);
+    }
+
+    // GETTER e SETTER vari
+    public Program getProgram() {
+        return program;
+    }
+
+    public TraceSink getTraceSink() {
+        return traceSink;
+    }
+
+    public Memory getMemory() {
+        return memory;
+    }
+
+    public Memory getStack() {
+        return stack;
+    }
+
+    /**
+     * Valore di R i; in modalità INTEGER convertito in double (vedi {@link #getIntegerRegister}).
+     */
+    public double getRegister(int i) {
+        return reg(i);
+    }
+
+    /**
+     * Valore esatto di R i in modalità INTEGER; in FLOAT il registro troncato a long.
+     */
+    public long getIntegerRegister(int i) {
+        return integer ? iregs[i] : (long) regs[i];
+    }
+
+    /**
+     * Copia delle VLEN componenti di V v (anche quelle oltre VL).
+     */
+    public double[] getVectorRegister(int v) {
+        return Arrays.copyOfRange(vregs, v * VLEN, (v + 1) * VLEN);
+    }
+
+    /**
+     * Lunghezza vettoriale impostata da VSETL (VLEN all'avvio).
+     */
+    public int getVectorLength() {
+        return VL;
+    }
+
+    public Program.Mode getMode() {
+        return program.mode;
+    }
+
+    public int getIP() {
+        return IP;
+    }
+
+    /**
+     * Cima dello stack: la prossima PUSH scrive qui (la cella più alta all'avvio).
+     */
+    public int getSP() {
+        return SP;
+    }
+
+    /**
+     * Istruzioni eseguite finora.
+     */
+    public long getStepCount() {
+        return stepCount;
+    }
+
+    public long getStepLimit() {
+        return stepLimit;
+    }
+
+    /**
+     * Numero massimo di istruzioni prima dell'HALT forzato; UNLIMITED_STEPS per nessun limite.
+     */
+    public void setStepLimit(long stepLimit) {
+        this.stepLimit = stepLimit;
+    }
+
+    /**
+     * FLAGS completo: bit di overflow più i flag di condizione (FLAG_*), calcolati qui se serve.
+     */
+    public int getFLAGS() {
+        return FLAGS | conditionFlags();
+    }
+
+    public boolean isHalted() {
+        return halted;
+    }
+
+    public void setHalted(boolean halted) {
+        this.halted = halted;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public void setRunning(boolean run) {
+        this.running = run;
+    }
+
+    public TraceLevel getTraceLevel() {
+        return traceLevel;
+    }
+
+    /**
+     * Imposta il livello di trace; senza sink il livello effettivo resta OFF.
+     */
+    public void setTraceLevel(TraceLevel level) {
+        this.traceLevel = traceSink == null ? TraceLevel.OFF : level;
+        traceErrors = traceLevel.compareTo(TraceLevel.ERROR) >= 0;
+        traceInstr = traceLevel.compareTo(TraceLevel.INSTR) >= 0;
+        traceVerbose = traceLevel.compareTo(TraceLevel.VERBOSE) >= 0;
+    }
+
+    /**
+     * Cattura lo stato della CPU (vedi {@link CpuSnapshot}). Con {@link PagedMemory} la memoria
+     * è condivisa copy-on-write e lo snapshot costa quanto le pagine sporcate dal precedente.
+     *
+     * @throws UnsupportedOperationException se la memoria non supporta gli snapshot
+     */
+    public CpuSnapshot snapshot() {
+        return new CpuSnapshot(regs.clone(), iregs.clone(), vregs.clone(), VL, IP, SP, getFLAGS(), stepCount,
+                halted, memory.snapshot(), stack == memory ? null : stack.snapshot());
+    }
+
+    /**
+     * Riporta la CPU allo stato di uno snapshot. Il programma non fa parte dello snapshot:
+     * va ripristinato su una CPU caricata con lo stesso sorgente.
+     */
+    public void restore(CpuSnapshot snapshot) {
+        restoreState(snapshot);
+        if (journal != null) {
+            // la storia registrata non porta più allo stato attuale
+            restartJournal();
+        }
+    }
+
+    /**
+     * Riporta la CPU allo stato appena caricata: registri, IP, SP, FLAGS, passi e HALT azzerati,
+     * memoria (e stack separato) azzerata con i valori di [DATA] dalla cella 0. Una memoria
+     * persistente (file mappato, vedi {@link Memory#isPersistent()}) non viene azzerata: come al
+     * caricamento si riscrivono solo le celle di [DATA], e il resto del file resta. Il programma
+     * decodificato, le closure THREADED e i blocchi JIT già compilati restano, quindi riusare
+     * una CPU costa solo la copia della memoria (vedi {@link CpuPool}).
+     */
+    public void reset() {
+        reset(program.data);
+    }
+
+    /**
+     * Come {@link #reset()}, ma la memoria riparte da dataImage invece che dai valori di [DATA].
+     */
+    public void reset(double[] dataImage) {
+        if (dataImage.length > memory.size()) {
+            throw new IllegalArgumentException("Immagine dati troppo grande: " + dataImage.length + " celle");
+        }
+        if (!memory.isPersistent()) {
+            memory.clear();
+        }
+        if (stack != memory && !stack.isPersistent()) {
+            stack.clear();
+        }
+        memory.storeAll(0, dataImage);
+        Arrays.fill(regs, 0);
+        Arrays.fill(iregs, 0);
+        Arrays.fill(vregs, 0);
+        VL = VLEN;
+        IP = 0;
+        SP = stackTop;
+        setFlags(0);
+        stepCount = 0;
+        halted = false;
+        running = false;
+        if (journal != null) {
+            restartJournal();
+        }
+    }
+
+    /**
+     * Riporta le impostazioni a quelle di una CPU appena costruita: engine DECODED, limite di passi
+     * di default, storia e profiling spenti, livello di trace del costruttore. Non tocca lo stato
+     * (vedi {@link #reset()}) né le closure THREADED e i blocchi JIT già compilati.
+     * Lo usa {@link CpuPool}, così una CPU riusata non eredita le impostazioni del job precedente.
+     */
+    void restoreSettings() {
+        engine = Engine.DECODED;
+        stepLimit = DEFAULT_STEP_LIMIT;
+        journal = null;
+        profiler = null;
+        setTraceLevel(initialTraceLevel);
+    }
+
+    private void restoreState(CpuSnapshot snapshot) {
+        if ((snapshot.stack == null) != (stack == memory)) {
+            throw new IllegalArgumentException("Snapshot preso con un'altra disposizione dello stack");
+        }
+        memory.restore(snapshot.memory);
+        if (snapshot.stack != null) {
+            stack.restore(snapshot.stack);
+        }
+        System.arraycopy(snapshot.regs, 0, regs, 0, regs.length);
+        System.arraycopy(snapshot.iregs, 0, iregs, 0, iregs.length);
+        System.arraycopy(snapshot.vregs, 0, vregs, 0, vregs.length);
+        VL = snapshot.vl;
+        IP = snapshot.ip;
+        SP = snapshot.sp;
+        setFlags(snapshot.flags);
+        stepCount = snapshot.stepCount;
+        halted = snapshot.halted;
+    }
+
+    /**
+     * Attiva/disattiva la storia per il debug all'indietro ({@link #stepBack()}, {@link #runBackwards}).
+     * Finché è attiva i blocchi JIT non vengono usati. Riattivarla riparte con una storia vuota.
+     * Tutta la memoria della storia, a parte i checkpoint, viene allocata qui.
+     *
+     * @param capacity          step annullabili direttamente dal buffer; oltre si passa dai checkpoint
+     * @param blockCells        celle salvate per MEMCPY/MEMSET/VSTORE e registri vettoriali; quando
+     *                          sono esaurite si perdono gli step più vecchi del buffer
+     * @param checkpointBytes   limite (stimato con {@link Memory#snapshotBytes()}) dei checkpoint;
+     *                          oltre si perdono i più vecchi
+     */
+    public void setJournaling(boolean enabled, int capacity, int blockCells, long checkpointBytes) {
+        journal = enabled ? new UndoJournal(capacity, blockCells, checkpointBytes) : null;
+        if (journal != null) {
+            restartJournal();
+        }
+    }
+
+    public void setJournaling(boolean enabled, int capacity) {
+        setJournaling(enabled, capacity, DEFAULT_JOURNAL_BLOCK_CELLS, DEFAULT_JOURNAL_CHECKPOINT_BYTES);
+    }
+
+    public void setJournaling(boolean enabled) {
+        setJournaling(enabled, DEFAULT_JOURNAL_CAPACITY);
+    }
+
+    public boolean isJournaling() {
+        return journal != null;
+    }
+
+    /**
+     * Annulla l'ultimo step eseguito.
+     *
+     * @return false se la storia è spenta o non arriva più indietro
+     */
+    public boolean stepBack() {
+        if (journal == null) {
+            return false;
+        }
+        int i = journal.pop();
+        if (i < 0) {
+            return rewind(journal.time() - 1);
+        }
+        undo(i);
+        return true;
+    }
+
+    /**
+     * Torna indietro finché IP non arriva su un breakpoint (dopo almeno uno step) o finisce la storia.
+     *
+     * @return step annullati
+     */
+    public long runBackwards(BitSet breakpoints) {
+        long undone = 0;
+        while (stepBack()) {
+            undone++;
+            if (breakpoints.get(IP)) {
+                break;
+            }
+        }
+        return undone;
+    }
+
+    /**
+     * Indirizzo della label (maiuscole/minuscole indifferenti), o -1 se non esiste.
+     */
+    public int labelAddress(String label) {
+        return program.labelAddress(label);
+    }
+
+    /**
+     * Registra in journal lo stato che lo step corrente può modificare. Non alloca: scrive solo
+     * primitivi negli array del journal e nel suo pool di celle (a parte i checkpoint periodici).
+     */
+    private void recordUndo() {
+        UndoJournal j = journal;
+        if (j.checkpointDue()) {
+            long bytes = snapshotBytes();
+            if (j.checkpointFits(bytes)) {
+                j.addCheckpoint(snapshot(), bytes);
+            } else {
+                j.skipCheckpoint();
+            }
+        }
+        int i = j.push();
+        j.ip[i] = IP;
+        j.sp[i] = SP;
+        j.flags[i] = getFLAGS();
+        j.steps[i] = stepCount;
+        byte kind = UndoJournal.NONE;
+        if (IP >= 0 && IP < ops.length) {
+            switch (ops[IP]) {
+                case Opcodes.MOVI, Opcodes.MOVR, Opcodes.ADD, Opcodes.SUB, Opcodes.MUL, Opcodes.DIV,
+                     Opcodes.MOD, Opcodes.SHL, Opcodes.SHR, Opcodes.SAR, Opcodes.AND, Opcodes.OR,
+                     Opcodes.XOR, Opcodes.LOAD, Opcodes.POP, Opcodes.COREID, Opcodes.VREDUCE -> {
+                    kind = UndoJournal.REGISTER;
+                    j.at[i] = argA[IP];
+                    j.old[i] = registerBits(argA[IP]);
+                }
+                case Opcodes.STORE -> {
+                    kind = UndoJournal.DATA;
+                    j.at[i] = addr[IP];
+                    j.old[i] = memory.load(addr[IP]);
+                }
+                case Opcodes.CAS, Opcodes.XCHG, Opcodes.ATOMADD -> {
+                    kind = UndoJournal.REGISTER_DATA;
+                    j.at[i] = addr[IP];
+                    j.old[i] = memory.load(addr[IP]);
+                    j.old2[i] = registerBits(argA[IP]);
+                }
+                case Opcodes.MEMCMP -> {
+                    kind = UndoJournal.REGISTER;
+                    j.at[i] = argC[IP];
+                    j.old[i] = registerBits(argC[IP]);
+                }
+                case Opcodes.MEMCPY, Opcodes.MEMSET -> {
+                    // celle che l'istruzione sovrascrive, se il range è valido (altrimenti va in HALT)
+                    long start = cell(argA[IP]);
+                    long len = cell(argC[IP]);
+                    if (start >= 0 && len >= 0 && start <= memory.size() - len) {
+                        int offset = j.reserveBlock(i, len);
+                        if (offset >= 0) {
+                            kind = UndoJournal.BLOCK;
+                            j.at[i] = start;
+                            memory.loadAll(start, j.pool, offset, (int) len);
+                        }
+                    }
+                }
+                case Opcodes.VSETL -> {
+                    kind = UndoJournal.VLENGTH;
+                    j.at[i] = argA[IP];
+                    j.old[i] = registerBits(argA[IP]);
+                    j.old2[i] = VL;
+                }
+                case Opcodes.VLOAD, Opcodes.VADD, Opcodes.VMUL, Opcodes.VFMA -> {
+                    int offset = j.reserveBlock(i, VL);
+                    if (offset >= 0) {
+                        kind = UndoJournal.VECTOR;
+                        j.at[i] = argA[IP];
+                        System.arraycopy(vregs, argA[IP] * VLEN, j.pool, offset, VL);
+                    }
+                }
+                case Opcodes.VSTORE -> {
+                    long start = cell(argB[IP]);
+                    if (start >= 0 && start <= memory.size() - VL) {
+                        int offset = j.reserveBlock(i, VL);
+                        if (offset >= 0) {
+                            kind = UndoJournal.BLOCK;
+                            j.at[i] = start;
+                            memory.loadAll(start, j.pool, offset, VL);
+                        }
+                    }
+                }
+                case Opcodes.PUSH, Opcodes.CALL -> {
+                    if (SP >= 0) {
+                        kind = ops[IP] == Opcodes.CALL && SP >= 1 ? UndoJournal.STACK2 : UndoJournal.STACK;
+                        j.at[i] = SP;
+                        j.old[i] = stack.load(SP);
+                        if (kind == UndoJournal.STACK2) {
+                            j.old2[i] = stack.load(SP - 1);
+                        }
+                    }
+                }
+                default -> {
+                }
+            }
+        }
+        j.kind[i] = kind;
+    }
+
+    /**
+     * Registro r per le celle double del journal: in modalità INTEGER i bit del long,
+     * così anche i valori oltre 2^53 tornano indietro esatti.
+     */
+    private double registerBits(int r) {
+        return integer ? Double.longBitsToDouble(iregs[r]) : regs[r];
+    }
+
+    private void setRegisterBits(int r, double bits) {
+        if (integer) {
+            iregs[r] = Double.doubleToRawLongBits(bits);
+        } else {
+            regs[r] = bits;
+        }
+    }
+
+    /**
+     * Riporta la CPU allo stato precedente lo step registrato nel record i.
+     */
+    private void undo(int i) {
+        UndoJournal j = journal;
+        switch (j.kind[i]) {
+            case UndoJournal.REGISTER -> setRegisterBits((int) j.at[i], j.old[i]);
+            case UndoJournal.DATA -> memory.store(j.at[i], j.old[i]);
+            case UndoJournal.REGISTER_DATA -> {
+                memory.store(j.at[i], j.old[i]);
+                setRegisterBits(argA[j.ip[i]], j.old2[i]);
+            }
+            case UndoJournal.BLOCK -> memory.storeAll(j.at[i], j.pool, j.blockOffset(i), j.blockLength[i]);
+            case UndoJournal.VECTOR -> System.arraycopy(j.pool, j.blockOffset(i), vregs, (int) j.at[i] * VLEN,
+                    j.blockLength[i]);
+            case UndoJournal.VLENGTH -> {
+                setRegisterBits((int) j.at[i], j.old[i]);
+                VL = (int) j.old2[i];
+            }
+            case UndoJournal.STACK -> stack.store(j.at[i], j.old[i]);
+            case UndoJournal.STACK2 -> {
+                stack.store(j.at[i], j.old[i]);
+                stack.store(j.at[i] - 1, j.old2[i]);
+            }
+            default -> {
+            }
+        }
+        IP = j.ip[i];
+        SP = j.sp[i];
+        setFlags(j.flags[i]);
+        stepCount = j.steps[i];
+        // uno step viene registrato solo se la CPU non era in HALT
+        halted = false;
+    }
+
+    /**
+     * Oltre il buffer: ripristina il checkpoint precedente e riesegue fino a target,
+     * senza trace né profiling (sono step già eseguiti una volta).
+     */
+    private boolean rewind(long target) {
+        int c = journal.rewindTo(target);
+        if (c < 0) {
+            return false;
+        }
+        restoreState(journal.checkpoint(c));
+        journal.resetTo(c);
+        TraceLevel level = traceLevel;
+        Profiler savedProfiler = profiler;
+        setTraceLevel(TraceLevel.OFF);
+        profiler = null;
+        try {
+            while (journal.time() < target && !halted) {
+                step();
+            }
+        } finally {
+            setTraceLevel(level);
+            profiler = savedProfiler;
+        }
+        return true;
+    }
+
+    /**
+     * Svuota la storia e la fa ripartire dallo stato attuale, con il primo checkpoint se la
+     * memoria supporta gli snapshot e uno snapshot sta nel budget.
+     */
+    private void restartJournal() {
+        long bytes = snapshotBytes();
+        journal.restart(journal.checkpointFits(bytes) ? checkpointOrNull() : null, bytes);
+    }
+
+    /**
+     * Stima dei byte di uno snapshot preso ora (vedi {@link Memory#snapshotBytes()}).
+     */
+    private long snapshotBytes() {
+        long bytes = (long) (regs.length + iregs.length + vregs.length) * Double.BYTES + memory.snapshotBytes();
+        return stack == memory ? bytes : bytes + stack.snapshotBytes();
+    }
+
+    /**
+     * Checkpoint iniziale della storia, o null se la memoria non supporta gli snapshot.
+     */
+    private CpuSnapshot checkpointOrNull() {
+        try {
+            return snapshot();
+        } catch (UnsupportedOperationException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Attiva/disattiva il profiling; riattivarlo riparte da contatori azzerati.
+     */
+    public void setProfiling(boolean enabled) {
+        profiler = enabled ? new Profiler(codeSegment, labelMap, ops, argA) : null;
+    }
+
+    public boolean isProfiling() {
+        return profiler != null;
+    }
+
+    /**
+     * Il profiler attivo, o null se il profiling è spento.
+     */
+    public Profiler getProfiler() {
+        return profiler;
+    }
+
+    public int getCoreId() {
+        return coreId;
+    }
+
+    void setCoreId(int coreId) {
+        this.coreId = coreId;
+    }
+
+    public Engine getEngine() {
+        return engine;
+    }
+
+    public void setEngine(Engine engine) {
+        this.engine = engine;
+    }
+}
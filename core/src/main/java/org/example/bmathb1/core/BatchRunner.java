@@ -0,0 +1,414 @@
+package org.example.bmathb1.core;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Esecuzione headless di molti programmi in parallelo: ogni job gira su una propria
+ * {@link AdvancedCPU}, dall'assemblaggio all'HALT, su un executor (di default un virtual thread
+ * per job, oppure un pool work-stealing). Per ogni job si ottengono esito, passi, tempo e registri.
+ *
+ * I job con un {@link Program} già assemblato riusano le CPU di un {@link CpuPool} per programma
+ * (per i programmi usati più di recente), quindi eseguire lo stesso programma su migliaia di input
+ * non costruisce una CPU per job.
+ *
+ * I job in volo sono limitati a qualche multiplo dei core disponibili, così un flusso di decine
+ * di migliaia di sorgenti non finisce tutto in memoria in attesa di un thread.
+ * Si usa anche da riga di comando, vedi {@link #main(String[])}.
+ */
+public final class BatchRunner implements AutoCloseable {
+
+    // Job in volo per core dell'host
+    private static final int IN_FLIGHT_PER_CORE = 4;
+    // Pool tenuti al massimo (uno per Program); oltre si scarta quello usato meno di recente
+    static final int MAX_POOLS = 64;
+
+    /**
+     * Esito di un job: HLT senza errori, errore (di assemblaggio o di esecuzione), limite di passi.
+     * ERROR vale solo per gli errori che fermano la CPU (istruzione non valida, indirizzo o blocco
+     * fuori range, IP fuori dal programma, label sconosciuta, stack overflow/underflow).
+     * Overflow e divisione per zero azzerano il registro e l'esecuzione continua: se il programma
+     * arriva a HLT l'esito è OK, e il primo di questi avvisi resta nel messaggio del risultato.
+     */
+    public enum Status {
+        OK,
+        ERROR,
+        STEP_LIMIT
+    }
+
+    /**
+     * Programma da eseguire, come sorgente o già assemblato (program non null: stesso programma
+     * su molti input senza rifare il parsing); input (se non null) viene scritto nelle celle dati
+     * da 0 in poi, dopo la sezione [DATA]. error non null indica un job che non si è potuto
+     * nemmeno preparare (es. file illeggibile): il suo risultato è ERROR con quel messaggio.
+     */
+    public record Job(String name, String source, Program program, double[] input, String error) {
+
+        public Job(String name, String source, Program program, double[] input) {
+            this(name, source, program, input, null);
+        }
+
+        public Job(String name, String source) {
+            this(name, source, null, null);
+        }
+
+        public Job(String name, String source, double[] input) {
+            this(name, source, null, input);
+        }
+
+        public Job(String name, Program program, double[] input) {
+            this(name, null, program, input);
+        }
+
+        /**
+         * Job fallito prima dell'esecuzione: non blocca gli altri job del batch.
+         */
+        public static Job failed(String name, String error) {
+            return new Job(name, null, null, null, error);
+        }
+    }
+
+    /**
+     * Risultato di un job. registers è null se il programma non è stato nemmeno assemblato
+     * (o l'esecuzione è finita con un'eccezione);
+     * message è il primo errore segnalato dalla CPU (o l'eccezione), altrimenti il primo avviso
+     * (overflow, divisione per zero), null se non ce ne sono.
+     */
+    public record Result(String name, Status status, long steps, long nanos, double[] registers, String message) {
+    }
+
+    private final ExecutorService executor;
+    private final int maxInFlight;
+    private final Semaphore inFlight;
+    private volatile AdvancedCPU.Engine engine = AdvancedCPU.Engine.DECODED;
+    private volatile long stepLimit = AdvancedCPU.DEFAULT_STEP_LIMIT;
+    // CPU riutilizzabili per i Program già assemblati usati di recente (chiave per identità, ordine
+    // di accesso): un runner che vede molti programmi diversi non tiene in vita un pool per ognuno.
+    // Le CPU in uso in un pool scartato vengono rilasciate a un pool non più raggiungibile e
+    // finiscono al GC. Si accede solo in synchronized (pools)
+    final Map<Program, CpuPool> pools = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Program, CpuPool> eldest) {
+            return size() > MAX_POOLS;
+        }
+    };
+
+    /**
+     * Un virtual thread per job.
+     */
+    public BatchRunner() {
+        this(Executors.newVirtualThreadPerTaskExecutor());
+    }
+
+    /**
+     * Job eseguiti sull'executor dato (es. un {@link ForkJoinPool}); lo chiude {@link #close()}.
+     */
+    public BatchRunner(ExecutorService executor) {
+        this.executor = executor;
+        this.maxInFlight = IN_FLIGHT_PER_CORE * Runtime.getRuntime().availableProcessors();
+        this.inFlight = new Semaphore(maxInFlight);
+    }
+
+    public void setEngine(AdvancedCPU.Engine engine) {
+        this.engine = engine;
+    }
+
+    public void setStepLimit(long stepLimit) {
+        this.stepLimit = stepLimit;
+    }
+
+    /**
+     * Esegue un job sul thread chiamante.
+     */
+    public Result runOne(Job job) {
+        return execute(job, engine, stepLimit);
+    }
+
+    /**
+     * Esegue tutti i job e ne restituisce i risultati nello stesso ordine.
+     */
+    public List<Result> runAll(List<Job> jobs) throws InterruptedException {
+        Result[] results = new Result[jobs.size()];
+        for (int i = 0; i < results.length; i++) {
+            int index = i;
+            submit(jobs.get(i), r -> results[index] = r);
+        }
+        awaitIdle();
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Esegue i job man mano che l'iterable li produce e passa ogni risultato a sink appena pronto,
+     * in ordine di completamento; ritorna quando sono finiti tutti.
+     * sink viene chiamato dai thread dell'executor, anche in parallelo.
+     */
+    public void run(Iterable<Job> jobs, Consumer<Result> sink) throws InterruptedException {
+        for (Job job : jobs) {
+            submit(job, sink);
+        }
+        awaitIdle();
+    }
+
+    private void submit(Job job, Consumer<Result> sink) throws InterruptedException {
+        AdvancedCPU.Engine e = engine;
+        long limit = stepLimit;
+        inFlight.acquire();
+        try {
+            executor.execute(() -> {
+                try {
+                    sink.accept(execute(job, e, limit));
+                } finally {
+                    inFlight.release();
+                }
+            });
+        } catch (RuntimeException ex) {
+            inFlight.release();
+            throw ex;
+        }
+    }
+
+    // Tutti i permessi liberi = nessun job in volo
+    private void awaitIdle() throws InterruptedException {
+        inFlight.acquire(maxInFlight);
+        inFlight.release(maxInFlight);
+    }
+
+    private Result execute(Job job, AdvancedCPU.Engine engine, long stepLimit) {
+        long start = System.nanoTime();
+        if (job.error() != null) {
+            return new Result(job.name(), Status.ERROR, 0, 0, null, job.error());
+        }
+        CpuPool pool = null;
+        AdvancedCPU cpu;
+        try {
+            if (job.program() != null) {
+                synchronized (pools) {
+                    pool = pools.computeIfAbsent(job.program(), p -> new CpuPool(() -> newCpu(p), maxInFlight));
+                }
+                cpu = pool.acquire();
+            } else {
+                cpu = newCpu(Program.assemble(job.source()));
+            }
+        } catch (Exception ex) {
+            return new Result(job.name(), Status.ERROR, 0, System.nanoTime() - start, null, ex.toString());
+        }
+        try {
+            JobSink sink = (JobSink) cpu.getTraceSink();
+            sink.clear();
+            double[] input = job.input();
+            if (input != null) {
+                if (input.length > cpu.getMemory().size()) {
+                    return new Result(job.name(), Status.ERROR, 0, System.nanoTime() - start, null,
+                            "Input troppo grande: " + input.length + " celle");
+                }
+                cpu.getMemory().storeAll(0, input);
+            }
+            cpu.setEngine(engine);
+            cpu.setStepLimit(stepLimit);
+            cpu.run(AdvancedCPU.UNLIMITED_STEPS);
+            long nanos = System.nanoTime() - start;
+
+            double[] registers = new double[AdvancedCPU.REGISTERS];
+            for (int i = 0; i < registers.length; i++) {
+                registers[i] = cpu.getRegister(i);
+            }
+            Status status = sink.stepLimitHit ? Status.STEP_LIMIT : sink.firstError != null ? Status.ERROR : Status.OK;
+            String message = sink.firstError != null ? sink.firstError : sink.firstWarning;
+            return new Result(job.name(), status, cpu.getStepCount(), nanos, registers, message);
+        } catch (RuntimeException ex) {
+            // un errore imprevisto della CPU resta confinato al suo job
+            return new Result(job.name(), Status.ERROR, cpu.getStepCount(), System.nanoTime() - start, null,
+                    ex.toString());
+        } finally {
+            if (pool != null) {
+                pool.release(cpu);
+            }
+        }
+    }
+
+    private static AdvancedCPU newCpu(Program program) throws Exception {
+        return new AdvancedCPU(program, Memory.heap(AdvancedCPU.DATA_SIZE), null, new JobSink(), TraceLevel.ERROR);
+    }
+
+    /**
+     * Sink di una CPU del batch: ricorda il primo errore che ferma la CPU, il primo avviso
+     * (errori dopo cui l'esecuzione continua) e se è scattato il limite di passi.
+     * Ogni CPU ha il suo e lo usa un job alla volta.
+     */
+    private static final class JobSink implements TraceSink {
+        String firstError;
+        String firstWarning;
+        boolean stepLimitHit;
+
+        void clear() {
+            firstError = null;
+            firstWarning = null;
+            stepLimitHit = false;
+        }
+
+        @Override
+        public void record(TraceEvent event, long a, int b, double value, String text) {
+            switch (event) {
+                // la CPU azzera il registro e prosegue
+                case OVERFLOW, DIV_BY_ZERO, MOD_BY_ZERO -> {
+                    if (firstWarning == null) {
+                        firstWarning = event.format(a, b, value, text);
+                    }
+                }
+                default -> {
+                    if (event == TraceEvent.STEP_LIMIT) {
+                        stepLimitHit = true;
+                    }
+                    if (firstError == null) {
+                        firstError = event.format(a, b, value, text);
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.close();
+        synchronized (pools) {
+            pools.clear();
+        }
+    }
+
+    /**
+     * Riga di comando:
+     * <pre>
+     * BatchRunner [--engine E] [--steps N] [--threads N] file.asm|cartella|- ...
+     * </pre>
+     * Le cartelle vengono visitate cercando i file .asm; "-" legge i percorsi da stdin, uno per riga.
+     * Se accanto a prog.asm c'è prog.in, i suoi numeri (separati da spazi) sono l'input del job.
+     * --threads N usa un pool work-stealing di N thread invece dei virtual thread;
+     * --steps 0 toglie il limite di passi.
+     * Stampa una riga per job (nome, esito, passi, microsecondi, registri, errore) e un riepilogo.
+     */
+    public static void main(String[] args) throws Exception {
+        AdvancedCPU.Engine engine = AdvancedCPU.Engine.DECODED;
+        long steps = AdvancedCPU.DEFAULT_STEP_LIMIT;
+        int threads = 0;
+        List<String> sources = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--engine" -> engine = AdvancedCPU.Engine.valueOf(args[++i].toUpperCase());
+                case "--steps" -> {
+                    steps = Long.parseLong(args[++i]);
+                    if (steps == 0) {
+                        steps = AdvancedCPU.UNLIMITED_STEPS;
+                    }
+                }
+                case "--threads" -> threads = Integer.parseInt(args[++i]);
+                default -> sources.add(args[i]);
+            }
+        }
+        if (sources.isEmpty()) {
+            System.err.println("Uso: BatchRunner [--engine E] [--steps N] [--threads N] file.asm|cartella|- ...");
+            System.exit(2);
+        }
+
+        long[] totals = new long[3];    // job, job non OK, passi
+        long start = System.nanoTime();
+        try (BatchRunner runner = threads > 0 ? new BatchRunner(new ForkJoinPool(threads)) : new BatchRunner();
+             Stream<Job> stream = sources.stream().flatMap(BatchRunner::expand)) {
+            runner.setEngine(engine);
+            runner.setStepLimit(steps);
+            Iterator<Job> jobs = stream.iterator();
+            runner.run(() -> jobs, r -> {
+                synchronized (totals) {
+                    totals[0]++;
+                    if (r.status() != Status.OK) {
+                        totals[1]++;
+                    }
+                    totals[2] += r.steps();
+                    System.out.println(format(r));
+                }
+            });
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("# %d job (%d non OK), %d passi in %.3f s: %.0f job/s, %.1f M passi/s%n",
+                totals[0], totals[1], totals[2], seconds, totals[0] / seconds, totals[2] / seconds / 1e6);
+    }
+
+    private static String format(Result r) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(r.name()).append('\t').append(r.status()).append('\t').append(r.steps())
+                .append('\t').append(r.nanos() / 1000).append('\t');
+        if (r.registers() != null) {
+            for (int i = 0; i < r.registers().length; i++) {
+                sb.append(i == 0 ? "" : " ").append(r.registers()[i]);
+            }
+        }
+        if (r.message() != null) {
+            sb.append('\t').append(r.message());
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Job di un argomento della riga di comando. Un percorso o una cartella che non si riesce a
+     * leggere diventa un job fallito, non un'eccezione che ferma il batch.
+     */
+    static Stream<Job> expand(String source) {
+        if (source.equals("-")) {
+            BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
+            return in.lines().filter(line -> !line.isBlank()).map(line -> readJob(line.trim()));
+        }
+        try {
+            Path path = Path.of(source);
+            if (Files.isDirectory(path)) {
+                // elenco completo subito: anche gli errori a metà visita finiscono nel catch
+                try (Stream<Path> walk = Files.walk(path)) {
+                    List<Path> files = walk.filter(p -> p.toString().endsWith(".asm")).sorted().toList();
+                    return files.stream().map(BatchRunner::readJob);
+                }
+            }
+            return Stream.of(readJob(path));
+        } catch (IOException | RuntimeException ex) {
+            return Stream.of(Job.failed(source, ex.toString()));
+        }
+    }
+
+    private static Job readJob(String path) {
+        try {
+            return readJob(Path.of(path));
+        } catch (RuntimeException ex) {
+            // es. InvalidPathException su una riga di stdin
+            return Job.failed(path, ex.toString());
+        }
+    }
+
+    static Job readJob(Path path) {
+        String name = path.toString();
+        try {
+            Path inputFile = Path.of(name.substring(0, name.length() - (name.endsWith(".asm") ? 4 : 0)) + ".in");
+            double[] input = null;
+            if (Files.isRegularFile(inputFile)) {
+                String text = Files.readString(inputFile).trim();
+                input = text.isEmpty() ? new double[0]
+                        : Arrays.stream(text.split("\\s+")).mapToDouble(Double::parseDouble).toArray();
+            }
+            return new Job(name, Files.readString(path), input);
+        } catch (IOException | RuntimeException ex) {
+            // es. NumberFormatException da un file .in malformato
+            return Job.failed(name, ex.toString());
+        }
+    }
+}
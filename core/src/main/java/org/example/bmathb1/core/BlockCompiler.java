@@ -0,0 +1,836 @@
+package org.example.bmathb1.core;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Genera a mano il bytecode di una hidden class per un blocco base del programma decodificato.
+ *
+ * Il metodo generato carica i registri usati in variabili locali (double), esegue le
+ * istruzioni del blocco senza dispatch e li riscrive in regs solo all'uscita; così
+ * HotSpot può compilarlo in codice nativo come un normale metodo Java.
+ *
+ * I flag di condizione restano pigri anche qui: solo l'ultima ADD/SUB/CMP/TEST del blocco salva
+ * i propri operandi in due locali, che vengono passati alla CPU all'uscita (vedi AdvancedCPU.lazyFlags);
+ * JE..JGE a fine blocco chiedono la condizione alla CPU.
+ *
+ * In modalità INTEGER i registri sono long e il blocco implementa run(long[], ...): l'aritmetica
+ * resta in long, con i controlli di overflow esatto fatti in linea sui bit del risultato.
+ *
+ * Il class file è in formato 49 (Java 5): non richiede StackMapTable e viene verificato
+ * dal verificatore per inferenza, quindi i salti interni non hanno bisogno di frame.
+ */
+final class BlockCompiler {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    private static final String CLASS_NAME = "org/example/bmathb1/core/JitBlock";
+    private static final String CPU_CLASS = "org/example/bmathb1/core/AdvancedCPU";
+    private static final String BLOCK_IFACE = "org/example/bmathb1/core/CompiledBlock";
+    private static final String MEMORY_IFACE = "org/example/bmathb1/core/Memory";
+    private static final String RUN_DESC = "([DL" + MEMORY_IFACE + ";L" + CPU_CLASS + ";)I";
+    private static final String RUN_LONG_DESC = "([JL" + MEMORY_IFACE + ";L" + CPU_CLASS + ";)I";
+
+    // Slot delle variabili locali di run(regs, memory, cpu): 0=this, 1=regs, 2=memory, 3=cpu
+    private static final int SLOT_R0 = 4;             // R0..R7 occupano 2 slot ciascuno
+    private static final int SLOT_TMP = SLOT_R0 + 16; // due int temporanei per MOD (o un long in INTEGER)
+    private static final int SLOT_CC = SLOT_TMP + 2;  // operandi x, y dell'ultima operazione sui flag
+    private static final int MAX_LOCALS = SLOT_CC + 4;
+    private static final int MAX_STACK = 8;
+
+    // Opcode JVM usati
+    private static final int ALOAD_0 = 0x2a, ALOAD_1 = 0x2b, ALOAD_2 = 0x2c, ALOAD_3 = 0x2d;
+    private static final int LCONST_0 = 0x09, DCONST_0 = 0x0e, DCONST_1 = 0x0f, ICONST_0 = 0x03;
+    private static final int BIPUSH = 0x10, SIPUSH = 0x11, LDC_W = 0x13, LDC2_W = 0x14;
+    private static final int ILOAD = 0x15, LLOAD = 0x16, DLOAD = 0x18, ISTORE = 0x36, LSTORE = 0x37, DSTORE = 0x39;
+    private static final int LALOAD = 0x2f, DALOAD = 0x31, LASTORE = 0x50, DASTORE = 0x52, DUP = 0x59;
+    private static final int DADD = 0x63, DSUB = 0x67, DMUL = 0x6b, DDIV = 0x6f, IREM = 0x70;
+    private static final int LADD = 0x61, LSUB = 0x65, LMUL = 0x69, LDIV = 0x6d, LREM = 0x71;
+    private static final int ISHL = 0x78, ISHR = 0x7a, IUSHR = 0x7c, IAND = 0x7e, IOR = 0x80, IXOR = 0x82;
+    private static final int LSHL = 0x79, LSHR = 0x7b, LUSHR = 0x7d, LAND = 0x7f, LOR = 0x81, LXOR = 0x83;
+    private static final int I2D = 0x87, L2D = 0x8a, D2I = 0x8e, LCMP = 0x94, DCMPL = 0x97;
+    private static final int IFEQ = 0x99, IFNE = 0x9a, IFGE = 0x9c, GOTO = 0xa7, IRETURN = 0xac, RETURN = 0xb1;
+    private static final int INVOKEVIRTUAL = 0xb6, INVOKESPECIAL = 0xb7, INVOKESTATIC = 0xb8, INVOKEINTERFACE = 0xb9;
+
+    private final ConstantPool cp = new ConstantPool();
+    private final boolean integer;
+    private int ccOp = -1;      // CC_* dell'ultima operazione sui flag del blocco, -1 se nessuna
+    private byte[] code = new byte[256];
+    private int len = 0;
+
+    private BlockCompiler(boolean integer) {
+        this.integer = integer;
+    }
+
+    /**
+     * Compila le istruzioni [start, end) in una hidden class.
+     * L'ultima istruzione può essere un JMP/JMPZ con target risolto; tutte le altre devono
+     * essere istruzioni lineari accettate da {@link #isCompilable(int)}.
+     *
+     * @param unchecked ADD/SUB/MUL che non possono produrre NaN/Infinity: niente controllo di overflow
+     * @param integer registri long della modalità INTEGER (MOVI usa ival invece di imm)
+     * @return il blocco compilato, oppure null se la definizione della classe fallisce
+     */
+    static CompiledBlock compile(int[] ops, int[] argA, int[] argB, double[] imm, long[] ival, long[] addr,
+                                 boolean[] unchecked, boolean integer, int start, int end) {
+        try {
+            byte[] bytes = new BlockCompiler(integer)
+                    .emitClass(ops, argA, argB, imm, ival, addr, unchecked, start, end);
+            MethodHandles.Lookup hidden = LOOKUP.defineHiddenClass(bytes, true);
+            return (CompiledBlock) hidden.findConstructor(hidden.lookupClass(), MethodType.methodType(void.class))
+                    .invoke();
+        } catch (Throwable ex) {
+            // Il blocco resta interpretato: il JIT è solo un'ottimizzazione
+            return null;
+        }
+    }
+
+    /**
+     * Istruzioni lineari che il compilatore sa tradurre (niente stack, CALL/RET o HLT).
+     */
+    static boolean isCompilable(int op) {
+        switch (op) {
+            case Opcodes.NOP:
+            case Opcodes.MOVI:
+            case Opcodes.MOVR:
+            case Opcodes.ADD:
+            case Opcodes.SUB:
+            case Opcodes.MUL:
+            case Opcodes.DIV:
+            case Opcodes.MOD:
+            case Opcodes.SHL:
+            case Opcodes.SHR:
+            case Opcodes.SAR:
+            case Opcodes.AND:
+            case Opcodes.OR:
+            case Opcodes.XOR:
+            case Opcodes.LOAD:
+            case Opcodes.STORE:
+            case Opcodes.CMP:
+            case Opcodes.TEST:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private byte[] emitClass(int[] ops, int[] argA, int[] argB, double[] imm, long[] ival, long[] addr,
+                             boolean[] unchecked, int start, int end) throws IOException {
+        // Registri letti/scritti dal blocco
+        boolean[] used = new boolean[8];
+        boolean[] written = new boolean[8];
+        for (int pc = start; pc < end; pc++) {
+            switch (ops[pc]) {
+                case Opcodes.MOVI, Opcodes.LOAD -> written[argA[pc]] = true;
+                case Opcodes.MOVR, Opcodes.ADD, Opcodes.SUB, Opcodes.MUL, Opcodes.DIV, Opcodes.MOD,
+                     Opcodes.AND, Opcodes.OR, Opcodes.XOR -> {
+                    written[argA[pc]] = true;
+                    used[argB[pc]] = true;
+                }
+                case Opcodes.CMP, Opcodes.TEST -> {
+                    used[argA[pc]] = true;
+                    used[argB[pc]] = true;
+                }
+                case Opcodes.SHL, Opcodes.SHR, Opcodes.SAR -> written[argA[pc]] = true;
+                case Opcodes.STORE, Opcodes.JMPZ -> used[argA[pc]] = true;
+                default -> {
+                }
+            }
+        }
+        for (int r = 0; r < 8; r++) {
+            used[r] |= written[r];
+        }
+        // Solo l'ultima operazione sui flag conta: quelle prima vengono sovrascritte senza essere lette
+        int lastCC = -1;
+        for (int pc = start; pc < end; pc++) {
+            if (ccKind(ops[pc]) >= 0) {
+                lastCC = pc;
+            }
+        }
+
+        // Prologo: regs[r] -> locale
+        for (int r = 0; r < 8; r++) {
+            if (used[r]) {
+                op(ALOAD_1);
+                pushInt(r);
+                op(integer ? LALOAD : DALOAD);
+                op(integer ? LSTORE : DSTORE, slot(r));
+            }
+        }
+
+        boolean terminated = false;
+        for (int pc = start; pc < end; pc++) {
+            int a = argA[pc];
+            int b = argB[pc];
+            if (pc == lastCC) {
+                // operandi prima dell'istruzione (che può sovrascrivere R a)
+                ccOp = ccKind(ops[pc]);
+                op(integer ? LLOAD : DLOAD, slot(a));
+                op(integer ? LSTORE : DSTORE, SLOT_CC);
+                op(integer ? LLOAD : DLOAD, slot(b));
+                op(integer ? LSTORE : DSTORE, SLOT_CC + 2);
+            }
+            if (ops[pc] == Opcodes.CMP || ops[pc] == Opcodes.TEST) {
+                continue;
+            }
+            if (Opcodes.isFlagJump(ops[pc])) {
+                // i flag vanno consegnati alla CPU prima di chiederle la condizione (le uscite non li ripetono)
+                flushFlags();
+                ccOp = -1;
+                op(ALOAD_3);
+                pushInt(ops[pc]);
+                op(INVOKEVIRTUAL);
+                u2(cp.methodRef(CPU_CLASS, "condition", "(I)Z"));
+                int notTaken = branch(IFEQ);
+                exit(written, a);
+                bind(notTaken);
+                exit(written, pc + 1);
+                terminated = true;
+                continue;
+            }
+            if (integer) {
+                terminated |= emitInteger(ops[pc], a, b, ival[pc], addr[pc], pc, written);
+                continue;
+            }
+            switch (ops[pc]) {
+                case Opcodes.NOP -> {
+                }
+                case Opcodes.MOVI -> {
+                    double v = imm[pc];
+                    if (Double.isNaN(v) || Double.isInfinite(v)) {
+                        // overflow noto a compile time
+                        reportOverflow(a);
+                        op(DCONST_0);
+                    } else {
+                        pushDouble(v);
+                    }
+                    op(DSTORE, slot(a));
+                }
+                case Opcodes.MOVR -> {
+                    // i registri sono sempre finiti: la copia non va controllata
+                    op(DLOAD, slot(b));
+                    op(DSTORE, slot(a));
+                }
+                case Opcodes.ADD -> arith(a, b, DADD, !unchecked[pc]);
+                case Opcodes.SUB -> arith(a, b, DSUB, !unchecked[pc]);
+                case Opcodes.MUL -> arith(a, b, DMUL, !unchecked[pc]);
+                case Opcodes.DIV -> {
+                    op(DLOAD, slot(b));
+                    op(DCONST_0);
+                    op(DCMPL);
+                    int nonZero = branch(IFNE);
+                    callCpu("divByZero", a);
+                    op(DCONST_0);
+                    op(DSTORE, slot(a));
+                    int done = branch(GOTO);
+                    bind(nonZero);
+                    arith(a, b, DDIV, true);
+                    bind(done);
+                }
+                case Opcodes.MOD -> {
+                    op(DLOAD, slot(a));
+                    op(D2I);
+                    op(ISTORE, SLOT_TMP);
+                    op(DLOAD, slot(b));
+                    op(D2I);
+                    op(DUP);
+                    op(ISTORE, SLOT_TMP + 1);
+                    int nonZero = branch(IFNE);
+                    callCpu("modByZero", a);
+                    op(DCONST_0);
+                    op(DSTORE, slot(a));
+                    int done = branch(GOTO);
+                    bind(nonZero);
+                    op(ILOAD, SLOT_TMP);
+                    op(ILOAD, SLOT_TMP + 1);
+                    op(IREM);
+                    op(I2D);
+                    op(DSTORE, slot(a));
+                    bind(done);
+                }
+                case Opcodes.SHL -> shift(a, b, ISHL);
+                case Opcodes.SHR -> shift(a, b, IUSHR);
+                case Opcodes.SAR -> shift(a, b, ISHR);
+                case Opcodes.AND -> bitwise(a, b, IAND);
+                case Opcodes.OR -> bitwise(a, b, IOR);
+                case Opcodes.XOR -> bitwise(a, b, IXOR);
+                case Opcodes.LOAD -> {
+                    // memory.load(addr): call site monomorfo, HotSpot lo inlinea
+                    op(ALOAD_2);
+                    pushLong(addr[pc]);
+                    invokeInterface(MEMORY_IFACE, "load", "(J)D", 3);
+                    op(DSTORE, slot(a));
+                    checkOverflow(a);
+                }
+                case Opcodes.STORE -> {
+                    op(ALOAD_2);
+                    pushLong(addr[pc]);
+                    op(DLOAD, slot(a));
+                    invokeInterface(MEMORY_IFACE, "store", "(JD)V", 5);
+                }
+                case Opcodes.JMP -> {
+                    exit(written, a);
+                    terminated = true;
+                }
+                case Opcodes.JMPZ -> {
+                    op(DLOAD, slot(a));
+                    op(DCONST_0);
+                    op(DCMPL);
+                    int notZero = branch(IFNE);
+                    exit(written, b);
+                    bind(notZero);
+                    exit(written, pc + 1);
+                    terminated = true;
+                }
+                default -> throw new IllegalStateException("Opcode non compilabile: " + Opcodes.name(ops[pc]));
+            }
+        }
+        if (!terminated) {
+            exit(written, end);
+        }
+        return classFile();
+    }
+
+    /**
+     * Istruzione del blocco in modalità INTEGER: stessa semantica degli helper interi di AdvancedCPU.
+     *
+     * @return true se l'istruzione chiude il blocco (JMP/JMPZ)
+     */
+    private boolean emitInteger(int opcode, int a, int b, long value, long address, int pc, boolean[] written) {
+        switch (opcode) {
+            case Opcodes.NOP -> {
+            }
+            case Opcodes.MOVI -> {
+                pushLong(value);
+                op(LSTORE, slot(a));
+            }
+            case Opcodes.MOVR -> {
+                op(LLOAD, slot(b));
+                op(LSTORE, slot(a));
+            }
+            case Opcodes.ADD -> {
+                // overflow se il risultato ha segno diverso da entrambi gli operandi: ((x ^ r) & (y ^ r)) < 0
+                exactResult(a, b, LADD);
+                op(LLOAD, slot(a));
+                op(LLOAD, SLOT_TMP);
+                op(LXOR);
+                op(LLOAD, slot(b));
+                op(LLOAD, SLOT_TMP);
+                op(LXOR);
+                op(LAND);
+                storeExact(a, IFGE);
+            }
+            case Opcodes.SUB -> {
+                // overflow se gli operandi hanno segni diversi e il risultato non ha quello di x:
+                // ((x ^ y) & (x ^ r)) < 0
+                exactResult(a, b, LSUB);
+                op(LLOAD, slot(a));
+                op(LLOAD, slot(b));
+                op(LXOR);
+                op(LLOAD, slot(a));
+                op(LLOAD, SLOT_TMP);
+                op(LXOR);
+                op(LAND);
+                storeExact(a, IFGE);
+            }
+            case Opcodes.MUL -> {
+                // overflow se la metà alta del prodotto a 128 bit non è l'estensione del segno di r
+                exactResult(a, b, LMUL);
+                op(LLOAD, slot(a));
+                op(LLOAD, slot(b));
+                op(INVOKESTATIC);
+                u2(cp.methodRef("java/lang/Math", "multiplyHigh", "(JJ)J"));
+                op(LLOAD, SLOT_TMP);
+                pushInt(63);
+                op(LSHR);
+                op(LCMP);
+                storeExact(a, IFEQ);
+            }
+            case Opcodes.DIV -> {
+                op(LLOAD, slot(b));
+                op(LCONST_0);
+                op(LCMP);
+                int nonZero = branch(IFNE);
+                callCpu("divByZero", a);
+                op(LCONST_0);
+                op(LSTORE, slot(a));
+                int done = branch(GOTO);
+                bind(nonZero);
+                // Long.MIN_VALUE / -1 è l'unico quoziente fuori range
+                op(LLOAD, slot(b));
+                pushLong(-1);
+                op(LCMP);
+                int divide = branch(IFNE);
+                op(LLOAD, slot(a));
+                pushLong(Long.MIN_VALUE);
+                op(LCMP);
+                int divideToo = branch(IFNE);
+                reportOverflow(a);
+                op(LCONST_0);
+                op(LSTORE, slot(a));
+                int overflowDone = branch(GOTO);
+                bind(divide);
+                bind(divideToo);
+                op(LLOAD, slot(a));
+                op(LLOAD, slot(b));
+                op(LDIV);
+                op(LSTORE, slot(a));
+                bind(done);
+                bind(overflowDone);
+            }
+            case Opcodes.MOD -> {
+                op(LLOAD, slot(b));
+                op(LCONST_0);
+                op(LCMP);
+                int nonZero = branch(IFNE);
+                callCpu("modByZero", a);
+                op(LCONST_0);
+                op(LSTORE, slot(a));
+                int done = branch(GOTO);
+                bind(nonZero);
+                op(LLOAD, slot(a));
+                op(LLOAD, slot(b));
+                op(LREM);
+                op(LSTORE, slot(a));
+                bind(done);
+            }
+            case Opcodes.SHL -> shiftLong(a, b, LSHL);
+            case Opcodes.SHR -> shiftLong(a, b, LUSHR);
+            case Opcodes.SAR -> shiftLong(a, b, LSHR);
+            case Opcodes.AND -> bitwiseLong(a, b, LAND);
+            case Opcodes.OR -> bitwiseLong(a, b, LOR);
+            case Opcodes.XOR -> bitwiseLong(a, b, LXOR);
+            case Opcodes.LOAD -> {
+                // cpu.toInteger(r, memory.load(addr)): troncamento, o overflow se il valore non sta in un long
+                op(ALOAD_3);
+                pushInt(a);
+                op(ALOAD_2);
+                pushLong(address);
+                invokeInterface(MEMORY_IFACE, "load", "(J)D", 3);
+                op(INVOKEVIRTUAL);
+                u2(cp.methodRef(CPU_CLASS, "toInteger", "(ID)J"));
+                op(LSTORE, slot(a));
+            }
+            case Opcodes.STORE -> {
+                op(ALOAD_2);
+                pushLong(address);
+                op(LLOAD, slot(a));
+                op(L2D);
+                invokeInterface(MEMORY_IFACE, "store", "(JD)V", 5);
+            }
+            case Opcodes.JMP -> {
+                exit(written, a);
+                return true;
+            }
+            case Opcodes.JMPZ -> {
+                op(LLOAD, slot(a));
+                op(LCONST_0);
+                op(LCMP);
+                int notZero = branch(IFNE);
+                exit(written, b);
+                bind(notZero);
+                exit(written, pc + 1);
+                return true;
+            }
+            default -> throw new IllegalStateException("Opcode non compilabile: " + Opcodes.name(opcode));
+        }
+        return false;
+    }
+
+    /**
+     * Risultato long di R a (jvmOp) R b nel temporaneo, in attesa del controllo di overflow.
+     */
+    private void exactResult(int a, int b, int jvmOp) {
+        op(LLOAD, slot(a));
+        op(LLOAD, slot(b));
+        op(jvmOp);
+        op(LSTORE, SLOT_TMP);
+    }
+
+    /**
+     * Con il long del controllo sullo stack: se il test ifExact lo dà per buono R a = temporaneo,
+     * altrimenti overflow e R a = 0 (come AdvancedCPU.setExact).
+     */
+    private void storeExact(int a, int ifExact) {
+        if (ifExact != IFEQ) {
+            // il controllo è un segno: confrontato con 0, IFGE = nessun overflow
+            op(LCONST_0);
+            op(LCMP);
+        }
+        int exact = branch(ifExact);
+        reportOverflow(a);
+        op(LCONST_0);
+        op(LSTORE, slot(a));
+        int done = branch(GOTO);
+        bind(exact);
+        op(LLOAD, SLOT_TMP);
+        op(LSTORE, slot(a));
+        bind(done);
+    }
+
+    private void shiftLong(int a, int count, int jvmOp) {
+        op(LLOAD, slot(a));
+        pushInt(count);
+        op(jvmOp);
+        op(LSTORE, slot(a));
+    }
+
+    private void bitwiseLong(int a, int b, int jvmOp) {
+        op(LLOAD, slot(a));
+        op(LLOAD, slot(b));
+        op(jvmOp);
+        op(LSTORE, slot(a));
+    }
+
+    private static int slot(int r) {
+        return SLOT_R0 + 2 * r;
+    }
+
+    private void arith(int a, int b, int jvmOp, boolean check) {
+        op(DLOAD, slot(a));
+        op(DLOAD, slot(b));
+        op(jvmOp);
+        op(DSTORE, slot(a));
+        if (check) {
+            checkOverflow(a);
+        }
+    }
+
+    private void shift(int a, int count, int jvmOp) {
+        op(DLOAD, slot(a));
+        op(D2I);
+        pushInt(count);
+        op(jvmOp);
+        op(I2D);
+        op(DSTORE, slot(a));
+    }
+
+    private void bitwise(int a, int b, int jvmOp) {
+        op(DLOAD, slot(a));
+        op(D2I);
+        op(DLOAD, slot(b));
+        op(D2I);
+        op(jvmOp);
+        op(I2D);
+        op(DSTORE, slot(a));
+    }
+
+    /**
+     * Equivalente di AdvancedCPU.checkOverflow: (v - v) != 0 solo per NaN e Infinity.
+     */
+    private void checkOverflow(int r) {
+        op(DLOAD, slot(r));
+        op(DLOAD, slot(r));
+        op(DSUB);
+        op(DCONST_0);
+        op(DCMPL);
+        int finite = branch(IFEQ);
+        reportOverflow(r);
+        op(DCONST_0);
+        op(DSTORE, slot(r));
+        bind(finite);
+    }
+
+    private void reportOverflow(int r) {
+        callCpu("overflow", r);
+    }
+
+    // cpu.method(r): overflow, divByZero e modByZero segnalano come l'interprete
+    private void callCpu(String method, int r) {
+        op(ALOAD_3);
+        pushInt(r);
+        op(INVOKEVIRTUAL);
+        u2(cp.methodRef(CPU_CLASS, method, "(I)V"));
+    }
+
+    /**
+     * Tipo CC_* dell'operazione sui flag op, o -1 se op non imposta i flag di condizione.
+     */
+    private static int ccKind(int op) {
+        return switch (op) {
+            case Opcodes.SUB, Opcodes.CMP -> AdvancedCPU.CC_SUB;
+            case Opcodes.ADD -> AdvancedCPU.CC_ADD;
+            case Opcodes.TEST -> AdvancedCPU.CC_TEST;
+            default -> -1;
+        };
+    }
+
+    /**
+     * cpu.lazyFlags(ccOp, x, y) con gli operandi salvati, se il blocco ha un'operazione sui flag.
+     */
+    private void flushFlags() {
+        if (ccOp < 0) {
+            return;
+        }
+        op(ALOAD_3);
+        pushInt(ccOp);
+        op(integer ? LLOAD : DLOAD, SLOT_CC);
+        op(integer ? LLOAD : DLOAD, SLOT_CC + 2);
+        op(INVOKEVIRTUAL);
+        u2(cp.methodRef(CPU_CLASS, "lazyFlags", integer ? "(IJJ)V" : "(IDD)V"));
+    }
+
+    /**
+     * Epilogo: riscrive i registri modificati (e i flag) e ritorna il nuovo IP.
+     */
+    private void exit(boolean[] written, int nextIP) {
+        flushFlags();
+        for (int r = 0; r < 8; r++) {
+            if (written[r]) {
+                op(ALOAD_1);
+                pushInt(r);
+                op(integer ? LLOAD : DLOAD, slot(r));
+                op(integer ? LASTORE : DASTORE);
+            }
+        }
+        pushInt(nextIP);
+        op(IRETURN);
+    }
+
+    // ---- emissione del codice ----
+
+    private void op(int opcode) {
+        u1(opcode);
+    }
+
+    private void op(int opcode, int localSlot) {
+        u1(opcode);
+        u1(localSlot);
+    }
+
+    private void pushInt(int v) {
+        if (v >= -1 && v <= 5) {
+            u1(ICONST_0 + v);
+        } else if (v >= Byte.MIN_VALUE && v <= Byte.MAX_VALUE) {
+            u1(BIPUSH);
+            u1(v);
+        } else if (v >= Short.MIN_VALUE && v <= Short.MAX_VALUE) {
+            u1(SIPUSH);
+            u2(v);
+        } else {
+            u1(LDC_W);
+            u2(cp.integer(v));
+        }
+    }
+
+    private void pushLong(long v) {
+        if (v == 0L) {
+            u1(LCONST_0);
+        } else {
+            u1(LDC2_W);
+            u2(cp.longConst(v));
+        }
+    }
+
+    /**
+     * @param argSlots slot occupati da receiver e argomenti (i long/double contano 2)
+     */
+    private void invokeInterface(String owner, String name, String desc, int argSlots) {
+        u1(INVOKEINTERFACE);
+        u2(cp.interfaceMethodRef(owner, name, desc));
+        u1(argSlots);
+        u1(0);
+    }
+
+    private void pushDouble(double v) {
+        if (Double.doubleToRawLongBits(v) == 0L) {
+            u1(DCONST_0);
+        } else if (v == 1.0) {
+            u1(DCONST_1);
+        } else {
+            u1(LDC2_W);
+            u2(cp.doubleConst(v));
+        }
+    }
+
+    /**
+     * Emette un salto in avanti con offset da risolvere con {@link #bind(int)}.
+     */
+    private int branch(int opcode) {
+        int at = len;
+        u1(opcode);
+        u2(0);
+        return at;
+    }
+
+    private void bind(int branchAt) {
+        int offset = len - branchAt;
+        code[branchAt + 1] = (byte) (offset >> 8);
+        code[branchAt + 2] = (byte) offset;
+    }
+
+    private void u1(int v) {
+        if (len == code.length) {
+            code = Arrays.copyOf(code, len * 2);
+        }
+        code[len++] = (byte) v;
+    }
+
+    private void u2(int v) {
+        u1(v >> 8);
+        u1(v);
+    }
+
+    // ---- class file ----
+
+    private byte[] classFile() throws IOException {
+        int thisClass = cp.classRef(CLASS_NAME);
+        int superClass = cp.classRef("java/lang/Object");
+        int iface = cp.classRef(BLOCK_IFACE);
+        int objInit = cp.methodRef("java/lang/Object", "<init>", "()V");
+        int initName = cp.utf8("<init>");
+        int initDesc = cp.utf8("()V");
+        int runName = cp.utf8("run");
+        int runDesc = cp.utf8(integer ? RUN_LONG_DESC : RUN_DESC);
+        int codeAttr = cp.utf8("Code");
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(len + 512);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0xCAFEBABE);
+        out.writeShort(0);
+        out.writeShort(49);
+        cp.writeTo(out);
+        out.writeShort(0x0001 | 0x0010 | 0x0020); // public final super
+        out.writeShort(thisClass);
+        out.writeShort(superClass);
+        out.writeShort(1);
+        out.writeShort(iface);
+        out.writeShort(0); // campi
+        out.writeShort(2); // metodi
+
+        // public <init>() { super(); }
+        out.writeShort(0x0001);
+        out.writeShort(initName);
+        out.writeShort(initDesc);
+        out.writeShort(1);
+        byte[] init = {(byte) ALOAD_0, (byte) INVOKESPECIAL, (byte) (objInit >> 8), (byte) objInit, (byte) RETURN};
+        writeCode(out, codeAttr, 1, 1, init, init.length);
+
+        // public int run(double[] regs, Memory memory, AdvancedCPU cpu), o long[] regs in INTEGER
+        out.writeShort(0x0001);
+        out.writeShort(runName);
+        out.writeShort(runDesc);
+        out.writeShort(1);
+        writeCode(out, codeAttr, MAX_STACK, MAX_LOCALS, code, len);
+
+        out.writeShort(0); // attributi di classe
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static void writeCode(DataOutputStream out, int codeAttr, int maxStack, int maxLocals,
+                                  byte[] body, int bodyLen) throws IOException {
+        out.writeShort(codeAttr);
+        out.writeInt(12 + bodyLen);
+        out.writeShort(maxStack);
+        out.writeShort(maxLocals);
+        out.writeInt(bodyLen);
+        out.write(body, 0, bodyLen);
+        out.writeShort(0); // exception table
+        out.writeShort(0); // attributi
+    }
+
+    /**
+     * Constant pool minimale con deduplicazione delle voci.
+     */
+    private static final class ConstantPool {
+        private final ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(buf);
+        private final Map<String, Integer> index = new HashMap<>();
+        private int next = 1;
+
+        int utf8(String s) {
+            return entry("U" + s, 1, () -> out.writeUTF(s));
+        }
+
+        int integer(int v) {
+            return entry("I" + v, 1, () -> {
+                out.writeByte(3);
+                out.writeInt(v);
+            });
+        }
+
+        int longConst(long v) {
+            // come i double, i long occupano due slot del constant pool
+            return entry("J" + v, 2, () -> {
+                out.writeByte(5);
+                out.writeLong(v);
+            });
+        }
+
+        int doubleConst(double v) {
+            // i double occupano due slot del constant pool
+            return entry("D" + Double.doubleToRawLongBits(v), 2, () -> {
+                out.writeByte(6);
+                out.writeDouble(v);
+            });
+        }
+
+        int classRef(String internalName) {
+            int name = utf8(internalName);
+            return entry("C" + internalName, 1, () -> {
+                out.writeByte(7);
+                out.writeShort(name);
+            });
+        }
+
+        int methodRef(String owner, String name, String desc) {
+            return memberRef(10, "M", owner, name, desc);
+        }
+
+        int interfaceMethodRef(String owner, String name, String desc) {
+            return memberRef(11, "IM", owner, name, desc);
+        }
+
+        private int memberRef(int tag, String kind, String owner, String name, String desc) {
+            int cls = classRef(owner);
+            int n = utf8(name);
+            int d = utf8(desc);
+            int nat = entry("N" + name + desc, 1, () -> {
+                out.writeByte(12);
+                out.writeShort(n);
+                out.writeShort(d);
+            });
+            return entry(kind + owner + "." + name + desc, 1, () -> {
+                out.writeByte(tag);
+                out.writeShort(cls);
+                out.writeShort(nat);
+            });
+        }
+
+        private int entry(String key, int slots, Writer writer) {
+            Integer existing = index.get(key);
+            if (existing != null) {
+                return existing;
+            }
+            try {
+                if (key.charAt(0) == 'U') {
+                    out.writeByte(1);
+                }
+                writer.write();
+            } catch (IOException ex) {
+                throw new IllegalStateException(ex);
+            }
+            int at = next;
+            next += slots;
+            index.put(key, at);
+            return at;
+        }
+
+        void writeTo(DataOutputStream dst) throws IOException {
+            out.flush();
+            dst.writeShort(next);
+            buf.writeTo(dst);
+        }
+
+        private interface Writer {
+            void write() throws IOException;
+        }
+    }
+}
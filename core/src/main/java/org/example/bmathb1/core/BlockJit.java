@@ -0,0 +1,130 @@
+package org.example.bmathb1.core;
+
+/**
+ * Livello "tiered" del motore JIT: suddivide il programma decodificato in blocchi base,
+ * conta quante volte si entra in ciascun blocco e, superata la soglia, lo fa compilare
+ * da {@link BlockCompiler}.
+ *
+ * Un blocco inizia a un "leader" (indirizzo 0, label, target di salto, istruzione dopo
+ * GOTO/JMPZ/JE..JGE/CALL/RET/HLT) e comprende le istruzioni lineari successive fino al leader
+ * seguente, chiuso eventualmente da un GOTO/JMPZ/JE..JGE. PUSH/POP/CALL/RET/HLT restano interpretate.
+ */
+final class BlockJit {
+    // Ingressi in un blocco prima di compilarlo
+    static final int THRESHOLD = 50;
+    // Limite di istruzioni per blocco (il metodo generato deve restare sotto i 64KB)
+    private static final int MAX_BLOCK = 1000;
+
+    private final int[] ops;
+    private final int[] argA;
+    private final int[] argB;
+    private final double[] imm;
+    private final long[] ival;
+    private final long[] addr;
+    private final boolean[] unchecked;      // ADD/SUB/MUL senza checkOverflow (vedi RangeAnalysis)
+    private final boolean integer;          // blocchi su registri long (modalità INTEGER)
+
+    private final boolean[] leader;
+    private final int[] hits;                // ingressi per blocco; -1 = non compilabile
+    private final CompiledBlock[] blocks;
+    private final int[] length;              // istruzioni eseguite dal blocco compilato
+
+    BlockJit(int[] ops, int[] argA, int[] argB, double[] imm, long[] ival, long[] addr, boolean[] unchecked,
+             Iterable<Integer> labelAddresses, boolean integer) {
+        this.ops = ops;
+        this.argA = argA;
+        this.argB = argB;
+        this.imm = imm;
+        this.ival = ival;
+        this.addr = addr;
+        this.unchecked = unchecked;
+        this.integer = integer;
+        int n = ops.length;
+        leader = new boolean[n + 1];
+        hits = new int[n];
+        blocks = new CompiledBlock[n];
+        length = new int[n];
+
+        leader[0] = true;
+        for (int label : labelAddresses) {
+            markLeader(label);
+        }
+        for (int pc = 0; pc < n; pc++) {
+            switch (ops[pc]) {
+                case Opcodes.JMP, Opcodes.CALL, Opcodes.JE, Opcodes.JNE, Opcodes.JL, Opcodes.JG, Opcodes.JLE,
+                     Opcodes.JGE -> {
+                    markLeader(argA[pc]);
+                    markLeader(pc + 1);
+                }
+                case Opcodes.JMPZ -> {
+                    markLeader(argB[pc]);
+                    markLeader(pc + 1);
+                }
+                case Opcodes.RET, Opcodes.HLT -> markLeader(pc + 1);
+                default -> {
+                }
+            }
+        }
+    }
+
+    private void markLeader(int addr) {
+        if (addr >= 0 && addr < leader.length) {
+            leader[addr] = true;
+        }
+    }
+
+    /**
+     * Chiamato quando IP = pc. Conta l'ingresso se pc è un leader e restituisce
+     * il blocco compilato (compilandolo al raggiungimento della soglia), o null.
+     */
+    CompiledBlock enter(int pc) {
+        if (!leader[pc]) {
+            return null;
+        }
+        CompiledBlock block = blocks[pc];
+        if (block != null || hits[pc] < 0) {
+            return block;
+        }
+        if (++hits[pc] >= THRESHOLD) {
+            block = compile(pc);
+            if (block == null) {
+                hits[pc] = -1;
+            }
+        }
+        return block;
+    }
+
+    /**
+     * Numero di istruzioni coperte dal blocco compilato che inizia a pc.
+     */
+    int length(int pc) {
+        return length[pc];
+    }
+
+    private CompiledBlock compile(int start) {
+        int end = start;
+        int limit = Math.min(ops.length, start + MAX_BLOCK);
+        while (end < limit && (end == start || !leader[end])) {
+            int op = ops[end];
+            if (BlockCompiler.isCompilable(op)) {
+                end++;
+            } else {
+                if (((op == Opcodes.JMP || Opcodes.isFlagJump(op)) && argA[end] >= 0)
+                        || (op == Opcodes.JMPZ && argB[end] >= 0)) {
+                    end++;
+                }
+                break;
+            }
+        }
+        if (end == start) {
+            return null;
+        }
+        CompiledBlock block = BlockCompiler.compile(ops, argA, argB, imm, ival, addr, unchecked, integer,
+                start, end);
+        if (block != null) {
+            blocks[start] = block;
+            length[start] = end - start;
+        }
+        return block;
+    }
+}
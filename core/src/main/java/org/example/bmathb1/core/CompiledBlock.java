@@ -0,0 +1,26 @@
+package org.example.bmathb1.core;
+
+/**
+ * Blocco base compilato dal JIT (vedi {@link BlockCompiler}).
+ * L'implementazione è una hidden class generata a runtime.
+ */
+interface CompiledBlock {
+
+    /**
+     * Esegue tutte le istruzioni del blocco.
+     *
+     * @param regs registri della CPU (letti all'ingresso, riscritti all'uscita)
+     * @param memory memoria dati
+     * @param cpu  CPU proprietaria, usata solo per segnalare gli overflow
+     * @return il nuovo valore di IP
+     */
+    int run(double[] regs, Memory memory, AdvancedCPU cpu);
+
+    /**
+     * Come {@link #run(double[], Memory, AdvancedCPU)} per i blocchi compilati in modalità INTEGER,
+     * con i registri long: la classe generata implementa solo la variante della sua modalità.
+     */
+    default int run(long[] regs, Memory memory, AdvancedCPU cpu) {
+        throw new UnsupportedOperationException("Blocco compilato in modalità FLOAT");
+    }
+}
@@ -0,0 +1,84 @@
+package org.example.bmathb1.core;
+
+/**
+ * Pool di CPU riutilizzabili per un programma: {@link #acquire()} restituisce una CPU libera
+ * riportata allo stato iniziale con {@link AdvancedCPU#reset()} e alle impostazioni di una CPU nuova
+ * (engine, limite di passi, storia, profiling e trace, vedi AdvancedCPU.restoreSettings), o ne crea
+ * una se non ce ne sono; {@link #release(AdvancedCPU)} la rimette nel pool. Dopo il riscaldamento
+ * un job non costruisce più CPU, array del programma né memorie, e le CPU tengono closure THREADED
+ * e blocchi JIT.
+ *
+ * Thread-safe: le CPU libere stanno in uno stack di array protetto da un lock, così acquire
+ * e release non allocano nodi.
+ */
+public final class CpuPool {
+
+    /**
+     * Crea una nuova CPU per il pool, sempre con lo stesso programma.
+     */
+    @FunctionalInterface
+    public interface Factory {
+        AdvancedCPU create() throws Exception;
+    }
+
+    private final Factory factory;
+    private final AdvancedCPU[] idle;
+    private int idleCount;
+
+    /**
+     * @param maxIdle CPU libere tenute al massimo; quelle rilasciate oltre vengono scartate
+     */
+    public CpuPool(Factory factory, int maxIdle) {
+        if (maxIdle < 1) {
+            throw new IllegalArgumentException("Dimensione pool non valida: " + maxIdle);
+        }
+        this.factory = factory;
+        this.idle = new AdvancedCPU[maxIdle];
+    }
+
+    /**
+     * Pool di CPU con la configurazione di default (heap da DATA_SIZE celle, senza trace).
+     */
+    public CpuPool(Program program, int maxIdle) {
+        this(() -> new AdvancedCPU(program), maxIdle);
+    }
+
+    /**
+     * CPU pronta a partire dall'inizio del programma. Restituirla con release quando ha finito.
+     */
+    public AdvancedCPU acquire() throws Exception {
+        AdvancedCPU cpu;
+        synchronized (idle) {
+            if (idleCount == 0) {
+                cpu = null;
+            } else {
+                cpu = idle[--idleCount];
+                idle[idleCount] = null;
+            }
+        }
+        if (cpu == null) {
+            return factory.create();
+        }
+        // prima le impostazioni: con la storia spenta reset non prende un checkpoint inutile
+        cpu.restoreSettings();
+        cpu.reset();
+        return cpu;
+    }
+
+    public void release(AdvancedCPU cpu) {
+        synchronized (idle) {
+            if (idleCount < idle.length) {
+                idle[idleCount++] = cpu;
+            }
+        }
+    }
+
+    /**
+     * CPU libere in questo momento.
+     */
+    public int idleCount() {
+        synchronized (idle) {
+            return idleCount;
+        }
+    }
+}
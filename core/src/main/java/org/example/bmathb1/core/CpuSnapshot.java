@@ -0,0 +1,49 @@
+package org.example.bmathb1.core;
+
+/**
+ * Stato di una CPU catturato da {@link AdvancedCPU#snapshot()}: registri (anche vettoriali), IP, SP, FLAGS, passi
+ * eseguiti, HALT e memoria (dati e, se separato, stack). È immutabile, quindi lo stesso snapshot
+ * può far ripartire quante esecuzioni si vuole, anche su CPU diverse con lo stesso programma
+ * e memorie dello stesso tipo e dimensione.
+ */
+public final class CpuSnapshot {
+
+    final double[] regs;
+    final long[] iregs;     // banco della modalità INTEGER
+    final double[] vregs;   // registri vettoriali V0..V7
+    final int vl;           // lunghezza vettoriale
+    final int ip;
+    final int sp;
+    final int flags;
+    final long stepCount;
+    final boolean halted;
+    final Memory.Snapshot memory;
+    final Memory.Snapshot stack;    // null se lo stack sta nella memoria dati
+
+    CpuSnapshot(double[] regs, long[] iregs, double[] vregs, int vl, int ip, int sp, int flags, long stepCount, boolean halted,
+                Memory.Snapshot memory, Memory.Snapshot stack) {
+        this.regs = regs;
+        this.iregs = iregs;
+        this.vregs = vregs;
+        this.vl = vl;
+        this.ip = ip;
+        this.sp = sp;
+        this.flags = flags;
+        this.stepCount = stepCount;
+        this.halted = halted;
+        this.memory = memory;
+        this.stack = stack;
+    }
+
+    public int getIP() {
+        return ip;
+    }
+
+    public long getStepCount() {
+        return stepCount;
+    }
+
+    public boolean isHalted() {
+        return halted;
+    }
+}
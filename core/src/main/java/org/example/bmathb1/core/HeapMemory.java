@@ -0,0 +1,113 @@
+package org.example.bmathb1.core;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+
+/**
+ * Memoria dati su un array double[] (il data segment originale della CPU).
+ */
+public final class HeapMemory implements Memory {
+
+    /**
+     * Limite degli array Java.
+     */
+    public static final int MAX_CELLS = Integer.MAX_VALUE - 8;
+
+    private static final VarHandle CELL = MethodHandles.arrayElementVarHandle(double[].class);
+
+    private final double[] cells;
+
+    private record Image(double[] cells) implements Snapshot {
+        @Override
+        public long size() {
+            return cells.length;
+        }
+    }
+
+    HeapMemory(long cells) {
+        if (cells <= 0 || cells > MAX_CELLS) {
+            throw new IllegalArgumentException("Dimensione memoria heap non valida: " + cells);
+        }
+        this.cells = new double[(int) cells];
+    }
+
+    @Override
+    public long size() {
+        return cells.length;
+    }
+
+    @Override
+    public double load(long addr) {
+        return cells[(int) addr];
+    }
+
+    @Override
+    public void store(long addr, double value) {
+        cells[(int) addr] = value;
+    }
+
+    @Override
+    public void storeAll(long start, double[] values, int from, int count) {
+        System.arraycopy(values, from, cells, (int) start, count);
+    }
+
+    @Override
+    public void loadAll(long start, double[] into, int from, int count) {
+        System.arraycopy(cells, (int) start, into, from, count);
+    }
+
+    @Override
+    public void copy(long src, long dst, long len) {
+        // arraycopy gestisce già le zone sovrapposte
+        System.arraycopy(cells, (int) src, cells, (int) dst, (int) len);
+    }
+
+    @Override
+    public void fill(long start, long len, double value) {
+        Arrays.fill(cells, (int) start, (int) (start + len), value);
+    }
+
+    @Override
+    public long mismatch(long a, long b, long len) {
+        return Arrays.mismatch(cells, (int) a, (int) (a + len), cells, (int) b, (int) (b + len));
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(cells, 0);
+    }
+
+    @Override
+    public double compareAndExchange(long addr, double expected, double value) {
+        return (double) CELL.compareAndExchange(cells, (int) addr, expected, value);
+    }
+
+    @Override
+    public double getAndSet(long addr, double value) {
+        return (double) CELL.getAndSet(cells, (int) addr, value);
+    }
+
+    @Override
+    public double getAndAdd(long addr, double delta) {
+        return (double) CELL.getAndAdd(cells, (int) addr, delta);
+    }
+
+    @Override
+    public boolean isShareable() {
+        return true;
+    }
+
+    @Override
+    public Snapshot snapshot() {
+        return new Image(cells.clone());
+    }
+
+    @Override
+    public void restore(Snapshot snapshot) {
+        if (!(snapshot instanceof Image image) || image.cells.length != cells.length) {
+            throw new IllegalArgumentException("Snapshot non compatibile con questa memoria heap");
+        }
+        System.arraycopy(image.cells, 0, cells, 0, cells.length);
+    }
+}
@@ -0,0 +1,232 @@
+package org.example.bmathb1.core;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Memoria dati della CPU: celle double indirizzate da 0 a size()-1.
+ *
+ * Gli indirizzi immediati di LOAD/STORE sono verificati una volta sola, quando la CPU si lega
+ * al programma (vedi Program.forMemory), quindi le implementazioni non ripetono il controllo
+ * di range a ogni accesso oltre a quello, economico, già fatto da array e MemorySegment.
+ */
+public interface Memory extends AutoCloseable {
+
+    /**
+     * Numero di celle.
+     */
+    long size();
+
+    double load(long addr);
+
+    void store(long addr, double value);
+
+    /**
+     * Scrive values nelle celle da start in poi; heap e off-heap lo fanno con una copia in blocco.
+     */
+    default void storeAll(long start, double[] values) {
+        storeAll(start, values, 0, values.length);
+    }
+
+    /**
+     * Scrive count valori di values, a partire da values[from], nelle celle da start in poi.
+     */
+    default void storeAll(long start, double[] values, int from, int count) {
+        for (int i = 0; i < count; i++) {
+            store(start + i, values[from + i]);
+        }
+    }
+
+    /**
+     * Legge into.length celle da start in poi (inverso di storeAll).
+     */
+    default void loadAll(long start, double[] into) {
+        loadAll(start, into, 0, into.length);
+    }
+
+    /**
+     * Legge count celle da start in poi in into, a partire da into[from].
+     */
+    default void loadAll(long start, double[] into, int from, int count) {
+        for (int i = 0; i < count; i++) {
+            into[from + i] = load(start + i);
+        }
+    }
+
+    // Operazioni a blocchi di MEMCPY/MEMSET/MEMCMP: il chiamante ha già verificato i range
+    // (una volta per istruzione), le implementazioni non controllano le singole celle
+
+    /**
+     * Copia len celle da src a dst (istruzione MEMCPY), anche se le due zone si sovrappongono.
+     */
+    default void copy(long src, long dst, long len) {
+        if (dst <= src) {
+            for (long i = 0; i < len; i++) {
+                store(dst + i, load(src + i));
+            }
+        } else {
+            for (long i = len - 1; i >= 0; i--) {
+                store(dst + i, load(src + i));
+            }
+        }
+    }
+
+    /**
+     * Scrive value in len celle da start in poi (istruzione MEMSET).
+     */
+    default void fill(long start, long len, double value) {
+        for (long i = 0; i < len; i++) {
+            store(start + i, value);
+        }
+    }
+
+    /**
+     * Confronta len celle da a e da b (istruzione MEMCMP) e restituisce l'indice relativo della
+     * prima coppia diversa, -1 se sono tutte uguali. Uguali vuol dire Double.compare == 0, come in
+     * Arrays.mismatch: 0.0 e -0.0 sono diversi, due NaN sono sempre uguali (qualunque siano i bit).
+     * Tutte le implementazioni devono seguire questa regola: MEMCMP ricava i flag dalla stessa
+     * Double.compare, quindi un programma salta allo stesso modo su ogni memoria.
+     */
+    default long mismatch(long a, long b, long len) {
+        for (long i = 0; i < len; i++) {
+            if (Double.doubleToLongBits(load(a + i)) != Double.doubleToLongBits(load(b + i))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Azzera tutte le celle (per la memoria mappata vuol dire azzerare il file).
+     */
+    default void clear() {
+        for (long i = 0; i < size(); i++) {
+            store(i, 0);
+        }
+    }
+
+    /**
+     * Compare-and-exchange (istruzione CAS): se la cella vale expected (confronto bit a bit)
+     * scrive value. Restituisce il valore trovato.
+     * L'implementazione di default non è atomica e va bene solo per un singolo core;
+     * {@link HeapMemory} e {@link OffHeapMemory} la fanno con un VarHandle.
+     */
+    default double compareAndExchange(long addr, double expected, double value) {
+        double old = load(addr);
+        if (Double.doubleToRawLongBits(old) == Double.doubleToRawLongBits(expected)) {
+            store(addr, value);
+        }
+        return old;
+    }
+
+    /**
+     * Scambio atomico (istruzione XCHG): scrive value e restituisce il valore precedente.
+     */
+    default double getAndSet(long addr, double value) {
+        double old = load(addr);
+        store(addr, value);
+        return old;
+    }
+
+    /**
+     * Somma atomica (istruzione ATOMADD): aggiunge delta e restituisce il valore precedente.
+     */
+    default double getAndAdd(long addr, double delta) {
+        double old = load(addr);
+        store(addr, old + delta);
+        return old;
+    }
+
+    /**
+     * True se load/store e le operazioni atomiche sono sicure con più core (vedi {@link MultiCore}).
+     */
+    default boolean isShareable() {
+        return false;
+    }
+
+    /**
+     * True se il contenuto appartiene a qualcosa che sopravvive alla CPU, come il file di
+     * {@link #mapped(Path, long)}: {@link AdvancedCPU#reset()} allora non la azzera.
+     */
+    default boolean isPersistent() {
+        return false;
+    }
+
+    /**
+     * Contenuto congelato di una memoria (vedi {@link #snapshot()}). Immutabile: si può ripristinare
+     * quante volte si vuole, anche su un'altra memoria dello stesso tipo e dimensione.
+     */
+    interface Snapshot {
+        long size();
+    }
+
+    /**
+     * Cattura il contenuto attuale. {@link PagedMemory} condivide le pagine copy-on-write e costa
+     * quanto le pagine sporcate dall'ultimo snapshot; la memoria su heap viene copiata.
+     *
+     * @throws UnsupportedOperationException per i backend che non lo supportano (off-heap e mappata)
+     */
+    default Snapshot snapshot() {
+        throw new UnsupportedOperationException("Snapshot non supportato da " + getClass().getSimpleName());
+    }
+
+    /**
+     * Byte che uno snapshot preso ora terrebbe in vita, per limitare i checkpoint della storia
+     * (vedi {@link AdvancedCPU#setJournaling}). Di default l'intera memoria, che viene copiata.
+     */
+    default long snapshotBytes() {
+        return size() * Double.BYTES;
+    }
+
+    /**
+     * Riporta la memoria al contenuto di uno snapshot preso da una memoria compatibile.
+     */
+    default void restore(Snapshot snapshot) {
+        throw new UnsupportedOperationException("Snapshot non supportato da " + getClass().getSimpleName());
+    }
+
+    /**
+     * Libera le risorse native, se ce ne sono; per la memoria su heap non fa nulla.
+     */
+    @Override
+    default void close() {
+    }
+
+    /**
+     * Memoria su heap (double[]), limitata a {@link HeapMemory#MAX_CELLS} celle.
+     */
+    static Memory heap(long cells) {
+        return new HeapMemory(cells);
+    }
+
+    /**
+     * Memoria sparsa a pagine allocate alla prima scrittura (vedi {@link PagedMemory}):
+     * adatta a spazi di indirizzi enormi, es. 2^32 celle, di cui il programma usa poche zone.
+     */
+    static Memory paged(long cells) {
+        return new PagedMemory(cells);
+    }
+
+    /**
+     * Memoria off-heap (Foreign Memory API), senza limiti di dimensione oltre a quelli della macchina
+     * e senza pressione sul GC. Va liberata con {@link #close()}.
+     * In Java 21 l'API è in preview: richiede {@code --enable-preview} a runtime.
+     */
+    static Memory offHeap(long cells) {
+        return OffHeapMemory.allocate(cells);
+    }
+
+    /**
+     * Memoria mappata su un file di double little-endian (FileChannel.map): un dataset persistente,
+     * anche di molti GB, letto e scritto direttamente da LOAD/STORE senza passare per le righe
+     * del segmento [DATA]. Le scritture arrivano al file; close() toglie la mappatura.
+     * Conviene dare alla CPU uno stack separato, altrimenti PUSH/CALL scrivono in coda al file.
+     * {@link AdvancedCPU#reset()} non azzera il file: riscrive solo le celle dell'immagine dati.
+     * Stessi requisiti di {@link #offHeap(long)} (preview in Java 21).
+     *
+     * @param cells celle da mappare (il file viene creato o esteso se serve); 0 = tutto il file
+     */
+    static Memory mapped(Path file, long cells) throws IOException {
+        return OffHeapMemory.map(file, cells);
+    }
+}
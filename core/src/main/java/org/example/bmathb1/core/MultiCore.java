@@ -0,0 +1,125 @@
+package org.example.bmathb1.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Più core che eseguono lo stesso programma (assemblato una volta sola) su una memoria dati condivisa.
+ * Ogni core è una {@link AdvancedCPU} con registri, IP, FLAGS e stack propri (su heap, separato)
+ * e un proprio indice, letto dal programma con COREID per dividersi il lavoro.
+ *
+ * Tra i core gli unici accessi ordinati sono le istruzioni atomiche (CAS, XCHG, ATOMADD) e FENCE;
+ * LOAD e STORE semplici possono vedere valori vecchi o perdersi aggiornamenti concorrenti,
+ * come su una CPU vera. La memoria deve quindi essere condivisibile (vedi {@link Memory#isShareable()}).
+ *
+ * Il traceSink è uno solo per tutti i core: i core lo chiamano uno alla volta (sotto un lock),
+ * quindi va bene anche un sink a scrittore singolo come {@link TraceBuffer}.
+ */
+public final class MultiCore {
+
+    /** Celle di stack di ogni core. */
+    public static final int STACK_CELLS = 256;
+
+    private final Memory memory;
+    private final List<AdvancedCPU> cores;
+
+    /**
+     * @param cores numero di core, almeno 1
+     * @throws IllegalArgumentException se memory non si può condividere tra thread
+     */
+    public MultiCore(String fullSource, Memory memory, int cores,
+                     TraceSink traceSink, TraceLevel traceLevel) throws Exception {
+        if (cores < 1) {
+            throw new IllegalArgumentException("Numero di core non valido: " + cores);
+        }
+        if (!memory.isShareable()) {
+            throw new IllegalArgumentException("Memoria non condivisibile tra core: "
+                    + memory.getClass().getSimpleName());
+        }
+        this.memory = memory;
+        Program program = Program.assemble(fullSource);
+        TraceSink sink = traceSink == null || cores == 1 ? traceSink : serialized(traceSink);
+        List<AdvancedCPU> list = new ArrayList<>(cores);
+        for (int i = 0; i < cores; i++) {
+            // la sezione [DATA] viene riscritta da ogni core, ma sempre prima di partire
+            AdvancedCPU cpu = new AdvancedCPU(program, memory, Memory.heap(STACK_CELLS), sink, traceLevel);
+            cpu.setCoreId(i);
+            list.add(cpu);
+        }
+        this.cores = Collections.unmodifiableList(list);
+    }
+
+    public MultiCore(String fullSource, Memory memory, int cores) throws Exception {
+        this(fullSource, memory, cores, null, TraceLevel.OFF);
+    }
+
+    // Un evento alla volta: i thread dei core non scrivono mai insieme nel sink
+    private static TraceSink serialized(TraceSink sink) {
+        Object lock = new Object();
+        return (event, a, b, value, text) -> {
+            synchronized (lock) {
+                sink.record(event, a, b, value, text);
+            }
+        };
+    }
+
+    /**
+     * Esegue tutti i core in parallelo, ciascuno su un proprio thread, finché vanno in HALT
+     * o eseguono maxStepsPerCore istruzioni; ritorna quando hanno finito tutti.
+     *
+     * @return istruzioni eseguite in totale
+     */
+    public long run(long maxStepsPerCore) throws InterruptedException {
+        long[] executed = new long[cores.size()];
+        Thread[] threads = new Thread[cores.size()];
+        for (int i = 0; i < threads.length; i++) {
+            int core = i;
+            threads[i] = new Thread(() -> executed[core] = cores.get(core).run(maxStepsPerCore), "core-" + i);
+            threads[i].start();
+        }
+        long total = 0;
+        for (int i = 0; i < threads.length; i++) {
+            threads[i].join();
+            total += executed[i];
+        }
+        return total;
+    }
+
+    public void setEngine(AdvancedCPU.Engine engine) {
+        for (AdvancedCPU cpu : cores) {
+            cpu.setEngine(engine);
+        }
+    }
+
+    public void setStepLimit(long stepLimit) {
+        for (AdvancedCPU cpu : cores) {
+            cpu.setStepLimit(stepLimit);
+        }
+    }
+
+    public boolean isHalted() {
+        for (AdvancedCPU cpu : cores) {
+            if (!cpu.isHalted()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public AdvancedCPU getCore(int i) {
+        return cores.get(i);
+    }
+
+    public List<AdvancedCPU> getCores() {
+        return cores;
+    }
+
+    public int getCoreCount() {
+        return cores.size();
+    }
+
+    public Memory getMemory() {
+        return memory;
+    }
+}
@@ -0,0 +1,196 @@
+package org.example.bmathb1.core;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Memoria dati off-heap su un MemorySegment: milioni (o miliardi) di celle senza heap enorme
+ * né lavoro per il GC. Il segmento è allocato in memoria nativa oppure mappato su un file
+ * (vedi {@link Memory#mapped(Path, long)}); in entrambi i casi l'arena è condivisa perché il Run
+ * gira su un thread diverso da quello che crea la CPU, e close() libera la memoria o toglie
+ * la mappatura (accessi successivi lanciano IllegalStateException).
+ *
+ * Le celle sono double little-endian: su x86/ARM è l'ordine nativo, e un file di dati ha lo
+ * stesso formato su ogni piattaforma.
+ *
+ * Unica classe del core che usa la Foreign Memory API (preview in Java 21): viene caricata,
+ * e richiede {@code --enable-preview}, solo se si sceglie questo backend. Per lo stesso motivo
+ * il resto del codice la usa solo come {@link Memory} (vedi {@link Memory#offHeap(long)}).
+ */
+public final class OffHeapMemory implements Memory {
+
+    private static final ValueLayout.OfDouble CELL = ValueLayout.JAVA_DOUBLE.withOrder(ByteOrder.LITTLE_ENDIAN);
+    // Accesso atomico alla cella i: coordinate (segmento, indice)
+    private static final VarHandle ATOMIC_CELL = CELL.arrayElementVarHandle();
+
+    private final Arena arena;
+    private final MemorySegment segment;
+    private final long size;
+    private final boolean mapped;
+
+    private OffHeapMemory(Arena arena, MemorySegment segment, boolean mapped) {
+        this.arena = arena;
+        this.segment = segment;
+        this.size = segment.byteSize() / Double.BYTES;
+        this.mapped = mapped;
+    }
+
+    static OffHeapMemory allocate(long cells) {
+        checkCells(cells);
+        Arena arena = Arena.ofShared();
+        // allocate azzera il segmento, come un double[] appena creato
+        return new OffHeapMemory(arena, arena.allocate(cells * Double.BYTES, Double.BYTES), false);
+    }
+
+    /**
+     * Mappa il file in lettura/scrittura: LOAD/STORE leggono e scrivono direttamente le sue pagine.
+     *
+     * @param cells celle da mappare; se il file è più corto viene esteso con zeri.
+     *              0 = tutto il file (che allora deve esistere e contenere almeno una cella)
+     */
+    static OffHeapMemory map(Path file, long cells) throws IOException {
+        if (cells < 0) {
+            throw new IllegalArgumentException("Dimensione memoria mappata non valida: " + cells);
+        }
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long mapped = cells > 0 ? cells : channel.size() / Double.BYTES;
+            checkCells(mapped);
+            Arena arena = Arena.ofShared();
+            try {
+                // la mappatura resta valida anche dopo la chiusura del canale, fino a arena.close()
+                return new OffHeapMemory(arena,
+                        channel.map(FileChannel.MapMode.READ_WRITE, 0, mapped * Double.BYTES, arena), true);
+            } catch (IOException | RuntimeException ex) {
+                arena.close();
+                throw ex;
+            }
+        }
+    }
+
+    private static void checkCells(long cells) {
+        if (cells <= 0 || cells > Long.MAX_VALUE / Double.BYTES) {
+            throw new IllegalArgumentException("Dimensione memoria off-heap non valida: " + cells);
+        }
+    }
+
+    @Override
+    public long size() {
+        return size;
+    }
+
+    @Override
+    public double load(long addr) {
+        return segment.getAtIndex(CELL, addr);
+    }
+
+    @Override
+    public void store(long addr, double value) {
+        segment.setAtIndex(CELL, addr, value);
+    }
+
+    @Override
+    public void storeAll(long start, double[] values, int from, int count) {
+        MemorySegment.copy(values, from, segment, CELL, start * Double.BYTES, count);
+    }
+
+    @Override
+    public void loadAll(long start, double[] into, int from, int count) {
+        MemorySegment.copy(segment, CELL, start * Double.BYTES, into, from, count);
+    }
+
+    @Override
+    public void copy(long src, long dst, long len) {
+        // MemorySegment.copy gestisce già le zone sovrapposte
+        MemorySegment.copy(segment, src * Double.BYTES, segment, dst * Double.BYTES, len * Double.BYTES);
+    }
+
+    @Override
+    public void fill(long start, long len, double value) {
+        if (len == 0) {
+            return;
+        }
+        MemorySegment block = segment.asSlice(start * Double.BYTES, len * Double.BYTES);
+        if (Double.doubleToRawLongBits(value) == 0) {
+            block.fill((byte) 0);
+            return;
+        }
+        // MemorySegment.fill scrive solo byte: una cella, poi copie che raddoppiano la parte già scritta
+        block.setAtIndex(CELL, 0, value);
+        for (long done = 1; done < len; done *= 2) {
+            MemorySegment.copy(block, 0, block, done * Double.BYTES, Math.min(done, len - done) * Double.BYTES);
+        }
+    }
+
+    /**
+     * Confronta i byte delle celle in blocco; una differenza di byte tra due NaN (bit diversi, ma
+     * uguali per Double.compare come nelle altre memorie) non conta e il confronto riprende dopo.
+     */
+    @Override
+    public long mismatch(long a, long b, long len) {
+        long from = 0;
+        while (from < len) {
+            // su due slice: in Java 21 il MemorySegment.mismatch statico, con lo stesso segmento come
+            // sorgente e destinazione, restituisce -1 senza confrontare
+            long bytes = segment.asSlice((a + from) * Double.BYTES, (len - from) * Double.BYTES)
+                    .mismatch(segment.asSlice((b + from) * Double.BYTES, (len - from) * Double.BYTES));
+            if (bytes < 0) {
+                return -1;
+            }
+            long i = from + bytes / Double.BYTES;
+            if (Double.compare(load(a + i), load(b + i)) != 0) {
+                return i;
+            }
+            from = i + 1;
+        }
+        return -1;
+    }
+
+    @Override
+    public void clear() {
+        segment.fill((byte) 0);
+    }
+
+    @Override
+    public double compareAndExchange(long addr, double expected, double value) {
+        return (double) ATOMIC_CELL.compareAndExchange(segment, addr, expected, value);
+    }
+
+    @Override
+    public double getAndSet(long addr, double value) {
+        return (double) ATOMIC_CELL.getAndSet(segment, addr, value);
+    }
+
+    @Override
+    public double getAndAdd(long addr, double delta) {
+        // i VarHandle sui segmenti non hanno getAndAdd per i double: ciclo di CAS sui bit
+        while (true) {
+            double old = (double) ATOMIC_CELL.getVolatile(segment, addr);
+            if (ATOMIC_CELL.weakCompareAndSet(segment, addr, old, old + delta)) {
+                return old;
+            }
+        }
+    }
+
+    @Override
+    public boolean isShareable() {
+        return true;
+    }
+
+    @Override
+    public boolean isPersistent() {
+        return mapped;
+    }
+
+    @Override
+    public void close() {
+        arena.close();
+    }
+}
@@ -0,0 +1,140 @@
+package org.example.bmathb1.core;
+
+/**
+ * Codici operativi della forma decodificata del programma.
+ * Ogni istruzione del codice viene tradotta da {@link Program} in un id numerico
+ * più gli operandi (registri, indirizzi, immediati, target dei salti), così
+ * step() non deve più fare parsing di stringhe a ogni esecuzione.
+ */
+final class Opcodes {
+    static final int INVALID = 0;   // istruzione non decodificabile: logga il messaggio e va in HALT
+    static final int HLT = 1;
+    static final int NOP = 2;
+    static final int MOVI = 3;      // a=reg, imm=valore
+    static final int MOVR = 4;      // a=dest, b=src
+    static final int ADD = 5;
+    static final int SUB = 6;
+    static final int MUL = 7;
+    static final int DIV = 8;
+    static final int MOD = 9;
+    static final int SHL = 10;      // SHIFT LEFT: a=reg, b=count
+    static final int SHR = 11;      // SHIFT RIGHT (logico)
+    static final int SAR = 12;      // SHIFT ARITH
+    static final int AND = 13;
+    static final int OR = 14;
+    static final int XOR = 15;
+    static final int JMP = 16;      // a=target (-1 se label sconosciuta)
+    static final int JMPZ = 17;     // a=reg, b=target
+    static final int CALL = 18;     // a=target, b=paramCount
+    static final int RET = 19;
+    static final int PUSH = 20;     // a=reg
+    static final int POP = 21;      // a=reg
+    static final int STORE = 22;    // a=reg, addr
+    static final int LOAD = 23;     // a=reg, addr
+    static final int CAS = 24;      // a=reg (valore atteso, riceve quello trovato), b=reg (nuovo valore), addr
+    static final int XCHG = 25;     // a=reg, addr
+    static final int ATOMADD = 26;  // a=reg (delta, riceve il valore precedente), addr
+    static final int FENCE = 27;
+    static final int COREID = 28;   // a=reg
+    static final int CMP = 29;      // a, b: flag di R a - R b, senza scrivere registri
+    static final int TEST = 30;     // a, b: flag di R a AND R b
+    // Salti sui flag di condizione dell'ultima CMP/TEST/ADD/SUB: a=target
+    static final int JE = 31;
+    static final int JNE = 32;
+    static final int JL = 33;
+    static final int JG = 34;
+    static final int JLE = 35;
+    static final int JGE = 36;
+    // Istruzioni a blocchi sulla memoria dati, operandi tutti registri: a, b, c=lunghezza
+    static final int MEMCPY = 37;   // a=dest, b=sorgente
+    static final int MEMSET = 38;   // a=dest, b=valore
+    static final int MEMCMP = 39;   // a, b=zone da confrontare; c riceve l'indice della prima differenza
+    // Registri vettoriali V0..V7 (vedi AdvancedCPU.VLEN): lavorano sulle prime VL componenti
+    static final int VSETL = 40;    // a=reg: VL = R a limitato a [0, VLEN], R a riceve VL
+    static final int VLOAD = 41;    // a=vreg, b=reg con l'indirizzo della prima cella
+    static final int VSTORE = 42;   // a=vreg, b=reg con l'indirizzo della prima cella
+    static final int VADD = 43;     // a=vreg dest, b=vreg
+    static final int VMUL = 44;     // a=vreg dest, b=vreg
+    static final int VFMA = 45;     // a=vreg dest (accumulatore), b, c=vreg da moltiplicare
+    static final int VREDUCE = 46;  // a=reg dest, b=vreg da sommare
+
+    // Varianti senza checkOverflow (solo nell'array fused di Program, modalità FLOAT): RangeAnalysis
+    // ha dimostrato che il risultato non può essere NaN né Infinity. Stessi operandi dell'originale
+    static final int MOVI_UNCHECKED = 47;
+    static final int ADD_UNCHECKED = 48;
+    static final int SUB_UNCHECKED = 49;
+    static final int MUL_UNCHECKED = 50;
+
+    // Superistruzioni (solo nell'array fused di Program, vedi Peephole): stanno nello slot della
+    // prima istruzione della sequenza e leggono gli operandi dagli slot delle istruzioni che fondono
+    static final int MOVI_ADD = 51;         // MOVI + ADD (somma di un immediato)
+    static final int MOVI_SUB = 52;         // MOVI + SUB
+    static final int SUB_JMPZ = 53;         // SUB + JMPZ (decremento e test del contatore)
+    static final int LOAD_ADD_STORE = 54;   // LOAD + ADD + STORE (accumulo in memoria)
+    static final int PUSH_POP = 55;         // PUSH + POP
+
+    static final int COUNT = 56;
+
+    private static final String[] NAMES = {
+            "INVALID", "HLT", "NOP", "MOVI", "MOVR", "ADD", "SUB", "MUL", "DIV", "MOD",
+            "SHL", "SHR", "SAR", "AND", "OR", "XOR", "JMP", "JMPZ", "CALL", "RET",
+            "PUSH", "POP", "STORE", "LOAD", "CAS", "XCHG", "ATOMADD", "FENCE", "COREID",
+            "CMP", "TEST", "JE", "JNE", "JL", "JG", "JLE", "JGE", "MEMCPY", "MEMSET", "MEMCMP",
+            "VSETL", "VLOAD", "VSTORE", "VADD", "VMUL", "VFMA", "VREDUCE",
+            "MOVI/U", "ADD/U", "SUB/U", "MUL/U",
+            "MOVI+ADD", "MOVI+SUB", "SUB+JMPZ", "LOAD+ADD+STORE", "PUSH+POP"
+    };
+
+    private Opcodes() {
+    }
+
+    /**
+     * Istruzioni eseguite da op: più di una per le superistruzioni.
+     */
+    static int length(int op) {
+        return switch (op) {
+            case MOVI_ADD, MOVI_SUB, SUB_JMPZ, PUSH_POP -> 2;
+            case LOAD_ADD_STORE -> 3;
+            default -> 1;
+        };
+    }
+
+    /**
+     * Variante senza checkOverflow di op, op stesso se non ne ha una.
+     */
+    static int unchecked(int op) {
+        return switch (op) {
+            case MOVI -> MOVI_UNCHECKED;
+            case ADD -> ADD_UNCHECKED;
+            case SUB -> SUB_UNCHECKED;
+            case MUL -> MUL_UNCHECKED;
+            default -> op;
+        };
+    }
+
+    /**
+     * JE..JGE: salti che leggono i flag di condizione.
+     */
+    static boolean isFlagJump(int op) {
+        return op >= JE && op <= JGE;
+    }
+
+    /**
+     * Opcode del salto condizionato con quel mnemonico (maiuscolo), INVALID se non lo è.
+     */
+    static int flagJump(String mnemonic) {
+        return switch (mnemonic) {
+            case "JE" -> JE;
+            case "JNE" -> JNE;
+            case "JL" -> JL;
+            case "JG" -> JG;
+            case "JLE" -> JLE;
+            case "JGE" -> JGE;
+            default -> INVALID;
+        };
+    }
+
+    static String name(int op) {
+        return op >= 0 && op < NAMES.length ? NAMES[op] : "?" + op;
+    }
+}
@@ -0,0 +1,231 @@
+package org.example.bmathb1.core;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Memoria dati sparsa: una tabella delle pagine a due livelli con pagine di {@link #PAGE_SIZE}
+ * celle allocate alla prima scrittura. Uno spazio di 2^32 celle costa solo le pagine toccate
+ * (più un riferimento di directory ogni 2^20 celle); leggere una pagina mai scritta restituisce 0
+ * senza allocarla.
+ *
+ * L'ultima pagina letta e l'ultima scritta restano in cache: LOAD/STORE sequenziali, o ripetuti
+ * sulla stessa zona, saltano la tabella e costano un confronto più l'accesso all'array.
+ *
+ * Snapshot copy-on-write: tabelle e pagine portano la generazione che le possiede; snapshot()
+ * copia solo la directory e passa a una nuova generazione, così tutto diventa condiviso e la
+ * prima scrittura su una pagina (e sulla sua tabella) ne fa una copia privata. Il costo di uno
+ * snapshot è quindi proporzionale alle pagine sporcate dopo il precedente, non alla memoria.
+ */
+public final class PagedMemory implements Memory {
+
+    public static final int PAGE_BITS = 12;
+    public static final int PAGE_SIZE = 1 << PAGE_BITS;        // 4096 celle = 32 KB
+    private static final int TABLE_BITS = 8;
+    private static final int TABLE_SIZE = 1 << TABLE_BITS;     // pagine per tabella di secondo livello
+    private static final int OFFSET_MASK = PAGE_SIZE - 1;
+    private static final int TABLE_MASK = TABLE_SIZE - 1;
+
+    /**
+     * Limite dello spazio indirizzabile (la directory deve stare in un array).
+     */
+    public static final long MAX_CELLS = (long) Integer.MAX_VALUE << (PAGE_BITS + TABLE_BITS);
+
+    // Generazioni uniche tra tutte le istanze: uno snapshot può essere ripristinato su un'altra memoria
+    private static final AtomicLong GENERATIONS = new AtomicLong();
+
+    /**
+     * Tabella di secondo livello. Una tabella o pagina con generazione diversa da quella corrente
+     * è condivisa con almeno uno snapshot e va copiata prima di scriverci.
+     */
+    private static final class Table {
+        final double[][] pages;
+        final long[] pageGen;
+        final long gen;
+
+        Table(long gen) {
+            this.pages = new double[TABLE_SIZE][];
+            this.pageGen = new long[TABLE_SIZE];
+            this.gen = gen;
+        }
+
+        Table(Table shared, long gen) {
+            this.pages = shared.pages.clone();
+            this.pageGen = shared.pageGen.clone();
+            this.gen = gen;
+        }
+    }
+
+    /**
+     * Directory congelata: immutabile finché nessuno ne modifica tabelle o pagine, e nessuno lo fa
+     * perché hanno tutte una generazione ormai chiusa.
+     */
+    private record Image(long size, Table[] directory, int pages) implements Snapshot {
+    }
+
+    private final long size;
+    private Table[] directory;      // directory[d].pages[t] = pagina, o null se mai scritta
+    private long gen = GENERATIONS.incrementAndGet();
+    private int pages;
+    private long privateBytes;      // pagine e tabelle allocate o copiate dopo l'ultimo snapshot
+
+    // Cache a un elemento: ultima pagina letta (anche condivisa) e ultima pagina scritta (privata)
+    private long readPageIndex = -1;
+    private double[] readPage;
+    private long writePageIndex = -1;
+    private double[] writePage;
+
+    PagedMemory(long cells) {
+        if (cells <= 0 || cells > MAX_CELLS) {
+            throw new IllegalArgumentException("Dimensione memoria paginata non valida: " + cells);
+        }
+        size = cells;
+        long pageCount = (cells + PAGE_SIZE - 1) >>> PAGE_BITS;
+        directory = new Table[(int) ((pageCount + TABLE_SIZE - 1) >>> TABLE_BITS)];
+    }
+
+    @Override
+    public long size() {
+        return size;
+    }
+
+    @Override
+    public double load(long addr) {
+        long p = addr >>> PAGE_BITS;
+        if (p != readPageIndex) {
+            Table table = directory[(int) (p >>> TABLE_BITS)];
+            double[] page = table == null ? null : table.pages[(int) p & TABLE_MASK];
+            if (page == null) {
+                return 0;
+            }
+            readPageIndex = p;
+            readPage = page;
+        }
+        return readPage[(int) addr & OFFSET_MASK];
+    }
+
+    @Override
+    public void store(long addr, double value) {
+        long p = addr >>> PAGE_BITS;
+        if (p != writePageIndex) {
+            writePage = writablePage(p);
+            writePageIndex = p;
+        }
+        writePage[(int) addr & OFFSET_MASK] = value;
+    }
+
+    /**
+     * Riempie pagina per pagina; con value = 0 le pagine mai scritte restano non allocate.
+     */
+    @Override
+    public void fill(long start, long len, double value) {
+        boolean zero = Double.doubleToRawLongBits(value) == 0;
+        long end = start + len;
+        long addr = start;
+        while (addr < end) {
+            long p = addr >>> PAGE_BITS;
+            int from = (int) addr & OFFSET_MASK;
+            int to = (int) Math.min(PAGE_SIZE, end - (p << PAGE_BITS));
+            if (!zero || isAllocated(p)) {
+                Arrays.fill(writablePage(p), from, to, value);
+            }
+            addr = (p << PAGE_BITS) + to;
+        }
+    }
+
+    private boolean isAllocated(long p) {
+        Table table = directory[(int) (p >>> TABLE_BITS)];
+        return table != null && table.pages[(int) p & TABLE_MASK] != null;
+    }
+
+    /**
+     * Azzera la memoria lasciando andare tutte le pagine (quelle condivise restano agli snapshot).
+     */
+    @Override
+    public void clear() {
+        directory = new Table[directory.length];
+        pages = 0;
+        gen = GENERATIONS.incrementAndGet();
+        privateBytes = 0;
+        readPageIndex = -1;
+        readPage = null;
+        writePageIndex = -1;
+        writePage = null;
+    }
+
+    /**
+     * Pagine scritte almeno una volta (quelle non più modificate dopo uno snapshot sono
+     * condivise con esso e non occupano altra memoria).
+     */
+    public int allocatedPages() {
+        return pages;
+    }
+
+    @Override
+    public Snapshot snapshot() {
+        Image image = new Image(size, directory.clone(), pages);
+        // da qui tutto ciò che esiste appartiene anche allo snapshot
+        gen = GENERATIONS.incrementAndGet();
+        privateBytes = 0;
+        writePageIndex = -1;
+        writePage = null;
+        return image;
+    }
+
+    /**
+     * Stima: directory più le pagine scritte dopo lo snapshot precedente, le sole che il nuovo
+     * snapshot non condivide con esso (le altre costano solo il riferimento).
+     */
+    @Override
+    public long snapshotBytes() {
+        return (long) directory.length * Long.BYTES + privateBytes;
+    }
+
+    @Override
+    public void restore(Snapshot snapshot) {
+        if (!(snapshot instanceof Image image) || image.size != size) {
+            throw new IllegalArgumentException("Snapshot non compatibile con questa memoria paginata");
+        }
+        directory = image.directory.clone();
+        pages = image.pages;
+        gen = GENERATIONS.incrementAndGet();
+        privateBytes = 0;
+        readPageIndex = -1;
+        readPage = null;
+        writePageIndex = -1;
+        writePage = null;
+    }
+
+    /**
+     * Percorso lento di store: trova la pagina p, allocandola se manca o copiandola (con la sua
+     * tabella) se è condivisa con uno snapshot.
+     */
+    private double[] writablePage(long p) {
+        int d = (int) (p >>> TABLE_BITS);
+        Table table = directory[d];
+        if (table == null) {
+            table = directory[d] = new Table(gen);
+            privateBytes += TABLE_SIZE * 2L * Long.BYTES;
+        } else if (table.gen != gen) {
+            table = directory[d] = new Table(table, gen);
+            privateBytes += TABLE_SIZE * 2L * Long.BYTES;
+        }
+        int t = (int) p & TABLE_MASK;
+        double[] page = table.pages[t];
+        if (page == null) {
+            page = new double[PAGE_SIZE];
+            pages++;
+        } else if (table.pageGen[t] != gen) {
+            page = page.clone();
+        } else {
+            return page;
+        }
+        privateBytes += PAGE_SIZE * (long) Double.BYTES;
+        table.pages[t] = page;
+        table.pageGen[t] = gen;
+        if (p == readPageIndex) {
+            readPage = page;
+        }
+        return page;
+    }
+}
@@ -0,0 +1,63 @@
+package org.example.bmathb1.core;
+
+/**
+ * Passata peephole sul programma decodificato: riconosce sequenze frequenti nei cicli e mette
+ * nello slot della prima istruzione una superistruzione che le esegue con un solo dispatch.
+ *
+ * La fusione è "sul posto": gli slot seguenti restano invariati, quindi un salto che arriva in mezzo
+ * alla sequenza esegue le istruzioni originali, e IP, label e passi contati sono gli stessi del
+ * codice non fuso. La CPU usa le superistruzioni solo se non servono eventi, profiling o storia
+ * per singola istruzione (vedi AdvancedCPU.execFused).
+ *
+ * Negli slot rimasti singoli mette anche le varianti senza checkOverflow delle istruzioni che
+ * {@link RangeAnalysis} ha dimostrato finite: fused è l'array su cui fanno dispatch DECODED e THREADED.
+ */
+final class Peephole {
+
+    private Peephole() {
+    }
+
+    /**
+     * Copia di ops con le superistruzioni al posto della prima istruzione di ogni sequenza
+     * e le varianti senza controllo dove unchecked è true.
+     * Le sequenze possono sovrapporsi: ogni slot viene valutato come punto d'ingresso a sé.
+     */
+    static int[] fuse(int[] ops, boolean[] unchecked) {
+        int n = ops.length;
+        int[] fused = ops.clone();
+        for (int i = 0; i < n; i++) {
+            int next = i + 1 < n ? ops[i + 1] : Opcodes.INVALID;
+            int third = i + 2 < n ? ops[i + 2] : Opcodes.INVALID;
+            switch (ops[i]) {
+                case Opcodes.LOAD -> {
+                    if (next == Opcodes.ADD && third == Opcodes.STORE) {
+                        fused[i] = Opcodes.LOAD_ADD_STORE;
+                    }
+                }
+                case Opcodes.MOVI -> {
+                    if (next == Opcodes.ADD) {
+                        fused[i] = Opcodes.MOVI_ADD;
+                    } else if (next == Opcodes.SUB) {
+                        fused[i] = Opcodes.MOVI_SUB;
+                    }
+                }
+                case Opcodes.SUB -> {
+                    if (next == Opcodes.JMPZ) {
+                        fused[i] = Opcodes.SUB_JMPZ;
+                    }
+                }
+                case Opcodes.PUSH -> {
+                    if (next == Opcodes.POP) {
+                        fused[i] = Opcodes.PUSH_POP;
+                    }
+                }
+                default -> {
+                }
+            }
+            if (fused[i] == ops[i] && unchecked[i]) {
+                fused[i] = Opcodes.unchecked(ops[i]);
+            }
+        }
+        return fused;
+    }
+}
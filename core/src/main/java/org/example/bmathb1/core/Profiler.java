@@ -0,0 +1,176 @@
+package org.example.bmathb1.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Contatori di profiling della CPU: esecuzioni per indirizzo di istruzione e salti condizionati presi.
+ * I conteggi per opcode, per label e per subroutine si ricavano da questi al momento del report,
+ * così durante l'esecuzione ogni istruzione costa un solo incremento di un long[].
+ *
+ * Si attiva con {@link AdvancedCPU#setProfiling(boolean)}; da spento la CPU non lo alloca nemmeno.
+ */
+public final class Profiler {
+
+    private final List<String> code;
+    private final int[] ops;
+    private final int[] argA;
+    private final TreeMap<Integer, String> labelsByAddress = new TreeMap<>();
+
+    private final long[] ipCounts;
+    private final long[] branchTaken;
+
+    Profiler(List<String> code, Map<String, Integer> labelMap, int[] ops, int[] argA) {
+        this.code = code;
+        this.ops = ops;
+        this.argA = argA;
+        for (Map.Entry<String, Integer> e : labelMap.entrySet()) {
+            // a parità di indirizzo teniamo la label alfabeticamente prima, per un report stabile
+            labelsByAddress.merge(e.getValue(), e.getKey(), (x, y) -> x.compareTo(y) <= 0 ? x : y);
+        }
+        ipCounts = new long[ops.length];
+        branchTaken = new long[ops.length];
+    }
+
+    /**
+     * Conta l'esecuzione dell'istruzione ip; taken vale per i salti condizionati (JMPZ, JE..JGE)
+     * con condizione vera.
+     */
+    void record(int ip, boolean taken) {
+        ipCounts[ip]++;
+        if (taken) {
+            branchTaken[ip]++;
+        }
+    }
+
+    public void reset() {
+        Arrays.fill(ipCounts, 0);
+        Arrays.fill(branchTaken, 0);
+    }
+
+    /**
+     * Esecuzioni per indirizzo (copia).
+     */
+    public long[] instructionCounts() {
+        return ipCounts.clone();
+    }
+
+    /**
+     * Esecuzioni per opcode decodificato, indicizzate da Opcodes.*.
+     */
+    public long[] opcodeCounts() {
+        long[] counts = new long[Opcodes.COUNT];
+        for (int ip = 0; ip < ipCounts.length; ip++) {
+            counts[ops[ip]] += ipCounts[ip];
+        }
+        return counts;
+    }
+
+    public long totalInstructions() {
+        long total = 0;
+        for (long c : ipCounts) {
+            total += c;
+        }
+        return total;
+    }
+
+    /**
+     * Report testuale: opcode, top-N istruzioni, top-N label/subroutine e statistiche dei salti condizionati.
+     */
+    public String report(int topN) {
+        long total = totalInstructions();
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("===== PROFILO: %d istruzioni eseguite =====%n", total));
+        if (total == 0) {
+            return sb.toString();
+        }
+
+        sb.append(String.format("-- Per opcode --%n"));
+        long[] byOp = opcodeCounts();
+        Integer[] opOrder = sortedIndexes(byOp.length, i -> byOp[i]);
+        for (int op : opOrder) {
+            if (byOp[op] == 0) break;
+            sb.append(String.format("  %-8s %12d  %5.1f%%%n", Opcodes.name(op), byOp[op], percent(byOp[op], total)));
+        }
+
+        sb.append(String.format("-- Top %d istruzioni --%n", topN));
+        Integer[] ipOrder = sortedIndexes(ipCounts.length, i -> ipCounts[i]);
+        for (int k = 0; k < Math.min(topN, ipOrder.length); k++) {
+            int ip = ipOrder[k];
+            if (ipCounts[ip] == 0) break;
+            sb.append(String.format("  IP=%-5d %-16s %12d  %5.1f%%  %s%n",
+                    ip, location(ip), ipCounts[ip], percent(ipCounts[ip], total), code.get(ip).trim()));
+        }
+
+        // Ogni istruzione appartiene alla label precedente più vicina
+        long[] calls = new long[ops.length];
+        for (int ip = 0; ip < ops.length; ip++) {
+            if (ops[ip] == Opcodes.CALL && argA[ip] >= 0) {
+                calls[argA[ip]] += ipCounts[ip];
+            }
+        }
+        List<Map.Entry<Integer, String>> labels = new ArrayList<>(labelsByAddress.entrySet());
+        long[] perLabel = new long[labels.size()];
+        for (int l = 0; l < labels.size(); l++) {
+            int from = labels.get(l).getKey();
+            int to = l + 1 < labels.size() ? labels.get(l + 1).getKey() : ipCounts.length;
+            for (int ip = from; ip < to; ip++) {
+                perLabel[l] += ipCounts[ip];
+            }
+        }
+        sb.append(String.format("-- Top %d label/subroutine --%n", topN));
+        Integer[] labelOrder = sortedIndexes(perLabel.length, i -> perLabel[i]);
+        for (int k = 0; k < Math.min(topN, labelOrder.length); k++) {
+            int l = labelOrder[k];
+            if (perLabel[l] == 0) break;
+            int addr = labels.get(l).getKey();
+            String kind = calls[addr] > 0 ? String.format("subroutine, %d chiamate", calls[addr]) : "label";
+            sb.append(String.format("  %-16s %12d  %5.1f%%  (%s)%n",
+                    labels.get(l).getValue(), perLabel[l], percent(perLabel[l], total), kind));
+        }
+
+        sb.append(String.format("-- Salti condizionati (preso / non preso) --%n"));
+        for (int ip = 0; ip < ops.length; ip++) {
+            if ((ops[ip] == Opcodes.JMPZ || Opcodes.isFlagJump(ops[ip])) && ipCounts[ip] > 0) {
+                long taken = branchTaken[ip];
+                sb.append(String.format("  IP=%-5d %-16s %10d / %-10d  preso %5.1f%%  %s%n",
+                        ip, location(ip), taken, ipCounts[ip] - taken, percent(taken, ipCounts[ip]),
+                        code.get(ip).trim()));
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * "LABEL+offset" dell'indirizzo, o "-" se precede ogni label.
+     */
+    private String location(int ip) {
+        Map.Entry<Integer, String> label = labelsByAddress.floorEntry(ip);
+        if (label == null) {
+            return "-";
+        }
+        int offset = ip - label.getKey();
+        return offset == 0 ? label.getValue() : label.getValue() + "+" + offset;
+    }
+
+    private static double percent(long part, long total) {
+        return total == 0 ? 0 : 100.0 * part / total;
+    }
+
+    private interface LongKey {
+        long of(int index);
+    }
+
+    private static Integer[] sortedIndexes(int n, LongKey key) {
+        Integer[] idx = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            idx[i] = i;
+        }
+        Arrays.sort(idx, Comparator.comparingLong((Integer i) -> key.of(i)).reversed());
+        return idx;
+    }
+}
@@ -0,0 +1,513 @@
+package org.example.bmathb1.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Programma assemblato: righe di [CODE], label, forma decodificata in array paralleli
+ * (vedi {@link Opcodes}) e immagine iniziale di [DATA].
+ * È immutabile, quindi si assembla una volta sola e lo si esegue con quante {@link AdvancedCPU}
+ * si vuole, anche in parallelo: ogni CPU tiene solo registri, IP, SP, FLAGS e memoria.
+ *
+ * Gli indirizzi di LOAD/STORE e delle atomiche non dipendono dalla memoria: il range si verifica
+ * quando una CPU si lega al programma (vedi {@link #forMemory(long)}).
+ *
+ * La riga "[MODE INTEGER]" (in qualsiasi punto del sorgente) sceglie la modalità a registri interi,
+ * vedi {@link Mode}.
+ */
+public final class Program {
+
+    /**
+     * Modalità della macchina.
+     * FLOAT: registri double, come nella CPU originale (AND/OR/XOR/SHIFT/MOD lavorano su int).
+     * INTEGER: registri long e aritmetica intera esatta: se ADD/SUB/MUL/DIV escono dal range di long,
+     * o LOAD/POP leggono un valore che non sta in un long, il registro va a 0 e si alza il bit di overflow
+     * di FLAGS. MOVI accetta solo immediati interi; la memoria resta di double, quindi i valori scritti
+     * oltre 2^53 in modulo perdono le cifre meno significative.
+     */
+    public enum Mode {
+        FLOAT,
+        INTEGER
+    }
+
+    final List<String> code;
+    final Map<String, Integer> labels;
+    final Mode mode;
+
+    // Programma decodificato: array paralleli, uno slot per ogni istruzione di code
+    final int[] ops;            // id opcode (Opcodes.*)
+    final int[] argA;           // primo operando (registro o target del salto)
+    final int[] argB;           // secondo operando (registro, count, target, paramCount)
+    final int[] argC;           // terzo operando: registro della lunghezza di MEMCPY/MEMSET/MEMCMP, Vb di VFMA
+    final double[] imm;         // immediato di MOVI
+    final long[] ival;          // immediato di MOVI in modalità INTEGER (esatto anche oltre 2^53)
+    final long[] addr;          // indirizzo di LOAD/STORE e atomiche (>= 0, range verificato da forMemory)
+    final String[] sym;         // nome label per i log, o messaggio d'errore per INVALID
+    final boolean[] unchecked;  // istruzioni FLOAT che non possono produrre NaN/Infinity (vedi RangeAnalysis)
+    final int[] fused;          // ops con superistruzioni e varianti senza controllo (vedi Peephole)
+
+    // Valori di [DATA], dalla cella 0 in poi
+    final double[] data;
+    // Righe fuori da [CODE] e [DATA], ignorate (la CPU le segnala nel trace verbose)
+    final List<String> ignoredLines;
+
+    // Indirizzo di memoria più alto usato dal programma, -1 se nessuno
+    private final long maxAddress;
+
+    /**
+     * Assembla il sorgente. Lancia eccezione per errori in [DATA] e per salti a label che non
+     * esistono (tutti insieme, già al caricamento); le altre istruzioni non valide diventano
+     * INVALID e l'errore viene segnalato solo se (e quando) vengono eseguite.
+     */
+    public static Program assemble(String source) throws Exception {
+        return new Program(source);
+    }
+
+    /**
+     * Legge il testo e separa in segmenti [CODE] e [DATA].
+     * Esegue un parsing di base:
+     * - Rimuove i commenti con ';'
+     * - Trova label (LABEL:) su righe a sé e crea una mappa label=>indirizzo dell'istruzione che segue
+     * - Riempe code con le istruzioni
+     * - Riempe data con i dati (X=10)
+     */
+    private Program(String src) throws Exception {
+        String[] lines = src.split("\\r?\\n");
+        List<String> codeSegment = new ArrayList<>();
+        Map<String, Integer> labelMap = new HashMap<>();
+        List<Double> dataSegment = new ArrayList<>();
+        List<String> ignored = new ArrayList<>();
+        Mode declaredMode = Mode.FLOAT;
+
+        boolean inCode = false;
+        boolean inData = false;
+
+        for (String line : lines) {
+            // Rimuovi commenti con ';'
+            int idxComment = line.indexOf(';');
+            if (idxComment >= 0) {
+                line = line.substring(0, idxComment);
+            }
+            line = line.trim();
+            if (line.isEmpty()) continue;
+
+            // Controlla i segmenti
+            if (line.equalsIgnoreCase("[CODE]")) {
+                inCode = true;
+                inData = false;
+                continue;
+            } else if (line.equalsIgnoreCase("[DATA]")) {
+                inData = true;
+                inCode = false;
+                continue;
+            } else if (line.toUpperCase().startsWith("[MODE") && line.endsWith("]")) {
+                // Direttiva di modalità: non cambia segmento
+                String name = line.substring(5, line.length() - 1).trim().toUpperCase();
+                try {
+                    declaredMode = Mode.valueOf(name);
+                } catch (IllegalArgumentException ex) {
+                    throw new Exception("Modalità sconosciuta: " + name);
+                }
+                continue;
+            }
+
+            if (inCode) {
+                // Se la riga è "LABEL:" su riga a sé, la label indica l'istruzione successiva
+                // (nessuno slot NOP); oppure "LABEL: istruzione"
+                if (line.contains(":")) {
+                    String[] parts = line.split(":", 2);
+                    String label = parts[0].trim().toUpperCase();
+                    labelMap.put(label, codeSegment.size()); // l'indirizzo è la size attuale
+                    // se c'è qualcosa dopo i due punti, lo consideriamo istruzione
+                    String after = parts.length > 1 ? parts[1].trim() : "";
+                    if (!after.isEmpty()) {
+                        codeSegment.add(after);
+                    }
+                } else {
+                    // Istruzione pura
+                    codeSegment.add(line);
+                }
+            } else if (inData) {
+                // Aspettiamo linee come "X = 10" o "Y=123"
+                String[] parts = line.split("=", 2);
+                if (parts.length < 2) {
+                    // Errore di sintassi
+                    throw new Exception("Sintassi data non valida: " + line);
+                }
+                String var = parts[0].trim(); // ignorato in questa demo
+                dataSegment.add(Double.parseDouble(parts[1].trim()));
+            } else {
+                // Righe fuori da [CODE] e [DATA]: ignorate, la CPU le logga
+                ignored.add(line);
+            }
+        }
+        mode = declaredMode;
+        code = Collections.unmodifiableList(codeSegment);
+        labels = Collections.unmodifiableMap(labelMap);
+        data = new double[dataSegment.size()];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = dataSegment.get(i);
+        }
+        ignoredLines = Collections.unmodifiableList(ignored);
+
+        // Traduce code negli array ops/argA/argB/argC/imm/addr/sym, ora che labels è completa
+        // (i salti in avanti si risolvono qui)
+        int n = code.size();
+        ops = new int[n];
+        argA = new int[n];
+        argB = new int[n];
+        argC = new int[n];
+        imm = new double[n];
+        ival = new long[n];
+        addr = new long[n];
+        sym = new String[n];
+        long max = -1;
+        for (int i = 0; i < n; i++) {
+            decodeInstruction(i, code.get(i).trim());
+            if (usesAddress(ops[i])) {
+                max = Math.max(max, addr[i]);
+            }
+        }
+        maxAddress = max;
+        checkLabels();
+        unchecked = RangeAnalysis.unchecked(mode, ops, argA, argB, imm);
+        fused = Peephole.fuse(ops, unchecked);
+    }
+
+    /**
+     * Label sconosciute in JMP/GOTO, JMPZ, JE..JGE e CALL: errore di caricamento con l'elenco completo,
+     * invece di scoprirle a metà esecuzione.
+     */
+    private void checkLabels() throws Exception {
+        StringBuilder unknown = new StringBuilder();
+        for (int i = 0; i < ops.length; i++) {
+            int target = switch (ops[i]) {
+                case Opcodes.JMP, Opcodes.CALL, Opcodes.JE, Opcodes.JNE, Opcodes.JL, Opcodes.JG, Opcodes.JLE,
+                     Opcodes.JGE -> argA[i];
+                case Opcodes.JMPZ -> argB[i];
+                default -> 0;
+            };
+            if (target < 0) {
+                unknown.append(unknown.isEmpty() ? "" : "; ")
+                        .append(sym[i]).append(" (istruzione ").append(i).append(": ").append(code.get(i)).append(')');
+            }
+        }
+        if (!unknown.isEmpty()) {
+            throw new Exception("Label sconosciute: " + unknown);
+        }
+    }
+
+    /**
+     * Copia di base con ops e sym propri (il resto è condiviso), vedi forMemory.
+     */
+    private Program(Program base, int[] ops, String[] sym) {
+        this.code = base.code;
+        this.labels = base.labels;
+        this.mode = base.mode;
+        this.ops = ops;
+        this.argA = base.argA;
+        this.argB = base.argB;
+        this.argC = base.argC;
+        this.imm = base.imm;
+        this.ival = base.ival;
+        this.addr = base.addr;
+        this.sym = sym;
+        // le istruzioni diventate INVALID hanno solo meno successori: l'analisi di base resta valida
+        this.unchecked = base.unchecked;
+        this.fused = Peephole.fuse(ops, unchecked);
+        this.data = base.data;
+        this.ignoredLines = base.ignoredLines;
+        this.maxAddress = base.maxAddress;
+    }
+
+    /**
+     * Il programma come lo vede una memoria di cells celle: se usa indirizzi oltre la fine,
+     * quelle istruzioni diventano INVALID in una copia (il controllo di range si fa una volta
+     * sola, qui); altrimenti restituisce this, quindi il caso normale non copia nulla.
+     */
+    Program forMemory(long cells) {
+        if (maxAddress < cells) {
+            return this;
+        }
+        int[] boundOps = ops.clone();
+        String[] boundSym = sym.clone();
+        for (int i = 0; i < boundOps.length; i++) {
+            if (usesAddress(boundOps[i]) && addr[i] >= cells) {
+                boundSym[i] = "[CPU] " + Opcodes.name(boundOps[i]) + ": indirizzo fuori range " + addr[i];
+                boundOps[i] = Opcodes.INVALID;
+            }
+        }
+        return new Program(this, boundOps, boundSym);
+    }
+
+    private static boolean usesAddress(int op) {
+        return switch (op) {
+            case Opcodes.LOAD, Opcodes.STORE, Opcodes.CAS, Opcodes.XCHG, Opcodes.ATOMADD -> true;
+            default -> false;
+        };
+    }
+
+    /**
+     * Numero di istruzioni.
+     */
+    public int size() {
+        return code.size();
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public List<String> getCode() {
+        return code;
+    }
+
+    public Map<String, Integer> getLabels() {
+        return labels;
+    }
+
+    /**
+     * Indirizzo dell'istruzione con quella label, -1 se non esiste.
+     */
+    public int labelAddress(String label) {
+        return labels.getOrDefault(label.trim().toUpperCase(), -1);
+    }
+
+    /**
+     * Valori iniziali di [DATA] (una copia).
+     */
+    public double[] getDataImage() {
+        return data.clone();
+    }
+
+    /**
+     * Decodifica una singola riga seguendo le stesse regole di execInstruction.
+     * Gli errori non interrompono il caricamento: l'istruzione diventa INVALID
+     * e il messaggio viene loggato solo se (e quando) viene eseguita, come prima.
+     */
+    private void decodeInstruction(int i, String line) {
+        ops[i] = Opcodes.INVALID;
+        argB[i] = 0;
+        try {
+            if (line.toUpperCase().startsWith("CALL")) {
+                line = line.substring(4).trim();
+                int parOpen = line.indexOf('(');
+                int parClose = line.indexOf(')');
+                int paramCount = 0;
+                String labelName = line;
+                if (parOpen > 0 && parClose > parOpen) {
+                    labelName = line.substring(0, parOpen).trim();
+                    String paramStr = line.substring(parOpen + 1, parClose).trim();
+                    if (!paramStr.isEmpty()) {
+                        paramCount = Integer.parseInt(paramStr);
+                    }
+                }
+                // le label sono definite in maiuscolo, come per JMP
+                setBranch(i, Opcodes.CALL, labelName.toUpperCase(), paramCount);
+                return;
+            }
+
+            String[] parts = line.split("[,\\s]+");
+            String opcode = parts[0].toUpperCase();
+            switch (opcode) {
+                case "HLT" -> ops[i] = Opcodes.HLT;
+                case "NOP" -> ops[i] = Opcodes.NOP;
+                case "MOVI" -> {
+                    argA[i] = parseRegister(parts[1]);
+                    if (mode == Mode.INTEGER) {
+                        ival[i] = Long.parseLong(parts[2]);
+                        imm[i] = ival[i];
+                    } else {
+                        imm[i] = Double.parseDouble(parts[2]);
+                    }
+                    ops[i] = Opcodes.MOVI;
+                }
+                case "MOVR" -> setRegReg(i, Opcodes.MOVR, parts);
+                case "ADD" -> setRegReg(i, Opcodes.ADD, parts);
+                case "SUB" -> setRegReg(i, Opcodes.SUB, parts);
+                case "MUL" -> setRegReg(i, Opcodes.MUL, parts);
+                case "DIV" -> setRegReg(i, Opcodes.DIV, parts);
+                case "MOD" -> setRegReg(i, Opcodes.MOD, parts);
+                case "AND" -> setRegReg(i, Opcodes.AND, parts);
+                case "OR" -> setRegReg(i, Opcodes.OR, parts);
+                case "XOR" -> setRegReg(i, Opcodes.XOR, parts);
+                case "CMP" -> setRegReg(i, Opcodes.CMP, parts);
+                case "TEST" -> setRegReg(i, Opcodes.TEST, parts);
+                case "JE", "JNE", "JL", "JG", "JLE", "JGE" ->
+                        setBranch(i, Opcodes.flagJump(opcode), parts[1].toUpperCase(), 0);
+                case "SHIFT" -> {
+                    int rD = parseRegister(parts[1]);
+                    String direction = parts[2].toUpperCase();
+                    int count = Integer.parseInt(parts[3]);
+                    int op;
+                    switch (direction) {
+                        case "LEFT" -> op = Opcodes.SHL;
+                        case "RIGHT" -> op = Opcodes.SHR;
+                        case "ARITH" -> op = Opcodes.SAR;
+                        default -> {
+                            sym[i] = "[CPU] SHIFT: direzione sconosciuta: " + direction;
+                            return;
+                        }
+                    }
+                    argA[i] = rD;
+                    argB[i] = count;
+                    ops[i] = op;
+                }
+                case "JMP", "GOTO" -> setBranch(i, Opcodes.JMP, parts[1].toUpperCase(), 0);
+                case "JMPZ" -> {
+                    int r = parseRegister(parts[1]);
+                    String label = parts[2].toUpperCase();
+                    sym[i] = label;
+                    argA[i] = r;
+                    argB[i] = labels.getOrDefault(label, -1);
+                    ops[i] = Opcodes.JMPZ;
+                }
+                case "CALL" -> setBranch(i, Opcodes.CALL, parts[1].toUpperCase(), 0);
+                case "RET" -> ops[i] = Opcodes.RET;
+                case "PUSH" -> {
+                    argA[i] = parseRegister(parts[1]);
+                    ops[i] = Opcodes.PUSH;
+                }
+                case "POP" -> {
+                    argA[i] = parseRegister(parts[1]);
+                    ops[i] = Opcodes.POP;
+                }
+                case "STORE", "LOAD" -> {
+                    argA[i] = parseRegister(parts[1]);
+                    if (decodeAddress(i, opcode, parts[2])) {
+                        ops[i] = opcode.equals("STORE") ? Opcodes.STORE : Opcodes.LOAD;
+                    }
+                }
+                case "CAS" -> {
+                    // CAS Ratteso, Rnuovo, addr
+                    argA[i] = parseRegister(parts[1]);
+                    argB[i] = parseRegister(parts[2]);
+                    if (decodeAddress(i, opcode, parts[3])) {
+                        ops[i] = Opcodes.CAS;
+                    }
+                }
+                case "XCHG", "ATOMADD" -> {
+                    argA[i] = parseRegister(parts[1]);
+                    if (decodeAddress(i, opcode, parts[2])) {
+                        ops[i] = opcode.equals("XCHG") ? Opcodes.XCHG : Opcodes.ATOMADD;
+                    }
+                }
+                case "FENCE" -> ops[i] = Opcodes.FENCE;
+                case "MEMCPY", "MEMSET", "MEMCMP" -> {
+                    // MEMCPY Rdest, Rsorgente, Rlen / MEMSET Rdest, Rvalore, Rlen / MEMCMP Ra, Rb, Rlen
+                    argA[i] = parseRegister(parts[1]);
+                    argB[i] = parseRegister(parts[2]);
+                    argC[i] = parseRegister(parts[3]);
+                    ops[i] = switch (opcode) {
+                        case "MEMCPY" -> Opcodes.MEMCPY;
+                        case "MEMSET" -> Opcodes.MEMSET;
+                        default -> Opcodes.MEMCMP;
+                    };
+                }
+                case "COREID" -> {
+                    argA[i] = parseRegister(parts[1]);
+                    ops[i] = Opcodes.COREID;
+                }
+                case "VSETL" -> {
+                    argA[i] = parseRegister(parts[1]);
+                    ops[i] = Opcodes.VSETL;
+                }
+                case "VLOAD", "VSTORE" -> {
+                    // VLOAD Vdest, Rindirizzo / VSTORE Vsorgente, Rindirizzo
+                    argA[i] = parseVectorRegister(parts[1]);
+                    argB[i] = parseRegister(parts[2]);
+                    ops[i] = opcode.equals("VLOAD") ? Opcodes.VLOAD : Opcodes.VSTORE;
+                }
+                case "VADD", "VMUL" -> {
+                    argA[i] = parseVectorRegister(parts[1]);
+                    argB[i] = parseVectorRegister(parts[2]);
+                    ops[i] = opcode.equals("VADD") ? Opcodes.VADD : Opcodes.VMUL;
+                }
+                case "VFMA" -> {
+                    // VFMA Vd, Va, Vb: Vd += Va * Vb
+                    argA[i] = parseVectorRegister(parts[1]);
+                    argB[i] = parseVectorRegister(parts[2]);
+                    argC[i] = parseVectorRegister(parts[3]);
+                    ops[i] = Opcodes.VFMA;
+                }
+                case "VREDUCE" -> {
+                    // VREDUCE Rdest, Vsorgente: somma delle componenti
+                    argA[i] = parseRegister(parts[1]);
+                    argB[i] = parseVectorRegister(parts[2]);
+                    ops[i] = Opcodes.VREDUCE;
+                }
+                default -> sym[i] = "[CPU] Istruzione sconosciuta: " + opcode;
+            }
+        } catch (Exception ex) {
+            ops[i] = Opcodes.INVALID;
+            sym[i] = "[CPU] Errore execInstruction: " + ex.getMessage();
+        }
+    }
+
+    private void setRegReg(int i, int op, String[] parts) {
+        argA[i] = parseRegister(parts[1]);
+        argB[i] = parseRegister(parts[2]);
+        ops[i] = op;
+    }
+
+    /**
+     * JMP e CALL: il target viene risolto ora; -1 se la label non esiste (vedi checkLabels).
+     */
+    private void setBranch(int i, int op, String label, int extra) {
+        sym[i] = label;
+        argA[i] = labels.getOrDefault(label, -1);
+        argB[i] = extra;
+        ops[i] = op;
+    }
+
+    /**
+     * Legge l'indirizzo immediato dell'istruzione i. Gli indirizzi negativi sono errori già qui;
+     * il limite superiore dipende dalla memoria e lo verifica forMemory.
+     */
+    private boolean decodeAddress(int i, String opcode, String token) {
+        long address = Long.parseLong(token);
+        if (address < 0) {
+            sym[i] = "[CPU] " + opcode + ": indirizzo fuori range " + address;
+            return false;
+        }
+        addr[i] = address;
+        return true;
+    }
+
+    static int parseRegister(String token) {
+        // Esempio: "R3," -> r=3
+        token = token.trim().toUpperCase();
+        if (!token.startsWith("R")) {
+            throw new IllegalArgumentException("Registro non valido: " + token);
+        }
+        String sub = token.substring(1);
+        if (sub.endsWith(",")) {
+            sub = sub.substring(0, sub.length() - 1);
+        }
+        int r = Integer.parseInt(sub);
+        if (r < 0 || r >= AdvancedCPU.REGISTERS) {
+            throw new IllegalArgumentException("Registro fuori range: R" + r);
+        }
+        return r;
+    }
+
+    static int parseVectorRegister(String token) {
+        // Esempio: "V3," -> v=3
+        token = token.trim().toUpperCase();
+        if (!token.startsWith("V")) {
+            throw new IllegalArgumentException("Registro vettoriale non valido: " + token);
+        }
+        String sub = token.substring(1);
+        if (sub.endsWith(",")) {
+            sub = sub.substring(0, sub.length() - 1);
+        }
+        int v = Integer.parseInt(sub);
+        if (v < 0 || v >= AdvancedCPU.VREGISTERS) {
+            throw new IllegalArgumentException("Registro vettoriale fuori range: V" + v);
+        }
+        return v;
+    }
+}
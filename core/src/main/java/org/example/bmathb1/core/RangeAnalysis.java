@@ -0,0 +1,227 @@
+package org.example.bmathb1.core;
+
+/**
+ * Analisi dei valori fatta al caricamento: trova le MOVI, ADD, SUB e MUL della modalità FLOAT
+ * il cui risultato non può mai essere NaN o Infinity. Per quelle la CPU esegue una variante senza
+ * checkOverflow (vedi Opcodes.ADD_UNCHECKED e BlockCompiler); tutte le altre restano controllate,
+ * quindi l'overflow viene segnalato come prima.
+ *
+ * Per ogni registro si tiene un limite |R| <= base + rate * n, dove n sono i passi già eseguiti
+ * (stepCount è un long, quindi n < 2^63). Un contatore che cresce o cala di quantità limitate cresce
+ * al più linearmente in n: anche in un ciclo infinito resta lontanissimo da Double.MAX_VALUE.
+ * Chi raddoppia o moltiplica in un ciclo (Fibonacci, potenze) non si stabilizza e viene allargato
+ * a "sconosciuto".
+ *
+ * L'analisi si basa su un fatto: in FLOAT i registri sono sempre finiti, perché ogni istruzione
+ * che può produrre NaN o Infinity passa da checkOverflow e azzera il registro. Per lo stesso motivo
+ * MOVR, MOD e le operazioni su int non fanno mai il controllo. In modalità INTEGER non c'è nulla da
+ * marcare: l'overflow lì è quello esatto dei long.
+ */
+final class RangeAnalysis {
+    private static final int REGS = AdvancedCPU.REGISTERS;
+    // Limite dei passi eseguibili (stepCount è un long)
+    private static final double MAX_STEPS = 0x1p63;
+    // Oltre questo limite un risultato non è considerato dimostrabilmente finito. È molto sotto
+    // Double.MAX_VALUE (~2^1024), così gli arrotondamenti nel calcolo dei limiti non contano.
+    private static final double SAFE = 0x1p1000;
+    // Modulo massimo del risultato di MOD, AND/OR/XOR, SHIFT e COREID (sono tutti int)
+    private static final double INT_RANGE = 0x1p31;
+    // Aggiornamenti di uno stato dopo i quali i limiti che crescono ancora diventano sconosciuti
+    private static final int WIDEN_AFTER = 8;
+    private static final double UNKNOWN = Double.POSITIVE_INFINITY;
+
+    private final int[] ops;
+    private final int[] argA;
+    private final int[] argB;
+    private final double[] imm;
+    // Stato all'ingresso di ogni istruzione: base dei registri in [0, REGS), rate in [REGS, 2 * REGS);
+    // null se l'istruzione non è raggiungibile
+    private final double[][] in;
+    private final int[] updates;
+    private final int[] worklist;
+    private final boolean[] queued;
+    private int pending;
+    // Unione degli stati all'uscita di tutte le RET (null finché nessuna è raggiungibile): ogni
+    // istruzione può essere un ritorno, quindi lo stato va unito a tutte, ma solo quando cresce
+    private double[] returned;
+    private int returnUpdates;
+
+    private RangeAnalysis(int[] ops, int[] argA, int[] argB, double[] imm) {
+        this.ops = ops;
+        this.argA = argA;
+        this.argB = argB;
+        this.imm = imm;
+        int n = ops.length;
+        in = new double[n][];
+        updates = new int[n];
+        worklist = new int[n];
+        queued = new boolean[n];
+    }
+
+    /**
+     * Istruzioni che possono fare a meno di checkOverflow: true solo per MOVI con immediato finito
+     * e per ADD/SUB/MUL con risultato dimostrato finito, sempre false in modalità INTEGER.
+     */
+    static boolean[] unchecked(Program.Mode mode, int[] ops, int[] argA, int[] argB, double[] imm) {
+        boolean[] unchecked = new boolean[ops.length];
+        if (mode != Program.Mode.FLOAT || ops.length == 0) {
+            return unchecked;
+        }
+        RangeAnalysis analysis = new RangeAnalysis(ops, argA, argB, imm);
+        analysis.run();
+        for (int pc = 0; pc < ops.length; pc++) {
+            double[] s = analysis.in[pc];
+            if (s == null) {
+                continue;
+            }
+            int a = argA[pc];
+            int b = argB[pc];
+            unchecked[pc] = switch (ops[pc]) {
+                case Opcodes.MOVI -> isFinite(imm[pc]);
+                case Opcodes.ADD, Opcodes.SUB -> bound(s, a) + bound(s, b) <= SAFE;
+                // 0 * Infinity = NaN: il confronto fallisce e l'istruzione resta controllata
+                case Opcodes.MUL -> bound(s, a) * bound(s, b) <= SAFE;
+                default -> false;
+            };
+        }
+        return unchecked;
+    }
+
+    // Punto fisso sugli stati, partendo dall'istruzione 0 con tutti i registri a 0
+    private void run() {
+        int n = ops.length;
+        in[0] = new double[2 * REGS];
+        enqueue(0);
+        while (pending > 0) {
+            int pc = worklist[--pending];
+            queued[pc] = false;
+            double[] out = in[pc].clone();
+            transfer(pc, out);
+            switch (ops[pc]) {
+                case Opcodes.HLT, Opcodes.INVALID -> {
+                }
+                case Opcodes.JMP, Opcodes.CALL -> merge(argA[pc], out);
+                case Opcodes.JMPZ -> {
+                    merge(pc + 1, out);
+                    merge(argB[pc], out);
+                }
+                case Opcodes.JE, Opcodes.JNE, Opcodes.JL, Opcodes.JG, Opcodes.JLE, Opcodes.JGE -> {
+                    merge(pc + 1, out);
+                    merge(argA[pc], out);
+                }
+                case Opcodes.RET -> {
+                    // l'indirizzo di ritorno viene dallo stack, dove PUSH può scrivere qualsiasi valore
+                    if (joinReturn(out)) {
+                        for (int target = 0; target < n; target++) {
+                            merge(target, returned);
+                        }
+                    }
+                }
+                default -> merge(pc + 1, out);
+            }
+        }
+    }
+
+    /**
+     * Stato dopo l'istruzione pc (s è lo stato all'ingresso, modificato sul posto).
+     */
+    private void transfer(int pc, double[] s) {
+        int a = argA[pc];
+        int b = argB[pc];
+        switch (ops[pc]) {
+            case Opcodes.MOVI -> set(s, a, isFinite(imm[pc]) ? Math.abs(imm[pc]) : 0, 0);
+            case Opcodes.MOVR -> set(s, a, s[b], s[REGS + b]);
+            // |a ± b| <= base_a + rate_a * n + base_b + rate_b * n <= base_a + rate' * (n + 1)
+            // con rate' = max(rate_a + rate_b, base_b): un incremento limitato fa crescere solo rate
+            case Opcodes.ADD, Opcodes.SUB -> set(s, a, s[a], Math.max(s[REGS + a] + s[REGS + b], s[b]));
+            case Opcodes.MUL -> {
+                if (s[REGS + a] == 0 && s[REGS + b] == 0 && s[a] != UNKNOWN && s[b] != UNKNOWN) {
+                    set(s, a, s[a] * s[b], 0);
+                } else {
+                    set(s, a, UNKNOWN, UNKNOWN);
+                }
+            }
+            // DIV può dividere per un valore piccolo a piacere; memoria, stack e registri vettoriali
+            // contengono qualsiasi valore
+            case Opcodes.DIV, Opcodes.LOAD, Opcodes.POP, Opcodes.CAS, Opcodes.XCHG, Opcodes.ATOMADD,
+                 Opcodes.VREDUCE -> set(s, a, UNKNOWN, UNKNOWN);
+            case Opcodes.VSETL -> set(s, a, AdvancedCPU.VLEN, 0);
+            case Opcodes.MOD, Opcodes.SHL, Opcodes.SHR, Opcodes.SAR, Opcodes.AND, Opcodes.OR, Opcodes.XOR,
+                 Opcodes.COREID -> set(s, a, INT_RANGE, 0);
+            // MEMCMP scrive in R c un indice tra 0 e la lunghezza letta da R c: il limite resta valido
+            default -> {
+            }
+        }
+    }
+
+    private void merge(int target, double[] out) {
+        if (target < 0 || target >= ops.length) {
+            // IP fuori dal programma: la CPU si ferma
+            return;
+        }
+        double[] s = in[target];
+        if (s == null) {
+            in[target] = out.clone();
+            enqueue(target);
+            return;
+        }
+        boolean changed = false;
+        boolean widen = updates[target] >= WIDEN_AFTER;
+        for (int i = 0; i < s.length; i++) {
+            if (out[i] > s[i]) {
+                s[i] = widen ? UNKNOWN : out[i];
+                changed = true;
+            }
+        }
+        if (changed) {
+            updates[target]++;
+            enqueue(target);
+        }
+    }
+
+    /**
+     * Unisce lo stato all'uscita di una RET a {@link #returned}; true se è cresciuto. Con lo stesso
+     * allargamento di merge cresce poche volte per registro, quindi le RET costano O(n) in tutto
+     * e non O(n) ciascuna.
+     */
+    private boolean joinReturn(double[] out) {
+        if (returned == null) {
+            returned = out.clone();
+            return true;
+        }
+        boolean changed = false;
+        boolean widen = returnUpdates >= WIDEN_AFTER;
+        for (int i = 0; i < returned.length; i++) {
+            if (out[i] > returned[i]) {
+                returned[i] = widen ? UNKNOWN : out[i];
+                changed = true;
+            }
+        }
+        if (changed) {
+            returnUpdates++;
+        }
+        return changed;
+    }
+
+    private void enqueue(int pc) {
+        if (!queued[pc]) {
+            queued[pc] = true;
+            worklist[pending++] = pc;
+        }
+    }
+
+    private static void set(double[] s, int r, double base, double rate) {
+        // NaN (es. Infinity * 0) vale come sconosciuto, così i confronti di merge restano corretti
+        s[r] = Double.isNaN(base) ? UNKNOWN : base;
+        s[REGS + r] = Double.isNaN(rate) ? UNKNOWN : rate;
+    }
+
+    // Limite di |R r| valido per tutta l'esecuzione
+    private static double bound(double[] s, int r) {
+        return s[r] + s[REGS + r] * MAX_STEPS;
+    }
+
+    private static boolean isFinite(double v) {
+        return !Double.isNaN(v) && !Double.isInfinite(v);
+    }
+}
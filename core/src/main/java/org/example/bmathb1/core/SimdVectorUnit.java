@@ -0,0 +1,73 @@
+package org.example.bmathb1.core;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Implementazione SIMD di {@link VectorUnit}: ogni operazione procede a blocchi di
+ * DoubleVector.SPECIES_PREFERRED (4 double con AVX2, 8 con AVX-512, 2 con NEON) e finisce
+ * con un ciclo scalare sulle componenti che avanzano.
+ * Si usa solo se c'è il modulo della Vector API, vedi {@link VectorUnit#SIMD}.
+ */
+final class SimdVectorUnit {
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    private SimdVectorUnit() {
+    }
+
+    static void add(double[] v, int d, int s, int len) {
+        int bound = SPECIES.loopBound(len);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            DoubleVector x = DoubleVector.fromArray(SPECIES, v, d + i);
+            x.add(DoubleVector.fromArray(SPECIES, v, s + i)).intoArray(v, d + i);
+        }
+        for (; i < len; i++) {
+            v[d + i] += v[s + i];
+        }
+    }
+
+    static void mul(double[] v, int d, int s, int len) {
+        int bound = SPECIES.loopBound(len);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            DoubleVector x = DoubleVector.fromArray(SPECIES, v, d + i);
+            x.mul(DoubleVector.fromArray(SPECIES, v, s + i)).intoArray(v, d + i);
+        }
+        for (; i < len; i++) {
+            v[d + i] *= v[s + i];
+        }
+    }
+
+    static void fma(double[] v, int d, int a, int b, int len) {
+        int bound = SPECIES.loopBound(len);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            DoubleVector x = DoubleVector.fromArray(SPECIES, v, a + i);
+            DoubleVector y = DoubleVector.fromArray(SPECIES, v, b + i);
+            x.fma(y, DoubleVector.fromArray(SPECIES, v, d + i)).intoArray(v, d + i);
+        }
+        for (; i < len; i++) {
+            v[d + i] = Math.fma(v[a + i], v[b + i], v[d + i]);
+        }
+    }
+
+    static double sum(double[] v, int s, int len) {
+        int bound = SPECIES.loopBound(len);
+        int i = 0;
+        DoubleVector acc = DoubleVector.zero(SPECIES);
+        for (; i < bound; i += SPECIES.length()) {
+            acc = acc.add(DoubleVector.fromArray(SPECIES, v, s + i));
+        }
+        // reduceLanes(ADD) può sommare le lane in qualsiasi ordine, anche diverso tra codice
+        // interpretato e compilato: qui l'ordine è fisso, così tutti gli engine danno lo stesso valore
+        double sum = 0;
+        for (int lane = 0; lane < SPECIES.length(); lane++) {
+            sum += acc.lane(lane);
+        }
+        for (; i < len; i++) {
+            sum += v[s + i];
+        }
+        return sum;
+    }
+}
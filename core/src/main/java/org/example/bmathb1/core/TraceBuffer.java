@@ -0,0 +1,122 @@
+package org.example.bmathb1.core;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.function.Consumer;
+
+/**
+ * TraceSink a buffer circolare preallocato: record scrive solo primitivi e riferimenti
+ * in array, senza allocare né formattare; i messaggi vengono costruiti in {@link #drainTo}
+ * quando il lettore (es. la UI) li mostra.
+ *
+ * Un solo thread scrittore (quello della CPU) e un solo lettore. Se lo scrittore supera
+ * il lettore di più della capacità, gli eventi più vecchi vanno persi e il lettore lo segnala.
+ */
+public final class TraceBuffer implements TraceSink {
+
+    private static final VarHandle HEAD;
+
+    static {
+        try {
+            HEAD = MethodHandles.lookup().findVarHandle(TraceBuffer.class, "head", long.class);
+        } catch (ReflectiveOperationException ex) {
+            throw new ExceptionInInitializerError(ex);
+        }
+    }
+
+    private final int capacity;
+    private final int mask;
+    private final TraceEvent[] events;
+    private final long[] argA;
+    private final int[] argB;
+    private final double[] values;
+    private final String[] texts;
+
+    @SuppressWarnings("unused") // letto/scritto tramite HEAD
+    private long head;          // eventi scritti in totale (solo lo scrittore lo incrementa)
+    private long tail;          // eventi già consegnati (solo il lettore)
+
+    /**
+     * @param capacity numero di eventi conservati, arrotondato alla potenza di 2 successiva
+     */
+    public TraceBuffer(int capacity) {
+        if (capacity <= 0 || capacity > (1 << 30)) {
+            throw new IllegalArgumentException("Capacità non valida: " + capacity);
+        }
+        this.capacity = nextPowerOfTwo(capacity);
+        this.mask = this.capacity - 1;
+        events = new TraceEvent[this.capacity];
+        argA = new long[this.capacity];
+        argB = new int[this.capacity];
+        values = new double[this.capacity];
+        texts = new String[this.capacity];
+    }
+
+    private static int nextPowerOfTwo(int n) {
+        return n == 1 ? 1 : Integer.highestOneBit(n - 1) << 1;
+    }
+
+    @Override
+    public void record(TraceEvent event, long a, int b, double value, String text) {
+        long h = (long) HEAD.getOpaque(this);
+        int i = (int) h & mask;
+        events[i] = event;
+        argA[i] = a;
+        argB[i] = b;
+        values[i] = value;
+        texts[i] = text;
+        // pubblica l'evento: il lettore che vede il nuovo head vede anche i campi scritti sopra
+        HEAD.setRelease(this, h + 1);
+    }
+
+    /**
+     * Formatta e consegna gli eventi non ancora letti, nell'ordine in cui sono stati registrati.
+     * Gli eventi sovrascritti, compreso il più vecchio di un buffer pieno (lo scrittore potrebbe
+     * riscriverlo proprio mentre lo si legge), diventano una riga "eventi persi" al loro posto.
+     *
+     * @return numero di messaggi consegnati
+     */
+    public int drainTo(Consumer<String> out) {
+        long h = (long) HEAD.getAcquire(this);
+        long from = tail;
+        long lost = 0;
+        int delivered = 0;
+        if (h - from > capacity) {
+            lost = h - capacity - from;
+            from = h - capacity;
+        }
+        for (long seq = from; seq < h; seq++) {
+            int i = (int) seq & mask;
+            String msg = events[i].format(argA[i], argB[i], values[i], texts[i]);
+            // se nel frattempo lo scrittore ha raggiunto questo slot, il contenuto non è affidabile
+            if ((long) HEAD.getAcquire(this) - seq >= capacity) {
+                lost++;
+                continue;
+            }
+            if (lost > 0) {
+                out.accept("[TRACE] " + lost + " eventi persi");
+                delivered++;
+                lost = 0;
+            }
+            out.accept(msg);
+            delivered++;
+        }
+        if (lost > 0) {
+            out.accept("[TRACE] " + lost + " eventi persi");
+            delivered++;
+        }
+        tail = h;
+        return delivered;
+    }
+
+    /**
+     * Scarta gli eventi non ancora letti.
+     */
+    public void clear() {
+        tail = (long) HEAD.getAcquire(this);
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+}
@@ -0,0 +1,90 @@
+package org.example.bmathb1.core;
+
+/**
+ * Tipi di evento di trace. Ogni evento trasporta solo primitivi (a, b, value) e al più
+ * un riferimento a una stringa già esistente (text); il testo del messaggio viene
+ * costruito da {@link #format} solo quando qualcuno lo visualizza.
+ *
+ * Nei pattern: %1$d = a, %2$d = b, %3$.4f = value, %4$s = text.
+ */
+public enum TraceEvent {
+    // caricamento / stato
+    OUT_OF_SEGMENT(TraceLevel.VERBOSE, "[CPU] Riga fuori segmenti: %4$s"),
+    CODE_LOADED(TraceLevel.VERBOSE, "[CPU] Caricate %1$d istruzioni in codeSegment."),
+    DATA_LOADED(TraceLevel.VERBOSE, "[CPU] Caricati %1$d valori in dataSegment."),
+    ALREADY_HALTED(TraceLevel.VERBOSE, "[CPU] Già in HALT."),
+
+    // istruzioni
+    HLT(TraceLevel.INSTR, "[CPU] HLT"),
+    NOP(TraceLevel.INSTR, "[CPU] NOP"),
+    MOVI(TraceLevel.INSTR, "[CPU] MOVI => R%1$d=%3$.4f"),
+    MOVR(TraceLevel.INSTR, "[CPU] MOVR => R%1$d=R%2$d(%3$.4f)"),
+    ADD(TraceLevel.INSTR, "[CPU] ADD => R%1$d=%3$.4f"),
+    SUB(TraceLevel.INSTR, "[CPU] SUB => R%1$d=%3$.4f"),
+    MUL(TraceLevel.INSTR, "[CPU] MUL => R%1$d=%3$.4f"),
+    DIV(TraceLevel.INSTR, "[CPU] DIV => R%1$d=%3$.4f"),
+    MOD(TraceLevel.INSTR, "[CPU] MOD => R%1$d=%3$.4f"),
+    SHIFT(TraceLevel.INSTR, "[CPU] SHIFT => R%1$d=%3$.0f"),
+    AND(TraceLevel.INSTR, "[CPU] AND => R%1$d=%3$.0f"),
+    OR(TraceLevel.INSTR, "[CPU] OR => R%1$d=%3$.0f"),
+    XOR(TraceLevel.INSTR, "[CPU] XOR => R%1$d=%3$.0f"),
+    JMP(TraceLevel.INSTR, "[CPU] JMP => IP=%1$d (%4$s)"),
+    JMPZ_TAKEN(TraceLevel.INSTR, "[CPU] JMPZ => saltato a %4$s"),
+    JMPZ_NOT_TAKEN(TraceLevel.INSTR, "[CPU] JMPZ => condizione falsa"),
+    CALL(TraceLevel.INSTR, "[CPU] CALL => IP=%1$d, paramCount=%2$d"),
+    RET(TraceLevel.INSTR, "[CPU] RET => IP=%1$d (paramCount=%2$d)"),
+    PUSH(TraceLevel.INSTR, "[CPU] PUSH => sp=%1$d val=%3$.4f"),
+    POP(TraceLevel.INSTR, "[CPU] POP => R%1$d=%3$.4f"),
+    STORE(TraceLevel.INSTR, "[CPU] STORE => data[%1$d]=%3$.4f"),
+    LOAD(TraceLevel.INSTR, "[CPU] LOAD => R%1$d=%3$.4f"),
+    CAS(TraceLevel.INSTR, "[CPU] CAS => data[%1$d] %4$s, R%2$d=%3$.4f"),
+    XCHG(TraceLevel.INSTR, "[CPU] XCHG => data[%1$d] <-> R%2$d=%3$.4f"),
+    ATOMADD(TraceLevel.INSTR, "[CPU] ATOMADD => data[%1$d], R%2$d=%3$.4f (precedente)"),
+    FENCE(TraceLevel.INSTR, "[CPU] FENCE"),
+    COREID(TraceLevel.INSTR, "[CPU] COREID => R%1$d=%3$.0f"),
+    CMP(TraceLevel.INSTR, "[CPU] CMP => R%1$d, R%2$d"),
+    TEST(TraceLevel.INSTR, "[CPU] TEST => R%1$d, R%2$d"),
+    BRANCH_TAKEN(TraceLevel.INSTR, "[CPU] Salto condizionato => saltato a %4$s"),
+    BRANCH_NOT_TAKEN(TraceLevel.INSTR, "[CPU] Salto condizionato => condizione falsa"),
+    MEMCPY(TraceLevel.INSTR, "[CPU] MEMCPY => %3$.0f celle in data[%1$d]"),
+    MEMSET(TraceLevel.INSTR, "[CPU] MEMSET => %3$.0f celle da data[%1$d]"),
+    MEMCMP(TraceLevel.INSTR, "[CPU] MEMCMP => R%1$d=%3$.0f"),
+    VSETL(TraceLevel.INSTR, "[CPU] VSETL => VL=%3$.0f (R%1$d)"),
+    VLOAD(TraceLevel.INSTR, "[CPU] VLOAD => V%1$d da data[%3$.0f]"),
+    VSTORE(TraceLevel.INSTR, "[CPU] VSTORE => V%1$d in data[%3$.0f]"),
+    VADD(TraceLevel.INSTR, "[CPU] VADD => V%1$d += V%2$d (%3$.0f componenti)"),
+    VMUL(TraceLevel.INSTR, "[CPU] VMUL => V%1$d *= V%2$d (%3$.0f componenti)"),
+    VFMA(TraceLevel.INSTR, "[CPU] VFMA => V%1$d += V%2$d * V%3$.0f"),
+    VREDUCE(TraceLevel.INSTR, "[CPU] VREDUCE => R%1$d=%3$.4f (somma di V%2$d)"),
+
+    // errori
+    ERROR(TraceLevel.ERROR, "%4$s"),
+    IP_OUT_OF_RANGE(TraceLevel.ERROR, "[CPU] IP fuori range, esecuzione termina."),
+    STEP_LIMIT(TraceLevel.ERROR, "[CPU] Troppe istruzioni eseguite (> %3$.0f). HALT."),
+    DIV_BY_ZERO(TraceLevel.ERROR, "[CPU] DIV by zero => R%1$d=0"),
+    MOD_BY_ZERO(TraceLevel.ERROR, "[CPU] MOD by zero => R%1$d=0"),
+    JMP_UNKNOWN_LABEL(TraceLevel.ERROR, "[CPU] JMP: label sconosciuta %4$s"),
+    CALL_UNKNOWN_LABEL(TraceLevel.ERROR, "[CPU] CALL: label sconosciuta %4$s"),
+    STACK_OVERFLOW(TraceLevel.ERROR, "[CPU] Stack Overflow!"),
+    STACK_UNDERFLOW(TraceLevel.ERROR, "[CPU] Stack Underflow!"),
+    OVERFLOW(TraceLevel.ERROR, "[CPU] Overflow/NaN su R%1$d => set a 0");
+
+    private final TraceLevel level;
+    private final String pattern;
+
+    TraceEvent(TraceLevel level, String pattern) {
+        this.level = level;
+        this.pattern = pattern;
+    }
+
+    public TraceLevel level() {
+        return level;
+    }
+
+    /**
+     * Costruisce il messaggio dell'evento (senza newline finale).
+     */
+    public String format(long a, int b, double value, String text) {
+        return String.format(pattern, a, b, value, text);
+    }
+}
@@ -0,0 +1,15 @@
+package org.example.bmathb1.core;
+
+/**
+ * Livelli di trace della CPU, in ordine crescente di dettaglio.
+ */
+public enum TraceLevel {
+    /** Nessun evento. */
+    OFF,
+    /** Solo errori e anomalie (overflow, stack, label sconosciute, HALT forzati). */
+    ERROR,
+    /** Anche un evento per ogni istruzione eseguita. */
+    INSTR,
+    /** Anche i messaggi di caricamento e di stato. */
+    VERBOSE
+}
@@ -0,0 +1,12 @@
+package org.example.bmathb1.core;
+
+/**
+ * Destinazione degli eventi di trace della CPU.
+ * La CPU chiama record solo per gli eventi abilitati dal suo {@link TraceLevel}, sul thread
+ * che la esegue; l'implementazione decide se e quando formattarli (vedi {@link TraceBuffer}).
+ */
+@FunctionalInterface
+public interface TraceSink {
+
+    void record(TraceEvent event, long a, int b, double value, String text);
+}
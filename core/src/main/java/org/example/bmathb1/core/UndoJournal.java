@@ -0,0 +1,286 @@
+package org.example.bmathb1.core;
+
+import java.util.Arrays;
+
+/**
+ * Storia dell'esecuzione per il debug all'indietro (vedi {@link AdvancedCPU#stepBack()}).
+ *
+ * Ogni step registra un record di dimensione fissa in array primitivi circolari: IP, SP, FLAGS
+ * e passi prima dell'istruzione, più i vecchi valori delle (al massimo due) celle che l'istruzione
+ * può modificare (un registro, una cella dati, entrambi per le atomiche o una/due celle di stack).
+ * MEMCPY/MEMSET/VSTORE e le istruzioni che scrivono un registro vettoriale salvano le celle o le
+ * componenti che sovrascrivono in un pool di celle preallocato, usato come buffer circolare nello
+ * stesso ordine dei record. Registrare uno step quindi non alloca nulla: quando il buffer dei record
+ * o il pool sono pieni si perdono i record più vecchi. Un blocco più grande dell'intero pool
+ * svuota il buffer, e per annullarlo si passa dai checkpoint.
+ *
+ * Per tornare più indietro di quanto copre il buffer, ogni checkpointInterval step si salva
+ * un {@link CpuSnapshot}: si ripristina il checkpoint precedente e si riesegue in avanti (la CPU è
+ * deterministica) fino al punto voluto. I checkpoint sono limitati in byte (stimati con
+ * {@link Memory#snapshotBytes()}, quindi con {@link PagedMemory} solo le pagine sporcate): oltre
+ * il budget si perdono i più vecchi, e se nemmeno uno ci sta la storia è limitata al buffer.
+ */
+final class UndoJournal {
+
+    // Tipo della cella salvata nel record
+    static final byte NONE = 0;
+    static final byte REGISTER = 1;
+    static final byte DATA = 2;
+    static final byte STACK = 3;        // una cella di stack (at)
+    static final byte STACK2 = 4;       // due celle di stack (at e at - 1), es. CALL
+    static final byte REGISTER_DATA = 5; // cella dati at (old) e registro argA dell'istruzione (old2), es. CAS
+    static final byte BLOCK = 6;        // celle dati da at in poi, valori nel pool (MEMCPY/MEMSET/VSTORE)
+    static final byte VECTOR = 7;       // prime componenti del registro vettoriale at, valori nel pool
+    static final byte VLENGTH = 8;      // registro at (old) e lunghezza vettoriale (old2), es. VSETL
+
+    private final int mask;
+    final int[] ip;
+    final int[] sp;
+    final int[] flags;
+    final long[] steps;
+    final byte[] kind;
+    final long[] at;
+    final double[] old;
+    final double[] old2;
+
+    // Celle dei record BLOCK e VECTOR: il record i le ha da blockStart[i] % pool.length per
+    // blockLength[i] celle. Le posizioni crescono con i record, quindi il pool si svuota come il buffer
+    final double[] pool;
+    private final long[] blockStart;
+    final int[] blockLength;
+    private long blockHead;     // prossima posizione libera del pool (assoluta, non modulo)
+
+    private long head;      // record scritti in totale: l'ultimo è (head - 1) & mask
+    private int size;       // record ancora disponibili (<= capacità)
+    private long time;      // step registrati dall'attivazione, al netto di quelli annullati
+
+    // Checkpoint in ordine di tempo; checkpointTimes[i] è il tempo di checkpoints[i]
+    private final int checkpointInterval;
+    private final long checkpointBudget;
+    private CpuSnapshot[] checkpoints = new CpuSnapshot[8];
+    private long[] checkpointTimes = new long[8];
+    private long[] checkpointSizes = new long[8];
+    private int checkpointCount;
+    private long checkpointBytes;
+    private long nextCheckpoint;
+    private boolean checkpointsEnabled;
+
+    /**
+     * La storia parte vuota e senza checkpoint: va avviata con {@link #restart}.
+     *
+     * @param capacity          record conservati, arrotondato alla potenza di 2 successiva
+     * @param blockCells        celle del pool per MEMCPY/MEMSET/VSTORE e registri vettoriali
+     * @param checkpointBudget  byte (stimati) che i checkpoint possono tenere in vita
+     */
+    UndoJournal(int capacity, int blockCells, long checkpointBudget) {
+        if (capacity <= 1 || capacity > (1 << 26)) {
+            throw new IllegalArgumentException("Capacità non valida: " + capacity);
+        }
+        if (blockCells <= 0) {
+            throw new IllegalArgumentException("Celle del pool non valide: " + blockCells);
+        }
+        if (checkpointBudget < 0) {
+            throw new IllegalArgumentException("Budget dei checkpoint non valido: " + checkpointBudget);
+        }
+        int n = Integer.highestOneBit(capacity - 1) << 1;
+        mask = n - 1;
+        ip = new int[n];
+        sp = new int[n];
+        flags = new int[n];
+        steps = new long[n];
+        kind = new byte[n];
+        at = new long[n];
+        old = new double[n];
+        old2 = new double[n];
+        pool = new double[blockCells];
+        blockStart = new long[n];
+        blockLength = new int[n];
+        // una replay riempie al più metà buffer, così dopo un rewind restano step da annullare
+        checkpointInterval = n / 2;
+        this.checkpointBudget = checkpointBudget;
+    }
+
+    /**
+     * Svuota la storia (buffer e checkpoint) tenendo gli array già allocati.
+     *
+     * @param initial   stato attuale (primo checkpoint), o null se la memoria non supporta gli
+     *                  snapshot o non stanno nel budget: la storia è allora limitata al buffer
+     * @param bytes     stima di initial, vedi {@link #checkpointFits}
+     */
+    void restart(CpuSnapshot initial, long bytes) {
+        size = 0;
+        time = 0;
+        Arrays.fill(checkpoints, 0, checkpointCount, null);
+        checkpointCount = 0;
+        checkpointBytes = 0;
+        checkpointsEnabled = initial != null;
+        if (checkpointsEnabled) {
+            addCheckpoint(initial, bytes);
+        }
+    }
+
+    /**
+     * Riserva il record per lo step corrente e ne restituisce l'indice.
+     */
+    int push() {
+        int i = (int) head & mask;
+        head++;
+        if (size <= mask) {
+            size++;
+        }
+        time++;
+        blockStart[i] = blockHead;
+        blockLength[i] = 0;
+        return i;
+    }
+
+    /**
+     * Indice dell'ultimo record, che viene tolto dalla storia; -1 se il buffer è vuoto.
+     * Le celle del record restano nel pool finché non si registra lo step successivo.
+     */
+    int pop() {
+        if (size == 0) {
+            return -1;
+        }
+        size--;
+        head--;
+        time--;
+        int i = (int) head & mask;
+        blockHead = blockStart[i];
+        return i;
+    }
+
+    /**
+     * Riserva nel pool cells celle per il record i (l'ultimo) e restituisce l'offset da cui
+     * scriverle, perdendo i record più vecchi le cui celle verrebbero sovrascritte. Se il blocco
+     * non sta nemmeno nel pool vuoto restituisce -1 e svuota il buffer: annullare lo step
+     * richiede allora un checkpoint.
+     */
+    int reserveBlock(int i, long cells) {
+        int capacity = pool.length;
+        if (cells > capacity) {
+            size = 0;
+            return -1;
+        }
+        long start = blockHead;
+        int offset = (int) (start % capacity);
+        if (offset + cells > capacity) {
+            // il blocco non si spezza: si riparte dall'inizio del pool
+            start += capacity - offset;
+            offset = 0;
+        }
+        long limit = start + cells - capacity;
+        while (size > 1 && blockStart[(int) (head - size) & mask] < limit) {
+            size--;
+        }
+        blockStart[i] = start;
+        blockLength[i] = (int) cells;
+        blockHead = start + cells;
+        return offset;
+    }
+
+    /**
+     * Offset nel pool delle celle del record i.
+     */
+    int blockOffset(int i) {
+        return (int) (blockStart[i] % pool.length);
+    }
+
+    int capacity() {
+        return mask + 1;
+    }
+
+    long time() {
+        return time;
+    }
+
+    /**
+     * True se allo step corrente va preso un checkpoint (prima di registrarlo).
+     */
+    boolean checkpointDue() {
+        return checkpointsEnabled && time >= nextCheckpoint;
+    }
+
+    /**
+     * True se un checkpoint di bytes byte sta nel budget (anche perdendo tutti gli altri).
+     */
+    boolean checkpointFits(long bytes) {
+        return bytes <= checkpointBudget;
+    }
+
+    void addCheckpoint(CpuSnapshot snapshot, long bytes) {
+        // oltre il budget si perdono i più vecchi: la storia resta limitata
+        int drop = 0;
+        while (drop < checkpointCount && checkpointBytes + bytes > checkpointBudget) {
+            checkpointBytes -= checkpointSizes[drop];
+            checkpoints[drop] = null;
+            drop++;
+        }
+        if (drop > 0) {
+            checkpointCount -= drop;
+            System.arraycopy(checkpoints, drop, checkpoints, 0, checkpointCount);
+            System.arraycopy(checkpointTimes, drop, checkpointTimes, 0, checkpointCount);
+            System.arraycopy(checkpointSizes, drop, checkpointSizes, 0, checkpointCount);
+            Arrays.fill(checkpoints, checkpointCount, checkpointCount + drop, null);
+        }
+        if (checkpointCount == checkpoints.length) {
+            checkpoints = Arrays.copyOf(checkpoints, checkpointCount * 2);
+            checkpointTimes = Arrays.copyOf(checkpointTimes, checkpointCount * 2);
+            checkpointSizes = Arrays.copyOf(checkpointSizes, checkpointCount * 2);
+        }
+        checkpoints[checkpointCount] = snapshot;
+        checkpointTimes[checkpointCount] = time;
+        checkpointSizes[checkpointCount] = bytes;
+        checkpointCount++;
+        checkpointBytes += bytes;
+        nextCheckpoint = time + checkpointInterval;
+    }
+
+    /**
+     * Salta il checkpoint dovuto (non sta nel budget): si riprova dopo checkpointInterval step.
+     */
+    void skipCheckpoint() {
+        nextCheckpoint = time + checkpointInterval;
+    }
+
+    /**
+     * Byte stimati dei checkpoint conservati.
+     */
+    long checkpointBytes() {
+        return checkpointBytes;
+    }
+
+    /**
+     * Ultimo checkpoint con tempo <= target, o -1 se la storia non arriva così indietro.
+     * I checkpoint successivi vengono scartati (dopo il rewind l'esecuzione riparte da lì);
+     * con -1 restano tutti, così un tentativo oltre l'inizio non accorcia la storia.
+     */
+    int rewindTo(long target) {
+        int c = checkpointCount - 1;
+        while (c >= 0 && checkpointTimes[c] > target) {
+            c--;
+        }
+        if (c < 0) {
+            return -1;
+        }
+        for (int k = c + 1; k < checkpointCount; k++) {
+            checkpointBytes -= checkpointSizes[k];
+            checkpoints[k] = null;
+        }
+        checkpointCount = c + 1;
+        return c;
+    }
+
+    CpuSnapshot checkpoint(int c) {
+        return checkpoints[c];
+    }
+
+    /**
+     * Riparte dal checkpoint c: il buffer si svuota e il tempo torna a quello del checkpoint.
+     */
+    void resetTo(int c) {
+        size = 0;
+        time = checkpointTimes[c];
+        nextCheckpoint = time + checkpointInterval;
+    }
+}
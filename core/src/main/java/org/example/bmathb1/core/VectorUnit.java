@@ -0,0 +1,69 @@
+package org.example.bmathb1.core;
+
+/**
+ * Aritmetica dei registri vettoriali V0..V7 (VADD, VMUL, VFMA, VREDUCE). I registri stanno tutti
+ * in un unico double[] della CPU, il registro v da v * VLEN; gli argomenti sono gli offset
+ * delle prime componenti e len è la lunghezza vettoriale VL.
+ *
+ * Se la JVM è partita con {@code --add-modules jdk.incubator.vector} il lavoro passa a
+ * {@link SimdVectorUnit} (DoubleVector alla larghezza preferita della macchina), altrimenti
+ * resta nei cicli scalari qui sotto: i programmi girano in entrambi i casi con gli stessi
+ * risultati, a parte l'ordine delle somme di VREDUCE (vedi {@link #sum}).
+ */
+final class VectorUnit {
+    // Deciso una volta: SimdVectorUnit viene caricata solo se il modulo c'è
+    static final boolean SIMD = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+
+    private VectorUnit() {
+    }
+
+    // v[d + i] += v[s + i]
+    static void add(double[] v, int d, int s, int len) {
+        if (SIMD) {
+            SimdVectorUnit.add(v, d, s, len);
+            return;
+        }
+        for (int i = 0; i < len; i++) {
+            v[d + i] += v[s + i];
+        }
+    }
+
+    // v[d + i] *= v[s + i]
+    static void mul(double[] v, int d, int s, int len) {
+        if (SIMD) {
+            SimdVectorUnit.mul(v, d, s, len);
+            return;
+        }
+        for (int i = 0; i < len; i++) {
+            v[d + i] *= v[s + i];
+        }
+    }
+
+    // v[d + i] = v[a + i] * v[b + i] + v[d + i] con un solo arrotondamento (Math.fma)
+    static void fma(double[] v, int d, int a, int b, int len) {
+        if (SIMD) {
+            SimdVectorUnit.fma(v, d, a, b, len);
+            return;
+        }
+        for (int i = 0; i < len; i++) {
+            v[d + i] = Math.fma(v[a + i], v[b + i], v[d + i]);
+        }
+    }
+
+    /**
+     * Somma di v[s], ..., v[s + len - 1]. Come nelle unità SIMD reali l'ordine delle somme
+     * dipende dalla larghezza dei vettori, quindi il risultato può differire nell'ultimo bit
+     * tra una macchina e l'altra (o senza il modulo, dove si somma in sequenza); sulla stessa
+     * JVM è lo stesso per tutti gli engine.
+     */
+    static double sum(double[] v, int s, int len) {
+        if (SIMD) {
+            return SimdVectorUnit.sum(v, s, len);
+        }
+        double sum = 0;
+        for (int i = 0; i < len; i++) {
+            sum += v[s + i];
+        }
+        return sum;
+    }
+}
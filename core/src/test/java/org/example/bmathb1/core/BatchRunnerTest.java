@@ -0,0 +1,155 @@
+package org.example.bmathb1.core;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Batch headless: esito e messaggio di ogni job non devono dipendere dall'engine, i risultati di
+ * runAll seguono l'ordine dei job e i file illeggibili diventano job falliti.
+ */
+class BatchRunnerTest {
+
+    // Conta alla rovescia da R0 = n: più lungo con n più grande
+    private static String countdown(int n) {
+        return "[CODE]\nMOVI R0, " + n + "\nMOVI R1, 1\nL:\nSUB R0, R1\nADD R2, R1\nJMPZ R0, E\nGOTO L\nE:\nHLT\n";
+    }
+
+    @Test
+    void statusAndMessageDoNotDependOnTheEngine() throws Exception {
+        String endless = "[CODE]\nMOVI R1, 1\nL:\nADD R0, R1\nGOTO L\n";
+        // POP a stack vuoto dopo un ciclo abbastanza lungo da essere compilato
+        String underflow = countdown(200).replace("HLT", "POP R3\nHLT");
+        List<BatchRunner.Job> jobs = List.of(
+                new BatchRunner.Job("ok", countdown(200)),
+                new BatchRunner.Job("avviso", CpuState.program("div_zero.asm")),
+                new BatchRunner.Job("limite", endless),
+                new BatchRunner.Job("errore", underflow),
+                new BatchRunner.Job("sintassi", "[DATA]\n1\n[CODE]\nHLT\n"));
+        BatchRunner.Status[] expected = {BatchRunner.Status.OK, BatchRunner.Status.OK, BatchRunner.Status.STEP_LIMIT,
+                BatchRunner.Status.ERROR, BatchRunner.Status.ERROR};
+        List<BatchRunner.Result> reference = null;
+        for (AdvancedCPU.Engine engine : AdvancedCPU.Engine.values()) {
+            try (BatchRunner runner = new BatchRunner()) {
+                runner.setEngine(engine);
+                runner.setStepLimit(10_000);
+                List<BatchRunner.Result> results = runner.runAll(jobs);
+                for (int i = 0; i < jobs.size(); i++) {
+                    BatchRunner.Result r = results.get(i);
+                    String where = r.name() + " " + engine;
+                    assertEquals(expected[i], r.status(), where);
+                    if (reference != null) {
+                        assertEquals(reference.get(i).message(), r.message(), where);
+                        assertEquals(reference.get(i).steps(), r.steps(), where);
+                        assertArrayEquals(reference.get(i).registers(), r.registers(), where);
+                    }
+                }
+                assertNull(results.get(0).message());
+                // la divisione per zero azzera il registro e basta: OK, con l'avviso nel messaggio
+                assertTrue(results.get(1).message().contains("DIV by zero"), results.get(1).message());
+                assertTrue(results.get(2).message().contains("Troppe istruzioni"), results.get(2).message());
+                assertTrue(results.get(3).message().contains("Stack Underflow"), results.get(3).message());
+                assertNull(results.get(4).registers());
+                if (reference == null) {
+                    reference = results;
+                }
+            }
+        }
+    }
+
+    @Test
+    void runAllKeepsTheOrderOfTheJobs() throws Exception {
+        // i primi job sono i più lunghi, quindi finiscono dopo gli altri
+        List<BatchRunner.Job> jobs = new ArrayList<>();
+        Program shared = Program.assemble(countdown(10));
+        for (int i = 0; i < 40; i++) {
+            jobs.add(i % 3 == 0
+                    ? new BatchRunner.Job("p" + i, shared, null)
+                    : new BatchRunner.Job("p" + i, countdown(20_000 - 400 * i)));
+        }
+        try (BatchRunner runner = new BatchRunner(new ForkJoinPool(4))) {
+            runner.setEngine(AdvancedCPU.Engine.JIT);
+            runner.setStepLimit(AdvancedCPU.UNLIMITED_STEPS);
+            List<BatchRunner.Result> results = runner.runAll(jobs);
+            for (int i = 0; i < jobs.size(); i++) {
+                BatchRunner.Result r = results.get(i);
+                assertEquals("p" + i, r.name());
+                assertEquals(BatchRunner.Status.OK, r.status(), r.name());
+                assertEquals(i % 3 == 0 ? 10 : 20_000 - 400 * i, r.registers()[2], r.name());
+            }
+        }
+    }
+
+    @Test
+    void poolsKeepOnlyTheMostRecentlyUsedPrograms() throws Exception {
+        List<Program> programs = new ArrayList<>();
+        for (int i = 0; i < BatchRunner.MAX_POOLS + 10; i++) {
+            programs.add(Program.assemble(countdown(i + 1)));
+        }
+        try (BatchRunner runner = new BatchRunner()) {
+            for (int i = 0; i < programs.size(); i++) {
+                runner.runOne(new BatchRunner.Job("p" + i, programs.get(i), null));
+                // il primo programma viene riusato di continuo: non è mai il meno recente
+                runner.runOne(new BatchRunner.Job("p0", programs.get(0), null));
+            }
+            assertEquals(BatchRunner.MAX_POOLS, runner.pools.size());
+            assertTrue(runner.pools.containsKey(programs.get(0)));
+            assertFalse(runner.pools.containsKey(programs.get(1)));
+            assertTrue(runner.pools.containsKey(programs.get(programs.size() - 1)));
+            // un programma scartato riparte con un pool nuovo e dà lo stesso risultato
+            BatchRunner.Result r = runner.runOne(new BatchRunner.Job("p1", programs.get(1), null));
+            assertEquals(BatchRunner.Status.OK, r.status());
+            assertEquals(2, r.registers()[2]);
+            assertTrue(runner.pools.containsKey(programs.get(1)));
+        }
+    }
+
+    @Test
+    void unreadableFilesBecomeFailedJobs(@TempDir Path dir) throws Exception {
+        Files.writeString(dir.resolve("b.asm"), "[CODE]\nLOAD R0, 0\nLOAD R1, 1\nADD R0, R1\nHLT\n");
+        Files.writeString(dir.resolve("b.in"), " 1.5  2\n");
+        Files.writeString(dir.resolve("a.asm"), countdown(2));
+        Files.writeString(dir.resolve("c.asm"), countdown(1));
+        Files.writeString(dir.resolve("c.in"), "1 due");
+        Files.writeString(dir.resolve("note.txt"), "non è un programma");
+        Files.createDirectory(dir.resolve("sub"));
+        Files.writeString(dir.resolve("sub").resolve("d.asm"), countdown(4));
+
+        List<BatchRunner.Job> jobs = BatchRunner.expand(dir.toString()).toList();
+        assertEquals(List.of("a.asm", "b.asm", "c.asm", "d.asm"),
+                jobs.stream().map(j -> Path.of(j.name()).getFileName().toString()).toList());
+        assertNull(jobs.get(0).input());
+        assertArrayEquals(new double[]{1.5, 2}, jobs.get(1).input());
+        // .in malformato: il job fallisce, gli altri no
+        assertNotNull(jobs.get(2).error());
+        assertNull(jobs.get(3).error());
+
+        List<BatchRunner.Job> missing = BatchRunner.expand(dir.resolve("manca.asm").toString()).toList();
+        assertEquals(1, missing.size());
+        assertNotNull(missing.get(0).error());
+
+        try (BatchRunner runner = new BatchRunner()) {
+            List<BatchRunner.Result> results = runner.runAll(jobs);
+            assertEquals(BatchRunner.Status.OK, results.get(1).status());
+            // l'input di b.in finisce nelle celle 0 e 1
+            assertEquals(3.5, results.get(1).registers()[0]);
+            BatchRunner.Result failed = results.get(2);
+            assertEquals(BatchRunner.Status.ERROR, failed.status());
+            assertEquals(jobs.get(2).error(), failed.message());
+            assertNull(failed.registers());
+            assertEquals(BatchRunner.Status.ERROR, runner.runOne(missing.get(0)).status());
+        }
+    }
+}
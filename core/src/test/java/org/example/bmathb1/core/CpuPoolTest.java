@@ -0,0 +1,112 @@
+package org.example.bmathb1.core;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+
+import static org.example.bmathb1.core.CpuState.assertSameState;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Riuso delle CPU: dopo reset() e dopo un giro nel {@link CpuPool} una CPU deve comportarsi
+ * come una appena costruita sullo stesso programma.
+ */
+class CpuPoolTest {
+
+    private static CpuState runFresh(Program program, AdvancedCPU.Engine engine) throws Exception {
+        AdvancedCPU cpu = new AdvancedCPU(program);
+        cpu.setEngine(engine);
+        cpu.setStepLimit(100_000);
+        cpu.run(AdvancedCPU.UNLIMITED_STEPS);
+        return CpuState.of(cpu);
+    }
+
+    @Test
+    void resetCpuRunsLikeANewOne() throws Exception {
+        for (String name : new String[]{"stress.asm", "iblock.asm", "dot.asm", "cmp_int.asm"}) {
+            Program program = Program.assemble(CpuState.program(name));
+            for (AdvancedCPU.Engine engine : AdvancedCPU.Engine.values()) {
+                AdvancedCPU cpu = new AdvancedCPU(program);
+                cpu.setEngine(engine);
+                cpu.setStepLimit(100_000);
+                CpuState expected = runFresh(program, engine);
+                // più giri, così con JIT il secondo parte con i blocchi già compilati
+                for (int round = 0; round < 3; round++) {
+                    cpu.reset();
+                    assertSameState(CpuState.of(new AdvancedCPU(program)), CpuState.of(cpu),
+                            name + " " + engine + " dopo reset");
+                    cpu.run(AdvancedCPU.UNLIMITED_STEPS);
+                    assertSameState(expected, CpuState.of(cpu), name + " " + engine + " giro " + round);
+                }
+            }
+        }
+    }
+
+    @Test
+    void resetWithADataImageReplacesData() throws Exception {
+        AdvancedCPU cpu = new AdvancedCPU(Program.assemble(CpuState.program("fib.asm")));
+        cpu.run(AdvancedCPU.UNLIMITED_STEPS);
+        cpu.reset(new double[]{4, 5, 6});
+        assertEquals(4, cpu.getMemory().load(0));
+        assertEquals(6, cpu.getMemory().load(2));
+        assertEquals(0, cpu.getMemory().load(5));
+    }
+
+    @Test
+    void resetKeepsTheContentOfAMappedFile(@TempDir Path dir) throws Exception {
+        String source = """
+                [DATA]
+                A = 1
+                B = 2
+                [CODE]
+                MOVI R0, 9
+                STORE R0, 100
+                STORE R0, 0
+                HLT
+                """;
+        try (Memory file = Memory.mapped(dir.resolve("dati.bin"), 1000);
+             Memory stack = Memory.heap(64)) {
+            file.store(500, 42);
+            AdvancedCPU cpu = new AdvancedCPU(source, file, stack, null, TraceLevel.OFF);
+            cpu.run(AdvancedCPU.UNLIMITED_STEPS);
+            stack.store(3, 7);
+            cpu.reset();
+            // solo le celle di [DATA] tornano all'immagine: il resto del file è del dataset
+            assertEquals(1, file.load(0));
+            assertEquals(2, file.load(1));
+            assertEquals(9, file.load(100));
+            assertEquals(42, file.load(500));
+            // lo stack su heap invece riparte vuoto
+            assertEquals(0, stack.load(3));
+        }
+    }
+
+    @Test
+    void pooledCpuComesBackWithFreshSettings() throws Exception {
+        Program program = Program.assemble(CpuState.program("stress.asm"));
+        CpuPool pool = new CpuPool(program, 1);
+        AdvancedCPU cpu = pool.acquire();
+        cpu.setEngine(AdvancedCPU.Engine.JIT);
+        cpu.setStepLimit(10);
+        cpu.setJournaling(true);
+        cpu.setProfiling(true);
+        cpu.setTraceLevel(TraceLevel.VERBOSE);
+        cpu.run(AdvancedCPU.UNLIMITED_STEPS);
+        pool.release(cpu);
+
+        AdvancedCPU again = pool.acquire();
+        assertSame(cpu, again);
+        assertEquals(AdvancedCPU.Engine.DECODED, again.getEngine());
+        assertEquals(AdvancedCPU.DEFAULT_STEP_LIMIT, again.getStepLimit());
+        assertFalse(again.isJournaling());
+        assertNull(again.getProfiler());
+        assertEquals(TraceLevel.OFF, again.getTraceLevel());
+        again.setStepLimit(100_000);
+        again.run(AdvancedCPU.UNLIMITED_STEPS);
+        assertSameState(runFresh(program, AdvancedCPU.Engine.DECODED), CpuState.of(again), "CPU riusata");
+    }
+}
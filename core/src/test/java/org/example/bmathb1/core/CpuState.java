@@ -0,0 +1,89 @@
+package org.example.bmathb1.core;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Stato completo di una CPU per i confronti dei test: registri (double, long e vettoriali), VL,
+ * IP, SP, FLAGS, passi, HALT e tutte le celle di memoria e stack. I double si confrontano bit a bit
+ * (come fa assertArrayEquals), quindi -0.0 e 0.0 sono diversi.
+ */
+final class CpuState {
+    final double[] regs;
+    final long[] iregs;
+    final double[] vregs;
+    final int vl;
+    final int ip;
+    final int sp;
+    final int flags;
+    final long steps;
+    final boolean halted;
+    final double[] memory;
+    final double[] stack;   // vuoto se lo stack sta nella memoria dati
+
+    private CpuState(AdvancedCPU cpu) {
+        regs = new double[AdvancedCPU.REGISTERS];
+        iregs = new long[AdvancedCPU.REGISTERS];
+        for (int r = 0; r < AdvancedCPU.REGISTERS; r++) {
+            regs[r] = cpu.getRegister(r);
+            iregs[r] = cpu.getIntegerRegister(r);
+        }
+        vregs = new double[AdvancedCPU.VREGISTERS * AdvancedCPU.VLEN];
+        for (int v = 0; v < AdvancedCPU.VREGISTERS; v++) {
+            System.arraycopy(cpu.getVectorRegister(v), 0, vregs, v * AdvancedCPU.VLEN, AdvancedCPU.VLEN);
+        }
+        vl = cpu.getVectorLength();
+        ip = cpu.getIP();
+        sp = cpu.getSP();
+        flags = cpu.getFLAGS();
+        steps = cpu.getStepCount();
+        halted = cpu.isHalted();
+        memory = cells(cpu.getMemory());
+        stack = cpu.getStack() == cpu.getMemory() ? new double[0] : cells(cpu.getStack());
+    }
+
+    static CpuState of(AdvancedCPU cpu) {
+        return new CpuState(cpu);
+    }
+
+    private static double[] cells(Memory m) {
+        double[] cells = new double[(int) m.size()];
+        m.loadAll(0, cells);
+        return cells;
+    }
+
+    static void assertSameState(CpuState expected, CpuState actual, String where) {
+        assertAll(where,
+                () -> assertArrayEquals(expected.regs, actual.regs, where + ": registri"),
+                () -> assertArrayEquals(expected.iregs, actual.iregs, where + ": registri interi"),
+                () -> assertArrayEquals(expected.vregs, actual.vregs, where + ": registri vettoriali"),
+                () -> assertEquals(expected.vl, actual.vl, where + ": VL"),
+                () -> assertEquals(expected.ip, actual.ip, where + ": IP"),
+                () -> assertEquals(expected.sp, actual.sp, where + ": SP"),
+                () -> assertEquals(expected.flags, actual.flags, where + ": FLAGS"),
+                () -> assertEquals(expected.steps, actual.steps, where + ": passi"),
+                () -> assertEquals(expected.halted, actual.halted, where + ": HALT"),
+                () -> assertArrayEquals(expected.memory, actual.memory, where + ": memoria"),
+                () -> assertArrayEquals(expected.stack, actual.stack, where + ": stack"));
+    }
+
+    /**
+     * Sorgente di un programma di prova in src/test/resources/programs.
+     */
+    static String program(String name) {
+        try (InputStream in = CpuState.class.getResourceAsStream("/programs/" + name)) {
+            if (in == null) {
+                throw new IllegalArgumentException("Programma di prova mancante: " + name);
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package org.example.bmathb1.core;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.example.bmathb1.core.CpuState.assertSameState;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Gli stessi programmi su tutti gli engine devono finire nello stesso stato (registri, memoria,
+ * FLAGS, passi): INTERPRETED fa da riferimento, perché esegue il sorgente riga per riga senza
+ * decodifica, superistruzioni, analisi dei range né blocchi compilati.
+ */
+class EngineDifferentialTest {
+
+    private static final long STEP_LIMIT = 100_000;
+
+    private static AdvancedCPU run(String source, AdvancedCPU.Engine engine, Memory memory, Memory stack) throws Exception {
+        AdvancedCPU cpu = new AdvancedCPU(source, memory, stack, null, TraceLevel.OFF);
+        cpu.setEngine(engine);
+        cpu.setStepLimit(STEP_LIMIT);
+        cpu.run(AdvancedCPU.UNLIMITED_STEPS);
+        assertTrue(cpu.isHalted(), engine + ": il programma deve arrivare in HALT");
+        return cpu;
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"sample.asm", "fib.asm", "stress.asm", "fuse.asm", "atom.asm", "block.asm",
+            "cmp_float.asm", "cmp_int.asm", "grow.asm", "sub_loop.asm",
+            "ifib.asm", "iedge.asm", "iblock.asm", "dot.asm", "idot.asm"})
+    void allEnginesEndInTheSameState(String name) throws Exception {
+        String source = CpuState.program(name);
+        CpuState expected = CpuState.of(run(source, AdvancedCPU.Engine.INTERPRETED, Memory.heap(AdvancedCPU.DATA_SIZE), null));
+        for (AdvancedCPU.Engine engine : AdvancedCPU.Engine.values()) {
+            CpuState actual = CpuState.of(run(source, engine, Memory.heap(AdvancedCPU.DATA_SIZE), null));
+            assertSameState(expected, actual, name + " " + engine);
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"fib.asm", "stress.asm", "block.asm", "cmp_int.asm", "iblock.asm", "dot.asm"})
+    void memoryBackendsDoNotChangeResults(String name) throws Exception {
+        // stack separato, così la memoria dati ha la stessa dimensione su tutti i backend
+        String source = CpuState.program(name);
+        CpuState expected = CpuState.of(run(source, AdvancedCPU.Engine.INTERPRETED,
+                Memory.heap(AdvancedCPU.DATA_SIZE), Memory.heap(64)));
+        for (AdvancedCPU.Engine engine : AdvancedCPU.Engine.values()) {
+            try (Memory paged = Memory.paged(AdvancedCPU.DATA_SIZE);
+                 Memory offHeap = Memory.offHeap(AdvancedCPU.DATA_SIZE)) {
+                assertSameState(expected, CpuState.of(run(source, engine, paged, Memory.heap(64))),
+                        name + " " + engine + " paged");
+                assertSameState(expected, CpuState.of(run(source, engine, offHeap, Memory.heap(64))),
+                        name + " " + engine + " off-heap");
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"sample.asm", "fib.asm", "stress.asm", "fuse.asm", "block.asm", "cmp_float.asm",
+            "cmp_int.asm", "grow.asm", "ifib.asm", "iedge.asm", "iblock.asm", "dot.asm", "idot.asm", "div_zero.asm"})
+    void allEnginesReportTheSameErrors(String name) throws Exception {
+        // anche i blocchi JIT devono segnalare overflow e divisioni per zero, nello stesso ordine
+        String source = CpuState.program(name);
+        List<String> expected = errors(source, AdvancedCPU.Engine.INTERPRETED);
+        for (AdvancedCPU.Engine engine : AdvancedCPU.Engine.values()) {
+            assertEquals(expected, errors(source, engine), name + " " + engine);
+        }
+    }
+
+    // Eventi di livello ERROR di un'esecuzione completa
+    private static List<String> errors(String source, AdvancedCPU.Engine engine) throws Exception {
+        List<String> events = new ArrayList<>();
+        TraceSink sink = (event, a, b, value, text) -> events.add(event + " " + a + " " + b + " " + value + " " + text);
+        AdvancedCPU cpu = new AdvancedCPU(source, Memory.heap(AdvancedCPU.DATA_SIZE), null, sink, TraceLevel.ERROR);
+        cpu.setEngine(engine);
+        cpu.setStepLimit(STEP_LIMIT);
+        cpu.run(AdvancedCPU.UNLIMITED_STEPS);
+        return events;
+    }
+}
@@ -0,0 +1,105 @@
+package org.example.bmathb1.core;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.example.bmathb1.core.CpuState.assertSameState;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Flag pigri: un blocco JIT consegna alla CPU solo l'ultima operazione sui flag, e lo stato
+ * all'uscita da ogni blocco deve essere quello che DECODED ha allo stesso passo.
+ */
+class LazyFlagsTest {
+
+    private static final long STEP_LIMIT = 100_000;
+
+    private static AdvancedCPU cpu(String source, AdvancedCPU.Engine engine) throws Exception {
+        AdvancedCPU cpu = new AdvancedCPU(source);
+        cpu.setEngine(engine);
+        cpu.setStepLimit(STEP_LIMIT);
+        return cpu;
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"cmp_float.asm", "cmp_int.asm", "sub_loop.asm", "iedge.asm", "block.asm", "fuse.asm"})
+    void everyJitBlockExitMatchesDecoded(String name) throws Exception {
+        String source = CpuState.program(name);
+        AdvancedCPU jit = cpu(source, AdvancedCPU.Engine.JIT);
+        AdvancedCPU decoded = cpu(source, AdvancedCPU.Engine.DECODED);
+        while (!jit.isHalted()) {
+            // run(1) esegue un'istruzione o un intero blocco compilato
+            jit.run(1);
+            while (decoded.getStepCount() < jit.getStepCount()) {
+                decoded.step();
+            }
+            assertSameState(CpuState.of(decoded), CpuState.of(jit), name + " al passo " + jit.getStepCount());
+        }
+    }
+
+    @Test
+    void branchInTheNextBlockSeesTheLastCompare() throws Exception {
+        // il ciclo diventa un blocco JIT: JL nel blocco T deve vedere CMP R0, R1 e non la CMP
+        // precedente, che da sola farebbe girare il ciclo fino al limite di passi
+        String source = """
+                [CODE]
+                MOVI R0, 0
+                MOVI R1, 100
+                MOVI R2, 1
+                MOVI R4, -1
+                L:
+                ADD R0, R2
+                CMP R4, R2
+                CMP R0, R1
+                GOTO T
+                T:
+                JL L
+                HLT
+                """;
+        for (AdvancedCPU.Engine engine : AdvancedCPU.Engine.values()) {
+            AdvancedCPU cpu = cpu(source, engine);
+            cpu.run(AdvancedCPU.UNLIMITED_STEPS);
+            assertTrue(cpu.isHalted(), engine.toString());
+            assertEquals(100, cpu.getRegister(0), engine.toString());
+            assertEquals(4 + 100 * 5 + 1, cpu.getStepCount(), engine.toString());
+            assertEquals(AdvancedCPU.FLAG_ZERO, cpu.getFLAGS(), engine.toString());
+        }
+    }
+
+    @Test
+    void integerFlagsAfterABlockExit() throws Exception {
+        // all'uscita dal ciclo compilato l'ultima operazione è CMP R2, R4 con R4 = -1:
+        // 1 > -1 con segno, 1 < 2^64 - 1 senza segno, quindi solo il carry
+        String source = """
+                [MODE INTEGER]
+                [CODE]
+                MOVI R0, 0
+                MOVI R1, 100
+                MOVI R2, 1
+                MOVI R4, -1
+                L:
+                ADD R0, R2
+                CMP R0, R1
+                JGE FINE
+                CMP R4, R2
+                CMP R2, R4
+                GOTO L
+                FINE:
+                HLT
+                """;
+        for (AdvancedCPU.Engine engine : AdvancedCPU.Engine.values()) {
+            AdvancedCPU cpu = cpu(source, engine);
+            int loop = cpu.labelAddress("L");
+            // di nuovo su L dopo GOTO, quando il ciclo è ormai compilato
+            do {
+                cpu.run(1);
+            } while (cpu.getIP() != loop || cpu.getStepCount() < 60 * 6);
+            assertEquals(AdvancedCPU.FLAG_CARRY, cpu.getFLAGS(), engine + " dentro il ciclo");
+            cpu.run(AdvancedCPU.UNLIMITED_STEPS);
+            assertEquals(100, cpu.getIntegerRegister(0), engine.toString());
+            assertEquals(AdvancedCPU.FLAG_ZERO, cpu.getFLAGS(), engine + " alla fine");
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package org.example.bmathb1.core;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Memoria mappata su file ({@link Memory#mapped}): quello che un programma scrive deve ritrovarlo
+ * un altro programma che mappa di nuovo lo stesso file.
+ */
+class MappedMemoryTest {
+
+    @Test
+    void storesSurviveCloseAndRemap(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("dati.bin");
+        String writer = """
+                [CODE]
+                MOVI R0, 2.5
+                STORE R0, 700
+                MOVI R1, -3
+                STORE R1, 999
+                HLT
+                """;
+        try (Memory memory = Memory.mapped(file, 1000); Memory stack = Memory.heap(64)) {
+            AdvancedCPU cpu = new AdvancedCPU(writer, memory, stack, null, TraceLevel.OFF);
+            cpu.run(AdvancedCPU.UNLIMITED_STEPS);
+        }
+        assertEquals(1000L * Double.BYTES, Files.size(file));
+
+        String reader = """
+                [CODE]
+                LOAD R2, 700
+                LOAD R3, 999
+                ADD R2, R3
+                HLT
+                """;
+        // 0 celle: si mappa tutto il file
+        try (Memory memory = Memory.mapped(file, 0); Memory stack = Memory.heap(64)) {
+            assertEquals(1000, memory.size());
+            for (AdvancedCPU.Engine engine : AdvancedCPU.Engine.values()) {
+                AdvancedCPU cpu = new AdvancedCPU(reader, memory, stack, null, TraceLevel.OFF);
+                cpu.setEngine(engine);
+                cpu.run(AdvancedCPU.UNLIMITED_STEPS);
+                assertEquals(-0.5, cpu.getRegister(2), engine.toString());
+            }
+        }
+    }
+
+    @Test
+    void shortFileIsExtendedWithZeros(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("dati.bin");
+        try (Memory memory = Memory.mapped(file, 10)) {
+            memory.store(9, 1);
+        }
+        try (Memory memory = Memory.mapped(file, 20)) {
+            assertEquals(1, memory.load(9));
+            assertEquals(0, memory.load(19));
+        }
+        assertEquals(20L * Double.BYTES, Files.size(file));
+    }
+
+    @Test
+    void wholeFileNeedsAtLeastOneCell(@TempDir Path dir) throws Exception {
+        Path empty = Files.createFile(dir.resolve("vuoto.bin"));
+        assertThrows(IllegalArgumentException.class, () -> Memory.mapped(empty, 0));
+        assertThrows(IllegalArgumentException.class, () -> Memory.mapped(dir.resolve("manca.bin"), 0));
+        assertThrows(IllegalArgumentException.class, () -> Memory.mapped(empty, -1));
+    }
+}
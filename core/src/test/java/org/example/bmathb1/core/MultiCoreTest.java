@@ -0,0 +1,63 @@
+package org.example.bmathb1.core;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Più core sulla stessa memoria: con CAS/XCHG/ATOMADD nessun incremento va perso su nessun engine,
+ * e un TraceBuffer condiviso riceve tutti gli eventi di tutti i core.
+ */
+class MultiCoreTest {
+
+    private static final int CORES = 4;
+    // Giri di atom.asm per core: ognuno incrementa d0 con ATOMADD e d2 sotto il lock in d1
+    private static final int ROUNDS = 2000;
+
+    private static MultiCore machine(TraceSink sink, TraceLevel level, int cores) throws Exception {
+        MultiCore machine = new MultiCore(CpuState.program("atom.asm"), Memory.heap(AdvancedCPU.DATA_SIZE),
+                cores, sink, level);
+        machine.setStepLimit(AdvancedCPU.UNLIMITED_STEPS);
+        return machine;
+    }
+
+    @Test
+    void atomicCounterReachesTheTotalOnEveryEngine() throws Exception {
+        for (AdvancedCPU.Engine engine : AdvancedCPU.Engine.values()) {
+            MultiCore machine = machine(null, TraceLevel.OFF, CORES);
+            machine.setEngine(engine);
+            machine.run(AdvancedCPU.UNLIMITED_STEPS);
+            assertTrue(machine.isHalted(), engine.toString());
+            assertEquals(CORES * ROUNDS, machine.getMemory().load(0), engine + " d0");
+            assertEquals(0, machine.getMemory().load(1), engine + " lock rilasciato");
+            assertEquals(CORES * ROUNDS, machine.getMemory().load(2), engine + " d2");
+            for (AdvancedCPU cpu : machine.getCores()) {
+                // R7 parte da COREID e cresce di 1 a giro
+                assertEquals(cpu.getCoreId() + ROUNDS, cpu.getRegister(7), engine + " core " + cpu.getCoreId());
+            }
+        }
+    }
+
+    // Eventi consegnati dal buffer, -1 se qualcuno è andato perso
+    private static long drain(TraceBuffer buffer) {
+        long[] count = new long[1];
+        buffer.drainTo(line -> count[0] = line.contains("eventi persi") || count[0] < 0 ? -1 : count[0] + 1);
+        return count[0];
+    }
+
+    @Test
+    void sharedTraceBufferLosesNoEvents() throws Exception {
+        // un core da solo: eventi oltre ai passi (stesso numero per ogni core, il programma è uguale)
+        TraceBuffer buffer = new TraceBuffer(1 << 21);
+        long steps = machine(buffer, TraceLevel.INSTR, 1).run(AdvancedCPU.UNLIMITED_STEPS);
+        long extra = drain(buffer) - steps;
+        assertTrue(extra >= 0, "eventi di un core: " + extra);
+
+        // due scrittori senza lock si contendono lo stesso slot e perdono eventi
+        for (int round = 0; round < 5; round++) {
+            steps = machine(buffer, TraceLevel.INSTR, CORES).run(AdvancedCPU.UNLIMITED_STEPS);
+            assertEquals(steps + CORES * extra, drain(buffer), "giro " + round);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package org.example.bmathb1.core;
+
+import org.junit.jupiter.api.Test;
+
+import static org.example.bmathb1.core.CpuState.assertSameState;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Snapshot copy-on-write di {@link PagedMemory}: uno snapshot non deve mai vedere le scritture
+ * fatte dopo, né dalla memoria da cui è stato preso né da quelle su cui viene ripristinato.
+ */
+class PagedMemoryTest {
+
+    private static final long FAR = (1L << 32) - 1;     // ultima cella di uno spazio da 2^32
+
+    @Test
+    void restoreBringsBackTheContentAtSnapshotTime() {
+        PagedMemory m = new PagedMemory(1L << 32);
+        m.store(0, 1);
+        m.store(FAR, 2);
+        Memory.Snapshot s = m.snapshot();
+        m.store(0, 10);
+        m.store(FAR, 20);
+        m.store(PagedMemory.PAGE_SIZE, 30);
+        m.restore(s);
+        assertEquals(1, m.load(0));
+        assertEquals(2, m.load(FAR));
+        assertEquals(0, m.load(PagedMemory.PAGE_SIZE));
+        assertEquals(2, m.allocatedPages());
+    }
+
+    @Test
+    void writesAfterRestoreDoNotReachTheSnapshot() {
+        PagedMemory m = new PagedMemory(1 << 20);
+        m.fill(0, 3 * PagedMemory.PAGE_SIZE, 5);
+        Memory.Snapshot s = m.snapshot();
+        for (int round = 0; round < 3; round++) {
+            m.restore(s);
+            assertEquals(5, m.load(7), "giro " + round);
+            assertEquals(5, m.load(2L * PagedMemory.PAGE_SIZE + 1), "giro " + round);
+            m.store(7, -1);
+            m.fill(2L * PagedMemory.PAGE_SIZE, 10, 0);
+        }
+    }
+
+    @Test
+    void snapshotsAreIndependentOfEachOther() {
+        PagedMemory m = new PagedMemory(1 << 20);
+        m.store(100, 1);
+        Memory.Snapshot first = m.snapshot();
+        m.store(100, 2);
+        m.store(200, 2);
+        Memory.Snapshot second = m.snapshot();
+        m.store(100, 3);
+        m.clear();
+        m.restore(first);
+        assertEquals(1, m.load(100));
+        assertEquals(0, m.load(200));
+        m.restore(second);
+        assertEquals(2, m.load(100));
+        assertEquals(2, m.load(200));
+        m.restore(first);
+        assertEquals(1, m.load(100));
+    }
+
+    @Test
+    void snapshotRestoredOnAnotherMemoryIsNotShared() {
+        PagedMemory a = new PagedMemory(1 << 20);
+        PagedMemory b = new PagedMemory(1 << 20);
+        a.store(42, 1);
+        Memory.Snapshot s = a.snapshot();
+        b.restore(s);
+        a.store(42, 2);
+        b.store(42, 3);
+        assertEquals(2, a.load(42));
+        assertEquals(3, b.load(42));
+        a.restore(s);
+        b.restore(s);
+        assertEquals(1, a.load(42));
+        assertEquals(1, b.load(42));
+    }
+
+    @Test
+    void incompatibleSnapshotsAreRejected() {
+        PagedMemory m = new PagedMemory(1 << 20);
+        assertThrows(IllegalArgumentException.class, () -> m.restore(new PagedMemory(1 << 10).snapshot()));
+        assertThrows(IllegalArgumentException.class, () -> m.restore(new HeapMemory(1 << 10).snapshot()));
+    }
+
+    @Test
+    void cpuRestoredFromSnapshotReplaysTheSameRun() throws Exception {
+        String source = CpuState.program("stress.asm");
+        AdvancedCPU cpu = new AdvancedCPU(source, Memory.paged(AdvancedCPU.DATA_SIZE), null, null, TraceLevel.OFF);
+        cpu.setStepLimit(100_000);
+        cpu.run(500);
+        CpuSnapshot middle = cpu.snapshot();
+        cpu.run(AdvancedCPU.UNLIMITED_STEPS);
+        CpuState end = CpuState.of(cpu);
+
+        cpu.restore(middle);
+        assertEquals(middle.getStepCount(), cpu.getStepCount());
+        cpu.run(AdvancedCPU.UNLIMITED_STEPS);
+        assertSameState(end, CpuState.of(cpu), "stessa CPU");
+
+        AdvancedCPU other = new AdvancedCPU(source, Memory.paged(AdvancedCPU.DATA_SIZE), null, null, TraceLevel.OFF);
+        other.setStepLimit(100_000);
+        other.restore(middle);
+        other.run(AdvancedCPU.UNLIMITED_STEPS);
+        assertSameState(end, CpuState.of(other), "altra CPU");
+    }
+}
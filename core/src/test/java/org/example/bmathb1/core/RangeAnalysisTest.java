@@ -0,0 +1,102 @@
+package org.example.bmathb1.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+/**
+ * Limiti di {@link RangeAnalysis}: quali istruzioni perdono checkOverflow. Le label su riga a sé
+ * non occupano slot, quindi l'indice di ogni flag è quello dell'istruzione nel sorgente.
+ */
+class RangeAnalysisTest {
+
+    private static boolean[] unchecked(String code) throws Exception {
+        return Program.assemble("[CODE]\n" + code).unchecked;
+    }
+
+    @Test
+    void boundedCounterIsUnchecked() throws Exception {
+        // R0 cresce di 1 a passo: al più 2^63 anche in un ciclo infinito
+        boolean[] u = unchecked("MOVI R0, 0\nMOVI R1, 1\nL:\nADD R0, R1\nSUB R2, R1\nGOTO L\n");
+        assertArrayEquals(new boolean[]{true, true, true, true, false}, u);
+    }
+
+    @Test
+    void doublingInALoopStaysChecked() throws Exception {
+        boolean[] u = unchecked("MOVI R0, 1\nL:\nADD R0, R0\nGOTO L\n");
+        assertArrayEquals(new boolean[]{true, false, false}, u);
+    }
+
+    @Test
+    void largeIncrementTimesMaxStepsStaysChecked() throws Exception {
+        // 1e290 a passo per 2^63 passi supera il margine di sicurezza (2^1000)
+        boolean[] u = unchecked("MOVI R1, 1e290\nL:\nADD R0, R1\nGOTO L\n");
+        assertArrayEquals(new boolean[]{true, false, false}, u);
+        u = unchecked("MOVI R1, 1e200\nL:\nADD R0, R1\nGOTO L\n");
+        assertArrayEquals(new boolean[]{true, true, false}, u);
+    }
+
+    @Test
+    void multiplicationOfKnownConstants() throws Exception {
+        boolean[] u = unchecked("MOVI R0, 3\nMOVI R1, 4\nMUL R0, R1\nMOVI R2, 1e300\nMUL R2, R2\nHLT\n");
+        assertArrayEquals(new boolean[]{true, true, true, true, false, false}, u);
+        // nel ciclo il limite di R0 cresce a ogni giro: sconosciuto
+        u = unchecked("MOVI R0, 1\nMOVI R1, 2\nL:\nMUL R0, R1\nGOTO L\n");
+        assertArrayEquals(new boolean[]{true, true, false, false}, u);
+    }
+
+    @Test
+    void valuesFromMemoryAndDivisionAreUnknown() throws Exception {
+        boolean[] u = unchecked("MOVI R0, 1\nLOAD R1, 0\nADD R0, R1\nMOVI R2, 1\nMOVI R3, 3\nDIV R2, R3\n"
+                + "ADD R2, R0\nPOP R4\nSUB R4, R0\nMOVI R5, 2\nMOD R5, R3\nADD R5, R5\nHLT\n");
+        assertArrayEquals(new boolean[]{true, false, false, true, true, false,
+                false, false, false, true, false, true, false}, u);
+    }
+
+    @Test
+    void growthAcrossReturnsStaysChecked() throws Exception {
+        // R0 raddoppia in F e il ciclo la richiama: lo stato dopo RET deve arrivare di nuovo a F
+        boolean[] u = unchecked("MOVI R0, 1\nL:\nCALL F(0)\nGOTO L\nF:\nADD R0, R0\nRET\n");
+        assertArrayEquals(new boolean[]{true, false, false, false, false}, u);
+    }
+
+    @Test
+    void manyReturnsAssembleInLinearTime() {
+        // 16000 sottoprogrammi, 64000 istruzioni: con una fusione per RET su tutte le istruzioni
+        // il caricamento richiedeva decine di secondi
+        StringBuilder code = new StringBuilder();
+        int subs = 16_000;
+        for (int i = 0; i < subs; i++) {
+            code.append("CALL F").append(i).append("(0)\n");
+        }
+        code.append("HLT\n");
+        for (int i = 0; i < subs; i++) {
+            code.append("F").append(i).append(":\nMOVI R1, 1\nADD R0, R1\nRET\n");
+        }
+        boolean[] u = assertTimeoutPreemptively(Duration.ofSeconds(5), () -> unchecked(code.toString()));
+        assertEquals(4 * subs + 1, u.length);
+    }
+
+    @Test
+    void integerModeHasNothingToSkip() throws Exception {
+        boolean[] u = Program.assemble("[MODE INTEGER]\n[CODE]\nMOVI R0, 0\nMOVI R1, 1\nL:\nADD R0, R1\nGOTO L\n").unchecked;
+        assertArrayEquals(new boolean[4], u);
+    }
+
+    @Test
+    void overflowIsStillReportedOnEveryEngine() throws Exception {
+        // grow.asm raddoppia e somma 1e308 in un ciclo: il bit di overflow deve alzarsi ovunque
+        for (AdvancedCPU.Engine engine : AdvancedCPU.Engine.values()) {
+            AdvancedCPU cpu = new AdvancedCPU(CpuState.program("grow.asm"));
+            cpu.setEngine(engine);
+            cpu.setStepLimit(100_000);
+            cpu.run(AdvancedCPU.UNLIMITED_STEPS);
+            assertNotEquals(0, cpu.getFLAGS() & AdvancedCPU.FLAG_OVERFLOW, engine.toString());
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package org.example.bmathb1.core;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import static org.example.bmathb1.core.CpuState.assertSameState;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Debug all'indietro: stepBack e runBackwards devono riportare la CPU esattamente allo stato di
+ * un passo precedente, sia dal buffer sia ripartendo da un checkpoint, anche quando pool delle
+ * celle e budget dei checkpoint sono piccoli e la storia si accorcia.
+ */
+class ReverseExecutionTest {
+
+    private static final long STEP_LIMIT = 100_000;
+
+    private static AdvancedCPU cpu(String source, AdvancedCPU.Engine engine) throws Exception {
+        AdvancedCPU cpu = new AdvancedCPU(source);
+        cpu.setEngine(engine);
+        cpu.setStepLimit(STEP_LIMIT);
+        return cpu;
+    }
+
+    // Esegue fino a HALT registrando lo stato prima di ogni passo (e quello finale)
+    private static List<CpuState> runRecording(AdvancedCPU cpu) {
+        List<CpuState> states = new ArrayList<>();
+        states.add(CpuState.of(cpu));
+        while (!cpu.isHalted()) {
+            cpu.step();
+            states.add(CpuState.of(cpu));
+        }
+        return states;
+    }
+
+    /**
+     * Torna indietro un passo alla volta confrontando con gli stati registrati.
+     *
+     * @return passi annullati prima che la storia finisse
+     */
+    private static int stepBackChecking(AdvancedCPU cpu, List<CpuState> states, String where) {
+        int undone = 0;
+        for (int k = states.size() - 2; k >= 0 && cpu.stepBack(); k--) {
+            undone++;
+            assertSameState(states.get(k), CpuState.of(cpu), where + " dopo " + undone + " passi indietro");
+        }
+        return undone;
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"sample.asm", "fib.asm", "stress.asm", "fuse.asm", "block.asm", "cmp_int.asm",
+            "ifib.asm", "iblock.asm", "dot.asm", "idot.asm"})
+    void stepBackRestoresEveryPreviousState(String name) throws Exception {
+        String source = CpuState.program(name);
+        for (int capacity : new int[]{16, AdvancedCPU.DEFAULT_JOURNAL_CAPACITY}) {
+            for (AdvancedCPU.Engine engine : AdvancedCPU.Engine.values()) {
+                String where = name + " " + engine + " capacità " + capacity;
+                AdvancedCPU cpu = cpu(source, engine);
+                cpu.setJournaling(true, capacity);
+                List<CpuState> states = runRecording(cpu);
+                // oltre il buffer si riparte dai checkpoint: la storia arriva fino all'inizio
+                assertEquals(states.size() - 1, stepBackChecking(cpu, states, where), where);
+                assertFalse(cpu.stepBack(), where);
+
+                // e in avanti si arriva di nuovo alla fine
+                cpu.run(AdvancedCPU.UNLIMITED_STEPS);
+                assertSameState(states.get(states.size() - 1), CpuState.of(cpu), where + " di nuovo in avanti");
+            }
+        }
+    }
+
+    @Test
+    void runBackwardsStopsAtTheBreakpoint() throws Exception {
+        AdvancedCPU cpu = cpu(CpuState.program("fib.asm"), AdvancedCPU.Engine.DECODED);
+        cpu.setJournaling(true, 64);
+        List<CpuState> states = runRecording(cpu);
+        int loop = cpu.labelAddress("LOOP");
+        BitSet breakpoints = new BitSet();
+        breakpoints.set(loop);
+        int last = states.size() - 1;
+        while (states.get(last).ip != loop) {
+            last--;
+        }
+        assertEquals(states.size() - 1 - last, cpu.runBackwards(breakpoints));
+        assertSameState(states.get(last), CpuState.of(cpu), "primo breakpoint");
+        // dal breakpoint si riparte con almeno uno step: si arriva al giro precedente
+        int previous = last - 1;
+        while (states.get(previous).ip != loop) {
+            previous--;
+        }
+        assertEquals(last - previous, cpu.runBackwards(breakpoints));
+        assertSameState(states.get(previous), CpuState.of(cpu), "secondo breakpoint");
+    }
+
+    @Test
+    void smallBlockPoolAndBudgetShortenTheHistoryButKeepItExact() throws Exception {
+        // ogni giro sovrascrive con MEMCPY/MEMSET/VSTORE più celle di quante ne tiene il pool
+        String source = """
+                [CODE]
+                MOVI R0, 0
+                MOVI R1, 100
+                MOVI R2, 30
+                MOVI R3, 1
+                MOVI R5, 90
+                MOVI R6, 64
+                MOVI R7, 1
+                VSETL R6
+                L:
+                MEMSET R0, R3, R2
+                MEMCPY R1, R0, R2
+                VLOAD V1, R0
+                VADD V1, V1
+                VSTORE V1, R1
+                MEMCPY R0, R1, R5
+                ADD R3, R7
+                SUB R6, R7
+                JMPZ R6, FINE
+                GOTO L
+                FINE:
+                HLT
+                """;
+        int shorter = 0;
+        for (int cells : new int[]{50, 100, 1000}) {
+            for (long budget : new long[]{0, AdvancedCPU.DEFAULT_JOURNAL_CHECKPOINT_BYTES}) {
+                String where = "pool " + cells + " budget " + budget;
+                AdvancedCPU cpu = cpu(source, AdvancedCPU.Engine.DECODED);
+                cpu.setJournaling(true, 1024, cells, budget);
+                List<CpuState> states = runRecording(cpu);
+                int undone = stepBackChecking(cpu, states, where);
+                if (budget == 0) {
+                    // senza checkpoint la storia è quella che sta nel pool, e cresce con il pool
+                    assertTrue(undone > shorter && undone < states.size() - 1, where + ": " + undone);
+                    shorter = undone;
+                } else {
+                    assertEquals(states.size() - 1, undone, where);
+                }
+            }
+        }
+    }
+
+    @Test
+    void resetStartsAnEmptyHistory() throws Exception {
+        AdvancedCPU cpu = cpu(CpuState.program("stress.asm"), AdvancedCPU.Engine.DECODED);
+        cpu.setJournaling(true, 16);
+        cpu.run(100);
+        cpu.reset();
+        assertTrue(cpu.isJournaling());
+        assertFalse(cpu.stepBack());
+        List<CpuState> states = runRecording(cpu);
+        assertEquals(states.size() - 1, stepBackChecking(cpu, states, "dopo reset"));
+    }
+
+    @Test
+    void pagedCheckpointsCountOnlyDirtyPages() {
+        PagedMemory m = new PagedMemory(1L << 32);
+        m.fill(0, 100L * PagedMemory.PAGE_SIZE, 1);
+        m.snapshot();
+        long clean = m.snapshotBytes();
+        m.store(5, 2);
+        m.store(6, 2);
+        long dirty = m.snapshotBytes() - clean;
+        assertTrue(dirty >= PagedMemory.PAGE_SIZE * (long) Double.BYTES, "una pagina copiata: " + dirty);
+        assertTrue(dirty < 2 * PagedMemory.PAGE_SIZE * (long) Double.BYTES, "una pagina copiata: " + dirty);
+        m.snapshot();
+        assertEquals(clean, m.snapshotBytes());
+    }
+
+    @Test
+    void journalingBlockInstructionsDoesNotAllocatePerStep() throws Exception {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+        String source = """
+                [CODE]
+                MOVI R0, 0
+                MOVI R1, 64
+                MOVI R2, 64
+                L:
+                MEMCPY R1, R0, R2
+                MEMSET R0, R2, R2
+                VLOAD V0, R0
+                VSTORE V0, R1
+                GOTO L
+                """;
+        AdvancedCPU cpu = cpu(source, AdvancedCPU.Engine.DECODED);
+        cpu.setStepLimit(AdvancedCPU.UNLIMITED_STEPS);
+        cpu.setJournaling(true);
+        cpu.run(10_000);
+        long thread = Thread.currentThread().threadId();
+        long before = threads.getThreadAllocatedBytes(thread);
+        cpu.run(200_000);
+        long allocated = threads.getThreadAllocatedBytes(thread) - before;
+        // 200000 passi con un array per blocco sarebbero decine di MB; restano i checkpoint periodici
+        assertTrue(allocated < 1 << 20, "byte allocati: " + allocated);
+    }
+}
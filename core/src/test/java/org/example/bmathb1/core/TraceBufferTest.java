@@ -0,0 +1,73 @@
+package org.example.bmathb1.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Buffer circolare della trace: il lettore riceve gli eventi nell'ordine in cui sono stati
+ * registrati e, se lo scrittore lo ha superato, una riga con il numero di eventi persi.
+ */
+class TraceBufferTest {
+
+    private static void record(TraceBuffer buffer, int from, int to) {
+        for (int i = from; i < to; i++) {
+            buffer.record(TraceEvent.ERROR, 0, 0, 0, "e" + i);
+        }
+    }
+
+    private static List<String> drain(TraceBuffer buffer) {
+        List<String> lines = new ArrayList<>();
+        int delivered = buffer.drainTo(lines::add);
+        assertEquals(lines.size(), delivered);
+        return lines;
+    }
+
+    @Test
+    void eventsArriveInOrder() {
+        TraceBuffer buffer = new TraceBuffer(8);
+        record(buffer, 0, 5);
+        assertEquals(List.of("e0", "e1", "e2", "e3", "e4"), drain(buffer));
+        assertEquals(List.of(), drain(buffer));
+        // il giro del buffer non cambia l'ordine
+        record(buffer, 5, 12);
+        assertEquals(List.of("e5", "e6", "e7", "e8", "e9", "e10", "e11"), drain(buffer));
+    }
+
+    @Test
+    void overrunReportsTheLostEventsAndKeepsTheNewest() {
+        TraceBuffer buffer = new TraceBuffer(6);    // arrotondato a 8
+        assertEquals(8, buffer.capacity());
+        record(buffer, 0, 3);
+        assertEquals(List.of("e0", "e1", "e2"), drain(buffer));
+        // 20 eventi senza letture: restano gli ultimi 8, e il più vecchio di un buffer pieno
+        // potrebbe essere in riscrittura, quindi conta tra i persi
+        record(buffer, 3, 23);
+        assertEquals(List.of("[TRACE] 13 eventi persi", "e16", "e17", "e18", "e19", "e20", "e21", "e22"),
+                drain(buffer));
+        // dopo la perdita si riparte normalmente
+        record(buffer, 23, 25);
+        assertEquals(List.of("e23", "e24"), drain(buffer));
+    }
+
+    @Test
+    void fullBufferCountsItsOldestEventAsLost() {
+        TraceBuffer buffer = new TraceBuffer(4);
+        record(buffer, 0, 4);
+        assertEquals(List.of("[TRACE] 1 eventi persi", "e1", "e2", "e3"), drain(buffer));
+        record(buffer, 4, 12);
+        assertEquals(List.of("[TRACE] 5 eventi persi", "e9", "e10", "e11"), drain(buffer));
+    }
+
+    @Test
+    void clearDropsUnreadEvents() {
+        TraceBuffer buffer = new TraceBuffer(4);
+        record(buffer, 0, 10);
+        buffer.clear();
+        record(buffer, 10, 11);
+        assertEquals(List.of("e10"), drain(buffer));
+    }
+}
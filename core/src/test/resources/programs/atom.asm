@@ -0,0 +1,26 @@
+[CODE]
+  COREID R7
+  MOVI R0, 2000
+  MOVI R1, 1
+LOOP:
+  MOVR R2, R1
+  ATOMADD R2, 0
+SPIN:
+  MOVI R3, 0
+  MOVI R4, 1
+  CAS R3, R4, 1
+  JMPZ R3, GOT
+  GOTO SPIN
+GOT:
+  LOAD R5, 2
+  ADD R5, R1
+  STORE R5, 2
+  FENCE
+  MOVI R6, 0
+  XCHG R6, 1
+  ADD R7, R1
+  SUB R0, R1
+  JMPZ R0, END
+  GOTO LOOP
+END:
+  HLT
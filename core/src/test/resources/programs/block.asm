@@ -0,0 +1,41 @@
+[DATA]
+V1 = 1
+V2 = 2
+V3 = 3
+V4 = 4
+V5 = 5
+V6 = 6
+V7 = 7
+V8 = 8
+[CODE]
+  MOVI R0, 0
+  MOVI R1, 100
+  MOVI R2, 8
+  MEMCPY R1, R0, R2
+  MOVI R3, 2
+  MEMCPY R3, R0, R2
+  MOVI R4, 200
+  MOVI R5, 7.5
+  MOVI R6, 50
+  MEMSET R4, R5, R6
+  MOVI R7, 230
+  MOVI R5, 0
+  MOVI R6, 3
+  MEMSET R7, R5, R6
+  MOVI R2, 8
+  MEMCMP R1, R0, R2
+  JE EQ
+  MOVI R2, 8
+  MEMCMP R0, R1, R2
+  JL LESS
+  HLT
+EQ:
+  HLT
+LESS:
+  MOVI R6, 40
+  MEMCMP R4, R4, R6
+  JNE BAD
+  MOVI R6, 4000
+  MEMSET R4, R5, R6
+BAD:
+  HLT
@@ -0,0 +1,30 @@
+[CODE]
+  MOVI R0, 0
+  MOVI R1, 100
+  MOVI R2, 1
+  MOVI R3, 0
+  MOVI R6, 0.5
+L:
+  ADD R0, R2
+  CMP R0, R1
+  JGE DONE
+  MOVR R4, R0
+  SUB R4, R6
+  TEST R0, R2
+  JE EVEN
+  ADD R3, R2
+EVEN:
+  MOVI R5, 50
+  CMP R0, R5
+  JLE L
+  CMP R5, R0
+  JG L
+  JL L
+DONE:
+  MOVI R7, -3
+  ADD R7, R2
+  JNE DONE2
+  HLT
+DONE2:
+  CMP R7, R7
+  HLT
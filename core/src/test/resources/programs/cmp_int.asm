@@ -0,0 +1,31 @@
+[MODE INTEGER]
+[CODE]
+  MOVI R0, 200
+  MOVI R1, 1
+  MOVI R2, 0
+L:
+  ADD R2, R0
+  SUB R0, R1
+  JNE L
+  MOVI R3, -9223372036854775808
+  MOVI R4, 1
+  CMP R3, R4
+  JL NEG
+  HLT
+NEG:
+  MOVI R5, 9223372036854775807
+  MOVI R6, 100
+  MOVI R7, 0
+M:
+  MOVR R0, R5
+  ADD R0, R4
+  JG BAD
+  SUB R6, R4
+  TEST R6, R6
+  JNE M
+  MOVI R0, -1
+  CMP R0, R4
+  HLT
+BAD:
+  MOVI R7, 1
+  HLT
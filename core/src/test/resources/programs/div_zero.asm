@@ -0,0 +1,13 @@
+[CODE]
+  MOVI R0, 200
+  MOVI R1, 1
+L:
+  MOVI R3, 5
+  SUB R0, R1
+  DIV R3, R0
+  MOVI R4, 7
+  MOD R4, R0
+  JMPZ R0, E
+  GOTO L
+E:
+  HLT
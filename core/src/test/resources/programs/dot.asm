@@ -0,0 +1,231 @@
+[DATA]
+A0 = 1.0
+A1 = 1.5
+A2 = 2.0
+A3 = 2.5
+A4 = 3.0
+A5 = 3.5
+A6 = 4.0
+A7 = 4.5
+A8 = 5.0
+A9 = 5.5
+A10 = 6.0
+A11 = 6.5
+A12 = 7.0
+A13 = 7.5
+A14 = 8.0
+A15 = 8.5
+A16 = 9.0
+A17 = 9.5
+A18 = 10.0
+A19 = 10.5
+A20 = 11.0
+A21 = 11.5
+A22 = 12.0
+A23 = 12.5
+A24 = 13.0
+A25 = 13.5
+A26 = 14.0
+A27 = 14.5
+A28 = 15.0
+A29 = 15.5
+A30 = 16.0
+A31 = 16.5
+A32 = 17.0
+A33 = 17.5
+A34 = 18.0
+A35 = 18.5
+A36 = 19.0
+A37 = 19.5
+A38 = 20.0
+A39 = 20.5
+A40 = 21.0
+A41 = 21.5
+A42 = 22.0
+A43 = 22.5
+A44 = 23.0
+A45 = 23.5
+A46 = 24.0
+A47 = 24.5
+A48 = 25.0
+A49 = 25.5
+A50 = 26.0
+A51 = 26.5
+A52 = 27.0
+A53 = 27.5
+A54 = 28.0
+A55 = 28.5
+A56 = 29.0
+A57 = 29.5
+A58 = 30.0
+A59 = 30.5
+A60 = 31.0
+A61 = 31.5
+A62 = 32.0
+A63 = 32.5
+A64 = 33.0
+A65 = 33.5
+A66 = 34.0
+A67 = 34.5
+A68 = 35.0
+A69 = 35.5
+A70 = 36.0
+A71 = 36.5
+A72 = 37.0
+A73 = 37.5
+A74 = 38.0
+A75 = 38.5
+A76 = 39.0
+A77 = 39.5
+A78 = 40.0
+A79 = 40.5
+A80 = 41.0
+A81 = 41.5
+A82 = 42.0
+A83 = 42.5
+A84 = 43.0
+A85 = 43.5
+A86 = 44.0
+A87 = 44.5
+A88 = 45.0
+A89 = 45.5
+A90 = 46.0
+A91 = 46.5
+A92 = 47.0
+A93 = 47.5
+A94 = 48.0
+A95 = 48.5
+A96 = 49.0
+A97 = 49.5
+A98 = 50.0
+A99 = 50.5
+B0 = -3.25
+B1 = -2.25
+B2 = -1.25
+B3 = -0.25
+B4 = 0.75
+B5 = 1.75
+B6 = 2.75
+B7 = -3.25
+B8 = -2.25
+B9 = -1.25
+B10 = -0.25
+B11 = 0.75
+B12 = 1.75
+B13 = 2.75
+B14 = -3.25
+B15 = -2.25
+B16 = -1.25
+B17 = -0.25
+B18 = 0.75
+B19 = 1.75
+B20 = 2.75
+B21 = -3.25
+B22 = -2.25
+B23 = -1.25
+B24 = -0.25
+B25 = 0.75
+B26 = 1.75
+B27 = 2.75
+B28 = -3.25
+B29 = -2.25
+B30 = -1.25
+B31 = -0.25
+B32 = 0.75
+B33 = 1.75
+B34 = 2.75
+B35 = -3.25
+B36 = -2.25
+B37 = -1.25
+B38 = -0.25
+B39 = 0.75
+B40 = 1.75
+B41 = 2.75
+B42 = -3.25
+B43 = -2.25
+B44 = -1.25
+B45 = -0.25
+B46 = 0.75
+B47 = 1.75
+B48 = 2.75
+B49 = -3.25
+B50 = -2.25
+B51 = -1.25
+B52 = -0.25
+B53 = 0.75
+B54 = 1.75
+B55 = 2.75
+B56 = -3.25
+B57 = -2.25
+B58 = -1.25
+B59 = -0.25
+B60 = 0.75
+B61 = 1.75
+B62 = 2.75
+B63 = -3.25
+B64 = -2.25
+B65 = -1.25
+B66 = -0.25
+B67 = 0.75
+B68 = 1.75
+B69 = 2.75
+B70 = -3.25
+B71 = -2.25
+B72 = -1.25
+B73 = -0.25
+B74 = 0.75
+B75 = 1.75
+B76 = 2.75
+B77 = -3.25
+B78 = -2.25
+B79 = -1.25
+B80 = -0.25
+B81 = 0.75
+B82 = 1.75
+B83 = 2.75
+B84 = -3.25
+B85 = -2.25
+B86 = -1.25
+B87 = -0.25
+B88 = 0.75
+B89 = 1.75
+B90 = 2.75
+B91 = -3.25
+B92 = -2.25
+B93 = -1.25
+B94 = -0.25
+B95 = 0.75
+B96 = 1.75
+B97 = 2.75
+B98 = -3.25
+B99 = -2.25
+[CODE]
+; prodotto scalare a strisce di A[0..100) e B[100..200)
+MOVI R0, 0
+MOVI R1, 100
+MOVI R2, 100
+MOVI R6, 0
+MOVI R7, 64
+VSETL R7
+L:
+MOVR R3, R2
+VSETL R3
+VLOAD V0, R0
+VLOAD V1, R1
+VFMA V2, V0, V1
+VADD V3, V0
+VMUL V4, V1
+ADD R0, R3
+ADD R1, R3
+SUB R2, R3
+JMPZ R2, FINE
+JMP L
+FINE:
+VSETL R7
+VREDUCE R4, V2
+VREDUCE R5, V3
+MOVI R0, 192
+VSTORE V2, R0
+MOVI R0, 10000
+VLOAD V5, R0
+HLT
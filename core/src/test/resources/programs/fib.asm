@@ -0,0 +1,31 @@
+[CODE]
+  MOVI R0, 0
+  MOVI R1, 1
+  MOVI R2, 30      ; contatore
+  MOVI R7, 1
+LOOP:
+  JMPZ R2, END
+  MOVR R3, R0
+  ADD R3, R1
+  MOVR R0, R1
+  MOVR R1, R3
+  SUB R2, R7
+  STORE R0, 5
+  LOAD R4, 5
+  GOTO LOOP
+END:
+  SHIFT R1 LEFT 2
+  MOVI R5, 7
+  AND R5, R1
+  OR R5, R7
+  XOR R5, R0
+  MOD R0, R7
+  MOVI R6, 0
+  DIV R5, R6
+  PUSH R4
+  POP R6
+  MOVI R6, 1e308
+  MUL R6, R6
+  HLT
+[DATA]
+A = 1
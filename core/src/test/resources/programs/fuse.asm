@@ -0,0 +1,31 @@
+[CODE]
+  MOVI R0, 30
+  MOVI R1, 1
+  MOVI R2, 5
+  GOTO IN
+L:
+  MOVI R2, 3
+IN:
+  ADD R3, R2
+  MOVI R2, 1
+  SUB R4, R2
+  LOAD R5, 7
+  ADD R5, R3
+  STORE R5, 7
+  PUSH R3
+  POP R6
+  JMPZ R6, MID
+  SUB R0, R1
+  JMPZ R0, END
+  GOTO L
+MID:
+  ADD R5, R1
+  HLT
+END:
+  LOAD R7, 7
+  PUSH R1
+  PUSH R1
+  POP R2
+  HLT
+[DATA]
+A = 1
@@ -0,0 +1,20 @@
+[CODE]
+  MOVI R0, 1
+  MOVI R1, 2000
+  MOVI R7, 1
+  MOVI R5, 1e308
+  MOVI R6, 0
+D:
+  ADD R0, R0
+  ADD R6, R5
+  SUB R1, R7
+  JMPZ R1, E
+  GOTO D
+E:
+  MOVI R2, 6
+  PUSH R2
+  RET
+  HLT
+  MOVI R3, 1e300
+  MUL R3, R3
+  HLT
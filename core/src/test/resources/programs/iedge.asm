@@ -0,0 +1,55 @@
+[MODE INTEGER]
+[CODE]
+  MOVI R7, 60
+L:
+  MOVI R0, 9223372036854775807
+  MOVI R1, 2
+  MUL R0, R1
+  MOVI R2, -9223372036854775808
+  MOVI R3, -1
+  DIV R2, R3
+  MOVI R4, 7
+  MOVI R5, 0
+  DIV R4, R5
+  MOVI R4, -7
+  MOVI R5, 2
+  MOD R4, R5
+  MOVI R6, 123456789012345
+  SHIFT R6 LEFT 20
+  SHIFT R6 RIGHT 3
+  SHIFT R6 ARITH 1
+  MOVI R5, -1
+  SHIFT R5 RIGHT 60
+  MOVI R3, 4611686018427387904
+  MOVI R1, 3
+  MUL R3, R1
+  MOVI R1, 1
+  SUB R2, R1
+  MOVI R1, -9223372036854775807
+  SUB R1, R0
+  XOR R6, R5
+  OR R6, R3
+  AND R6, R1
+  MOVI R1, -5
+  DIV R1, R5
+  LOAD R0, 0
+  LOAD R1, 1
+  LOAD R2, 2
+  LOAD R3, 3
+  MOVI R5, 1
+  SUB R7, R5
+  JMPZ R7, END
+  GOTO L
+END:
+  PUSH R6
+  POP R0
+  CALL SUB(0)
+  HLT
+SUB:
+  MOVI R5, 99
+  RET
+[DATA]
+A = 2.9
+B = -3.7
+C = 1e19
+D = -9.2233720368547758E18
@@ -0,0 +1,18 @@
+[MODE INTEGER]
+[CODE]
+  MOVI R0, 0
+  MOVI R1, 1
+  MOVI R2, 100
+  MOVI R7, 1
+LOOP:
+  JMPZ R2, END
+  MOVR R3, R0
+  ADD R3, R1
+  MOVR R0, R1
+  MOVR R1, R3
+  SUB R2, R7
+  STORE R0, 5
+  LOAD R4, 5
+  GOTO LOOP
+END:
+  HLT
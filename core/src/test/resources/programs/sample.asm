@@ -0,0 +1,17 @@
+[CODE]
+START:
+  MOVI R0, 10
+  MOVI R1, 3
+  CALL SUB(2)
+  GOTO FINE   ; salta a label FINE
+SUB:
+  POP R2
+  POP R3
+  MUL R2, R3
+  MOVR R0, R2
+  RET
+FINE:
+  HLT
+[DATA]
+X = 12
+Y = 99
@@ -0,0 +1,25 @@
+[CODE]
+  MOVI R0, 150     ; contatore
+  MOVI R7, 1
+  MOVI R1, 0
+  MOVI R2, 3
+LOOP:
+  JMPZ R0, END
+  ADD R1, R2
+  MOVR R3, R1
+  MOD R3, R2
+  MOVI R4, 0
+  DIV R3, R4
+  MOVR R5, R1
+  SHIFT R5 LEFT 3
+  SHIFT R5 ARITH 1
+  XOR R5, R0
+  STORE R5, 200
+  LOAD R6, 0
+  MUL R6, R6
+  SUB R0, R7
+  GOTO LOOP
+END:
+  HLT
+[DATA]
+A = 1e200
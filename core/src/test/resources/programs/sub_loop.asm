@@ -0,0 +1,9 @@
+[CODE]
+  MOVI R0, 300
+  MOVI R1, 1
+  MOVI R2, 0
+L:
+  ADD R2, R1
+  SUB R0, R1
+  JG L
+  HLT
@@ -0,0 +1,582 @@
+package org.example.bmathb1;
+
+import javafx.animation.AnimationTimer;
+import javafx.application.Application;
+import javafx.application.Platform;
+import javafx.geometry.Insets;
+import javafx.scene.Scene;
+import javafx.scene.control.*;
+import javafx.scene.layout.*;
+import javafx.stage.Stage;
+import javafx.collections.ObservableList;
+import javafx.concurrent.Task;
+import org.example.bmathb1.core.AdvancedCPU;
+import org.example.bmathb1.core.Memory;
+import org.example.bmathb1.core.TraceBuffer;
+import org.example.bmathb1.core.TraceLevel;
+
+import java.util.BitSet;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Esempio avanzato di un processore virtuale con:
+ * - [CODE] / [DATA] segmenti
+ * - Registri R0..R7, IP (instruction pointer), FLAGS
+ * - Parser con commenti ';', label su righe a sé, GOTO, CALL SUB(2), SHIFT, MOD, eccezioni overflow
+ * - Debug step-by-step
+ */
+public class AdvancedCPUApp extends Application {
+
+    private TextArea codeArea;         // Dove l'utente scrive il codice
+    private TextArea logArea;          // Log di esecuzione
+    private ListView<String> memoryList;   // Visualizza data segment
+    private Button parseButton;        // Parsare e caricare codice
+    private Button runButton;          // Eseguire tutto
+    private Button stepButton;         // Step by step
+    private Button stopButton;         // Ferma (mette in pausa) il Run
+    private Button stepBackButton;     // Annulla l'ultimo step
+    private Button runBackButton;      // Torna indietro fino a un breakpoint
+    private CheckBox journalBox;       // Registra la storia per il debug all'indietro
+    private TextField breakpointField; // Breakpoint per Run Back: IP o label separati da virgola
+    private CheckBox profileBox;       // Attiva i contatori di profiling
+    private Button reportButton;       // Stampa il report hot-spot nel log
+    private ComboBox<AdvancedCPU.Engine> engineBox; // Motore di esecuzione
+    private ComboBox<TraceLevel> traceBox;          // Livello di dettaglio del log
+    private ComboBox<SpeedMode> speedBox;           // Modalità di velocità del Run
+    private TextField speedField;      // Istruzioni/sec o istruzioni per frame
+    private TextField limitField;      // Limite di passi (vuoto o 0 = nessun limite)
+
+    private AdvancedCPU cpu;           // L'istanza "CPU virtuale"
+    private TraceBuffer trace;         // Eventi della CPU, formattati solo quando mostrati nel log
+
+    private static final int TRACE_CAPACITY = 4096;
+    // Celle mostrate nella vista memoria (le prime): una memoria grande non diventa una ListView enorme
+    private static final int MEMORY_VIEW_CELLS = 1024;
+    // Righe per sezione nel report di profiling
+    private static final int PROFILE_TOP_N = 10;
+    // Istruzioni per batch in modalità MAX: il flag di stop viene letto una volta per batch
+    private static final long MAX_SPEED_BATCH = 100_000;
+
+    /**
+     * Velocità del Run.
+     */
+    private enum SpeedMode {
+        RATE("Istruzioni/sec"),             // ritmo fisso
+        PER_FRAME("Istruzioni per frame"),  // N istruzioni tra un campionamento della UI e il successivo
+        MAX("Massima");                     // nessun rallentamento
+
+        private final String label;
+
+        SpeedMode(String label) {
+            this.label = label;
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    /**
+     * Stato mostrato in memoryList, copiato dal thread che esegue la CPU: durante il Run il thread
+     * FX non legge mai registri, memoria e FLAGS (calcolati in modo pigro) mentre cambiano.
+     */
+    private record ViewState(long steps, double[] cells, double[] registers, int ip, int flags) {
+    }
+
+    // Refresh della vista durante Run: al massimo una volta per frame, solo se la CPU è avanzata
+    private AnimationTimer refreshTimer;
+    private volatile ViewState published;  // scritto dal thread di Run dopo ogni batch
+    private volatile long shownSteps = -1; // passi dell'ultimo stato mostrato dal timer
+
+    // Valori attualmente mostrati in memoryList, per aggiornare solo le righe cambiate
+    private double[] shownCells;           // data segment seguito da R0..R7
+    private int shownIP;
+    private int shownFLAGS;
+
+    @Override
+    public void start(Stage primaryStage) {
+        codeArea = new TextArea();
+        codeArea.setPrefRowCount(15);
+        codeArea.setPrefColumnCount(40);
+        codeArea.setText("""
+                ; Esempio di codice con segmenti
+                [CODE]
+                START:
+                  MOVI R0, 10
+                  MOVI R1, 3
+                  CALL SUB(2)
+                  GOTO FINE   ; salta a label FINE
+
+                SUB:
+                  ; si aspetta 2 param: li poppa in R2, R3
+                  POP R2
+                  POP R3
+                  MUL R2, R3
+                  ; se overflow -> handle (esempio sempl.)
+                  MOVR R0, R2
+                  RET
+
+                FINE:
+                  HLT
+
+                [DATA]
+                X = 12
+                Y = 99
+                """);
+
+        logArea = new TextArea();
+        logArea.setEditable(false);
+        logArea.setPrefRowCount(8);
+
+        memoryList = new ListView<>();
+        memoryList.setPrefSize(200, 300);
+
+        parseButton = new Button("Parse/Load");
+        parseButton.setOnAction(e -> doParseLoad());
+
+        runButton = new Button("Run");
+        runButton.setOnAction(e -> doRun());
+
+        stepButton = new Button("Step");
+        stepButton.setOnAction(e -> doStep());
+
+        stopButton = new Button("Stop");
+        stopButton.setOnAction(e -> {
+            if (cpu != null) {
+                cpu.setRunning(false);
+            }
+        });
+
+        stepBackButton = new Button("Step Back");
+        stepBackButton.setOnAction(e -> doStepBack());
+
+        runBackButton = new Button("Run Back");
+        runBackButton.setOnAction(e -> doRunBackwards());
+
+        journalBox = new CheckBox("Storia (undo)");
+        journalBox.setSelected(true);
+        journalBox.setOnAction(e -> {
+            if (cpu != null) {
+                cpu.setJournaling(journalBox.isSelected());
+            }
+        });
+
+        breakpointField = new TextField();
+        breakpointField.setPromptText("es. LOOP, 12");
+        breakpointField.setPrefColumnCount(14);
+
+        profileBox = new CheckBox("Profiling");
+        profileBox.setOnAction(e -> {
+            if (cpu != null) {
+                cpu.setProfiling(profileBox.isSelected());
+            }
+        });
+
+        reportButton = new Button("Report profilo");
+        reportButton.setOnAction(e -> doProfileReport());
+
+        speedBox = new ComboBox<>();
+        speedBox.getItems().addAll(SpeedMode.values());
+        speedBox.setValue(SpeedMode.RATE);
+        speedField = new TextField("5");
+        speedField.setPrefColumnCount(7);
+        limitField = new TextField(String.valueOf(AdvancedCPU.DEFAULT_STEP_LIMIT));
+        limitField.setPrefColumnCount(9);
+
+        engineBox = new ComboBox<>();
+        engineBox.getItems().addAll(AdvancedCPU.Engine.values());
+        engineBox.setValue(AdvancedCPU.Engine.DECODED);
+        engineBox.setOnAction(e -> {
+            if (cpu != null) {
+                cpu.setEngine(engineBox.getValue());
+            }
+        });
+
+        traceBox = new ComboBox<>();
+        traceBox.getItems().addAll(TraceLevel.values());
+        traceBox.setValue(TraceLevel.VERBOSE);
+        traceBox.setOnAction(e -> {
+            if (cpu != null) {
+                cpu.setTraceLevel(traceBox.getValue());
+            }
+        });
+
+        HBox topBox = new HBox(10, codeArea, memoryList);
+        topBox.setPadding(new Insets(10));
+        HBox btnBox = new HBox(10, parseButton, runButton, stepButton, stopButton,
+                new Label("Engine:"), engineBox, new Label("Log:"), traceBox, profileBox, reportButton);
+        btnBox.setPadding(new Insets(10));
+        HBox speedBoxRow = new HBox(10, new Label("Velocità:"), speedBox, speedField,
+                new Label("Limite passi (0 = nessuno):"), limitField);
+        speedBoxRow.setPadding(new Insets(0, 10, 0, 10));
+        HBox debugRow = new HBox(10, journalBox, stepBackButton, runBackButton,
+                new Label("Breakpoint:"), breakpointField);
+        debugRow.setPadding(new Insets(0, 10, 0, 10));
+        VBox root = new VBox(10, topBox, btnBox, speedBoxRow, debugRow, new Label("Execution Log:"), logArea);
+        root.setPadding(new Insets(10));
+
+        refreshTimer = new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                ViewState state = published;
+                if (state != null && state.steps() != shownSteps) {
+                    shownSteps = state.steps();
+                    showState(state);
+                    flushTrace();
+                }
+            }
+        };
+
+        Scene scene = new Scene(root, 1000, 700);
+        primaryStage.setScene(scene);
+        primaryStage.setTitle("Advanced Virtual CPU with Segmenti, Step Debug, Flags, etc.");
+        primaryStage.show();
+    }
+
+    /**
+     * Legge il testo in codeArea, parse i segmenti [CODE] e [DATA],
+     * crea un'istanza CPU e carica i dati in memoria.
+     */
+    private void doParseLoad() {
+        logArea.clear();
+
+        String codeText = codeArea.getText();
+        if (codeText.isBlank()) {
+            appendLog("Nessun codice presente!\n");
+            return;
+        }
+
+        // Crea un'istanza CPU, parse, ecc.
+        try {
+            // Il core non conosce JavaFX: registra gli eventi nel buffer, la UI li legge in flushTrace()
+            trace = new TraceBuffer(TRACE_CAPACITY);
+            cpu = new AdvancedCPU(codeText, trace, traceBox.getValue());
+            cpu.setEngine(engineBox.getValue());
+            cpu.setProfiling(profileBox.isSelected());
+            cpu.setJournaling(journalBox.isSelected());
+            shownCells = null;   // nuova CPU: ricostruisci la vista
+            flushTrace();
+            appendLog("Codice caricato con successo.\n");
+            // Visualizza la data segment
+            refreshMemoryView();
+        } catch (Exception ex) {
+            appendLog("Errore parse: " + ex.getMessage() + "\n");
+        }
+    }
+
+    /**
+     * Aggiunge al log il report hot-spot del profiler (istruzioni, label, salti condizionati).
+     */
+    private void doProfileReport() {
+        if (cpu == null || !cpu.isProfiling()) {
+            appendLog("Attiva Profiling e fai Parse/Load!\n");
+            return;
+        }
+        appendLog(cpu.getProfiler().report(PROFILE_TOP_N));
+    }
+
+    /**
+     * Esegue l'intero programma in un Task separato, per non bloccare la UI.
+     */
+    private void doRun() {
+        if (cpu == null) {
+            appendLog("Prima fai Parse/Load!\n");
+            return;
+        }
+        // Se il CPU è già in esecuzione e non è halted, evitiamo conflitti
+        if (!cpu.isHalted() && cpu.isRunning()) {
+            appendLog("CPU già in esecuzione.\n");
+            return;
+        }
+        if (!applyStepLimit()) {
+            return;
+        }
+        SpeedMode mode = speedBox.getValue();
+        long amount = 0;
+        if (mode != SpeedMode.MAX) {
+            try {
+                amount = Long.parseLong(speedField.getText().trim());
+            } catch (NumberFormatException ex) {
+                amount = 0;
+            }
+            if (amount <= 0) {
+                appendLog("Velocità non valida: " + speedField.getText() + "\n");
+                return;
+            }
+        }
+        final long speed = amount;
+
+        // Creiamo un task che esegue
+        cpu.setRunning(true);  // abilita esecuzione
+        Task<Void> runTask = new Task<>() {
+            @Override
+            protected Void call() {
+                runLoop(mode, speed);
+                return null;
+            }
+        };
+        runTask.setOnSucceeded(e -> {
+            cpu.setRunning(false);
+            stopRefresh();
+            appendLog("Esecuzione terminata.\n");
+        });
+        runTask.setOnFailed(e -> {
+            cpu.setRunning(false);
+            stopRefresh();
+            appendLog("Esecuzione terminata con errore.\n");
+        });
+        published = null;   // il timer non deve mostrare lo stato di un Run precedente
+        refreshTimer.start();
+        new Thread(runTask).start();
+    }
+
+    /**
+     * Ciclo del thread di Run: esegue la CPU a batch e pubblica lo stato dopo ogni batch.
+     * Il flag running (volatile) viene letto una volta per batch, non a ogni istruzione.
+     */
+    private void runLoop(SpeedMode mode, long amount) {
+        long startNs = System.nanoTime();
+        long executed = 0;
+        while (!cpu.isHalted() && cpu.isRunning()) {
+            switch (mode) {
+                case RATE -> {
+                    // batch da circa 1 ms di istruzioni, poi attesa fino all'istante previsto
+                    executed += cpu.run(Math.max(1, amount / 1000));
+                    published = capture();
+                    long due = startNs + (long) (executed * 1e9 / amount);
+                    long wait = due - System.nanoTime();
+                    if (wait > 0) {
+                        LockSupport.parkNanos(wait);
+                    }
+                }
+                case PER_FRAME -> {
+                    cpu.run(amount);
+                    published = capture();
+                    // aspetta che il refreshTimer abbia mostrato questo stato
+                    while (shownSteps != published.steps() && cpu.isRunning() && !cpu.isHalted()) {
+                        LockSupport.parkNanos(1_000_000);
+                    }
+                }
+                case MAX -> {
+                    cpu.run(MAX_SPEED_BATCH);
+                    published = capture();
+                }
+            }
+        }
+    }
+
+    /**
+     * Legge il limite di passi dal campo di testo e lo applica alla CPU.
+     */
+    private boolean applyStepLimit() {
+        String text = limitField.getText().trim();
+        long limit;
+        try {
+            limit = text.isEmpty() ? 0 : Long.parseLong(text);
+        } catch (NumberFormatException ex) {
+            limit = -1;
+        }
+        if (limit < 0) {
+            appendLog("Limite passi non valido: " + text + "\n");
+            return false;
+        }
+        cpu.setStepLimit(limit == 0 ? AdvancedCPU.UNLIMITED_STEPS : limit);
+        return true;
+    }
+
+    /**
+     * Ferma il refresh periodico e mostra lo stato finale.
+     */
+    private void stopRefresh() {
+        refreshTimer.stop();
+        refreshMemoryView();
+        flushTrace();
+    }
+
+    /**
+     * Esegue un singolo step: decodifica l'istruzione corrente.
+     */
+    private void doStep() {
+        if (cpu == null) {
+            appendLog("Prima fai Parse/Load!\n");
+            return;
+        }
+        if (cpu.isHalted()) {
+            appendLog("CPU è già in HALT.\n");
+            return;
+        }
+        if (!applyStepLimit()) {
+            return;
+        }
+        // Esegui step
+        cpu.setRunning(true); // momentaneamente
+        cpu.step();
+        cpu.setRunning(false);
+        refreshMemoryView();
+        flushTrace();
+        appendLog("Step eseguito.\n");
+    }
+
+    /**
+     * Annulla l'ultimo step usando la storia registrata dalla CPU.
+     */
+    private void doStepBack() {
+        if (!canGoBack()) {
+            return;
+        }
+        if (cpu.stepBack()) {
+            appendLog("Step annullato: IP=" + cpu.getIP() + "\n");
+        } else {
+            appendLog("Inizio della storia.\n");
+        }
+        refreshMemoryView();
+    }
+
+    /**
+     * Torna indietro fino al primo breakpoint incontrato (o all'inizio della storia).
+     */
+    private void doRunBackwards() {
+        if (!canGoBack()) {
+            return;
+        }
+        BitSet breakpoints = new BitSet();
+        for (String item : breakpointField.getText().split(",")) {
+            String bp = item.trim();
+            if (bp.isEmpty()) continue;
+            int ip = bp.chars().allMatch(Character::isDigit) ? Integer.parseInt(bp) : cpu.labelAddress(bp);
+            if (ip < 0) {
+                appendLog("Breakpoint sconosciuto: " + bp + "\n");
+                return;
+            }
+            breakpoints.set(ip);
+        }
+        long undone = cpu.runBackwards(breakpoints);
+        appendLog("Annullati " + undone + " step: IP=" + cpu.getIP()
+                + (breakpoints.get(cpu.getIP()) ? " (breakpoint)" : " (inizio della storia)") + "\n");
+        refreshMemoryView();
+    }
+
+    private boolean canGoBack() {
+        if (cpu == null) {
+            appendLog("Prima fai Parse/Load!\n");
+            return false;
+        }
+        if (cpu.isRunning()) {
+            appendLog("Ferma prima il Run.\n");
+            return false;
+        }
+        if (!cpu.isJournaling()) {
+            appendLog("Attiva Storia (undo): la storia parte da quel momento.\n");
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Aggiorna la vista con lo stato attuale della CPU. Solo a CPU ferma: durante il Run la
+     * aggiorna il refreshTimer con gli stati pubblicati dal thread di Run.
+     */
+    private void refreshMemoryView() {
+        if (cpu == null) return;
+        showState(capture());
+    }
+
+    /**
+     * Copia lo stato da mostrare: celle visibili della data segment, R0..R7, IP e FLAGS.
+     * Va chiamato dal thread che esegue la CPU, o a CPU ferma.
+     */
+    private ViewState capture() {
+        Memory memory = cpu.getMemory();
+        double[] cells = new double[(int) Math.min(memory.size(), MEMORY_VIEW_CELLS)];
+        memory.loadAll(0, cells);
+        double[] registers = new double[AdvancedCPU.REGISTERS];
+        for (int i = 0; i < registers.length; i++) {
+            registers[i] = cpu.getRegister(i);
+        }
+        return new ViewState(cpu.getStepCount(), cells, registers, cpu.getIP(), cpu.getFLAGS());
+    }
+
+    /**
+     * Aggiorna la ListView che mostra la data segment.
+     * La lista viene ricostruita solo per una nuova CPU; poi si riscrivono solo le righe
+     * il cui valore è cambiato rispetto all'ultimo refresh.
+     */
+    private void showState(ViewState state) {
+        int cells = state.cells().length;
+        int regs = state.registers().length;
+        ObservableList<String> items = memoryList.getItems();
+        if (shownCells == null || shownCells.length != cells + regs) {
+            shownCells = new double[cells + regs];
+            items.clear();
+            for (int i = 0; i < cells; i++) {
+                shownCells[i] = state.cells()[i];
+                items.add(dataRow(i, shownCells[i]));
+            }
+            // eventuale log di stato registri
+            items.add("----- REGISTRI -----");
+            for (int i = 0; i < regs; i++) {
+                shownCells[cells + i] = state.registers()[i];
+                items.add(registerRow(i, state.registers()[i]));
+            }
+            shownIP = state.ip();
+            shownFLAGS = state.flags();
+            items.add(String.format("IP = %d", shownIP));
+            items.add(String.format("FLAGS = 0x%X", shownFLAGS));
+            return;
+        }
+        for (int i = 0; i < cells; i++) {
+            double v = state.cells()[i];
+            if (Double.compare(v, shownCells[i]) != 0) {
+                shownCells[i] = v;
+                items.set(i, dataRow(i, v));
+            }
+        }
+        int regRow = cells + 1;   // dopo la riga "REGISTRI"
+        for (int i = 0; i < regs; i++) {
+            double v = state.registers()[i];
+            if (Double.compare(v, shownCells[cells + i]) != 0) {
+                shownCells[cells + i] = v;
+                items.set(regRow + i, registerRow(i, v));
+            }
+        }
+        if (state.ip() != shownIP) {
+            shownIP = state.ip();
+            items.set(regRow + regs, String.format("IP = %d", shownIP));
+        }
+        if (state.flags() != shownFLAGS) {
+            shownFLAGS = state.flags();
+            items.set(regRow + regs + 1, String.format("FLAGS = 0x%X", shownFLAGS));
+        }
+    }
+
+    private static String dataRow(int i, double v) {
+        // Se preferisci vederli in esadecimale:
+        // return String.format("[%02X] = %.4f", i, v);
+        return String.format("[%03d] = %.4f", i, v);
+    }
+
+    private static String registerRow(int i, double v) {
+        return String.format("R%d = %.4f", i, v);
+    }
+
+    /**
+     * Formatta gli eventi di trace accumulati e li aggiunge al log con un solo appendText.
+     */
+    private void flushTrace() {
+        if (trace == null) return;
+        StringBuilder sb = new StringBuilder();
+        trace.drainTo(msg -> sb.append(msg).append('\n'));
+        if (sb.length() > 0) {
+            appendLog(sb.toString());
+        }
+    }
+
+    private void appendLog(String msg) {
+        logArea.appendText(msg);
+    }
+
+    public static void main(String[] args) {
+        launch(args);
+    }
+}